@@ -0,0 +1,66 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
+import org.bouncycastle.crypto.params.HKDFParameters;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * One direction of an AES-256-GCM channel: a key and an IV derived from a shared secret with
+ * HKDF-SHA256 under a per-direction label, and one {@link Cipher} reused for every message. The
+ * nonce of a message is the IV XOR its 64-bit sequence number, as in TLS 1.3, so nonces never
+ * repeat as long as the caller never reuses a sequence number. Keeping count is left to the caller.
+ * Not thread-safe.
+ */
+public final class AeadDirection {
+
+    public static final int KEY_LENGTH = 32;
+    public static final int IV_LENGTH = 12;
+    public static final int TAG_LENGTH = 16;
+
+    private final SecretKeySpec key;
+    private final byte[] iv;
+    private final byte[] nonce = new byte[IV_LENGTH];
+    private final Cipher cipher;
+
+    public AeadDirection(byte[] secret, byte[] info) throws GeneralSecurityException {
+        byte[] material = hkdf(secret, null, info, KEY_LENGTH + IV_LENGTH);
+        this.key = new SecretKeySpec(material, 0, KEY_LENGTH, "AES");
+        this.iv = Arrays.copyOfRange(material, KEY_LENGTH, KEY_LENGTH + IV_LENGTH);
+        Arrays.fill(material, (byte) 0);
+        this.cipher = ProviderRouter.shared().cipher("AES/GCM/NoPadding");
+    }
+
+    /**
+     * HKDF-SHA256 of {@code length} bytes; {@code salt} may be null.
+     */
+    public static byte[] hkdf(byte[] ikm, byte[] salt, byte[] info, int length) {
+        HKDFBytesGenerator hkdf = new HKDFBytesGenerator(new SHA256Digest());
+        hkdf.init(new HKDFParameters(ikm, salt, info));
+        byte[] output = new byte[length];
+        hkdf.generateBytes(output, 0, output.length);
+        return output;
+    }
+
+    /**
+     * Initializes the cipher for the message numbered {@code sequence} and returns it, ready for
+     * additional data and the message.
+     */
+    public Cipher init(int mode, long sequence) throws GeneralSecurityException {
+        System.arraycopy(iv, 0, nonce, 0, IV_LENGTH);
+        for (int i = 0; i < 8; i++) {
+            nonce[IV_LENGTH - 1 - i] ^= (byte) (sequence >>> (8 * i));
+        }
+        cipher.init(mode, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+        return cipher;
+    }
+}
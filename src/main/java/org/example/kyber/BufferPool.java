@@ -0,0 +1,79 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded pool of equally sized buffers. Slots are claimed and refilled with single atomic swaps,
+ * so neither taking nor returning a buffer allocates or locks; an empty pool allocates a fresh
+ * buffer and a full pool lets a returned one go to the collector.
+ * <p>
+ * The buffers are heap buffers: the JDK's AES-GCM and the socket streams both work on arrays, and
+ * a direct buffer would be copied to and from a temporary array on every use.
+ */
+public class BufferPool {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final int bufferSize;
+    private final AtomicReferenceArray<ByteBuffer> slots;
+
+    public BufferPool(int bufferSize, int capacity) {
+        if (bufferSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Invalid pool: bufferSize=" + bufferSize + ", capacity=" + capacity);
+        }
+        this.bufferSize = bufferSize;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns a cleared buffer of {@link #getBufferSize()} bytes, pooled if one is available.
+     */
+    public ByteBuffer acquire() {
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                ByteBuffer buffer = slots.getAndSet(i, null);
+                if (buffer != null) {
+                    buffer.clear();
+                    return buffer;
+                }
+            }
+        }
+        return ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Hands a buffer back; the caller must not touch it afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() != bufferSize || !buffer.hasArray()) {
+            throw new IllegalArgumentException("Buffer does not belong to this pool");
+        }
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Buffers currently waiting in the pool.
+     */
+    public int getPooled() {
+        int pooled = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                pooled++;
+            }
+        }
+        return pooled;
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.jce.spec.ECNamedCurveParameterSpec;
+
+import javax.crypto.KeyAgreement;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.*;
+
+import static org.example.kyber.JcaEcdhEngine.*;
+
+/**
+ * Same primitives as {@link JcaEcdhEngine}, but the curve parameters are resolved once and every
+ * thread keeps its own {@link KeyPairGenerator}, {@link KeyAgreement} and {@link SecureRandom}.
+ * The curve is BouncyCastle's custom secp256r1 implementation, whose field arithmetic is
+ * specialised for the P-256 prime. JCA objects are not thread-safe, which is why they are never
+ * shared.
+ */
+public class CachedJcaEcdhEngine implements EcdhEngine {
+
+    static final X9ECParameters CURVE = CustomNamedCurves.getByName(CURVE_NAME);
+    static final ECNamedCurveParameterSpec PARAMETER_SPEC = new ECNamedCurveParameterSpec(CURVE_NAME,
+            CURVE.getCurve(), CURVE.getG(), CURVE.getN(), CURVE.getH(), CURVE.getSeed());
+
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    private final ThreadLocal<Primitives> primitives = ThreadLocal.withInitial(Primitives::new);
+
+    @Override
+    public KeyPair generateKeyPair() throws GeneralSecurityException {
+        return primitives.get().keyPairGenerator().generateKeyPair();
+    }
+
+    @Override
+    public SecretKey generateSharedSecret(PrivateKey privateKey, PublicKey publicKey) throws GeneralSecurityException {
+        KeyAgreement keyAgreement = primitives.get().keyAgreement();
+        keyAgreement.init(privateKey);
+        keyAgreement.doPhase(publicKey, true);
+        return new SecretKeySpec(keyAgreement.generateSecret(), SECRET_KEY_ALGORITHM);
+    }
+
+    /**
+     * The calling thread's random, the one its key pair generator uses.
+     */
+    SecureRandom random() {
+        return primitives.get().random;
+    }
+
+    private static final class Primitives {
+        final SecureRandom random = KyberRandom.current();
+        KeyPairGenerator keyPairGenerator;
+        KeyAgreement keyAgreement;
+
+        KeyPairGenerator keyPairGenerator() throws GeneralSecurityException {
+            if (keyPairGenerator == null) {
+                keyPairGenerator = KeyPairGenerator.getInstance(ALGORITHM, PROVIDER);
+                keyPairGenerator.initialize(PARAMETER_SPEC, random);
+            }
+            return keyPairGenerator;
+        }
+
+        KeyAgreement keyAgreement() throws GeneralSecurityException {
+            if (keyAgreement == null) {
+                keyAgreement = ProviderRouter.shared().keyAgreement(ALGORITHM);
+            }
+            return keyAgreement;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.jcajce.spec.KEMExtractSpec;
+import org.bouncycastle.jcajce.spec.KEMGenerateSpec;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.*;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.example.kyber.JcaKyberEngine.*;
+
+/**
+ * Same primitives as {@link JcaKyberEngine}, but every thread keeps its own {@link KeyPairGenerator}
+ * per {@link KyberParameterSpec}, its own KEM {@link KeyGenerator}, {@link Cipher} and
+ * {@link SecureRandom}. Provider lookups and random setup then happen once per thread instead of
+ * once per operation. JCA objects are not thread-safe, which is why they are never shared.
+ */
+public class CachedJcaKyberEngine implements KyberEngine {
+
+    private final ThreadLocal<Primitives> primitives = ThreadLocal.withInitial(Primitives::new);
+
+    @Override
+    public byte[] encrypt(byte[] plainBytes, byte[] key) throws Exception {
+        Cipher cipher = primitives.get().cipher();
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, ENCRYPTION_ALGORITHM));
+        return cipher.doFinal(plainBytes);
+    }
+
+    @Override
+    public byte[] decrypt(byte[] encryptedBytes, byte[] key) throws Exception {
+        Cipher cipher = primitives.get().cipher();
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, ENCRYPTION_ALGORITHM));
+        return cipher.doFinal(encryptedBytes);
+    }
+
+    @Override
+    public KeyPair generateKeyPair(KyberParameterSpec kyberParameterSpec) throws Exception {
+        return primitives.get().keyPairGenerator(kyberParameterSpec).generateKeyPair();
+    }
+
+    @Override
+    public SecretKeyWithEncapsulation generateSecretKeySender(PublicKey publicKey) throws Exception {
+        Primitives p = primitives.get();
+        KeyGenerator keyGenerator = p.keyGenerator();
+        keyGenerator.init(new KEMGenerateSpec(publicKey, SECRET_KEY_ALGORITHM), p.random);
+        return (SecretKeyWithEncapsulation) keyGenerator.generateKey();
+    }
+
+    @Override
+    public SecretKeyWithEncapsulation generateSecretKeyReceiver(PrivateKey privateKey, byte[] encapsulation) throws Exception {
+        Primitives p = primitives.get();
+        KeyGenerator keyGenerator = p.keyGenerator();
+        keyGenerator.init(new KEMExtractSpec(privateKey, encapsulation, SECRET_KEY_ALGORITHM), p.random);
+        return (SecretKeyWithEncapsulation) keyGenerator.generateKey();
+    }
+
+    private static final class Primitives {
+        final SecureRandom random = KyberRandom.current();
+        final Map<KyberParameterSpec, KeyPairGenerator> keyPairGenerators = new HashMap<>();
+        KeyGenerator keyGenerator;
+        Cipher cipher;
+
+        KeyPairGenerator keyPairGenerator(KyberParameterSpec kyberParameterSpec) throws GeneralSecurityException {
+            KeyPairGenerator keyPairGenerator = keyPairGenerators.get(kyberParameterSpec);
+            if (keyPairGenerator == null) {
+                keyPairGenerator = KeyPairGenerator.getInstance(KEM_ALGORITHM, PROVIDER);
+                keyPairGenerator.initialize(kyberParameterSpec, random);
+                keyPairGenerators.put(kyberParameterSpec, keyPairGenerator);
+            }
+            return keyPairGenerator;
+        }
+
+        KeyGenerator keyGenerator() throws GeneralSecurityException {
+            if (keyGenerator == null) {
+                keyGenerator = KeyGenerator.getInstance(KEM_ALGORITHM, PROVIDER);
+            }
+            return keyGenerator;
+        }
+
+        Cipher cipher() throws GeneralSecurityException {
+            if (cipher == null) {
+                cipher = ProviderRouter.shared().cipher(MODE_PADDING);
+            }
+            return cipher;
+        }
+    }
+}
@@ -1,18 +1,38 @@
 package org.example.kyber;
 
-import org.bouncycastle.jce.ECNamedCurveTable;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.jce.spec.ECNamedCurveParameterSpec;
 
 import javax.crypto.*;
-import javax.crypto.spec.IvParameterSpec;
-import java.io.UnsupportedEncodingException;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.charset.StandardCharsets;
 import java.security.*;
+
+/**
+ * ECDH on secp256r1 with AES-GCM helpers. Key generation and agreement are delegated to an
+ * {@link EcdhEngine}, chosen with the {@code ecdh.engine} system property ("fixedbase" by default)
+ * or {@link #setEngine}.
+ * <p>
+ * {@link #encryptString} and {@link #decryptString} use the same IV for every call, so a key may
+ * only ever encrypt one message with them; use an {@link EcdhMessageChannel} for more.
+ */
 public class ECDH_BC {
     static {
         Security.addProvider(new BouncyCastleProvider());
     }
 
+    private static volatile EcdhEngine engine = EcdhEngine.forName(System.getProperty(EcdhEngine.ENGINE_PROPERTY, "fixedbase"));
+
+    public static EcdhEngine getEngine() {
+        return engine;
+    }
+
+    public static void setEngine(EcdhEngine ecdhEngine) {
+        if (ecdhEngine == null) {
+            throw new IllegalArgumentException("engine must not be null");
+        }
+        engine = ecdhEngine;
+    }
+
     public static byte[] iv = new SecureRandom().generateSeed(16);
 
     public static void main(String[] args) {
@@ -44,75 +64,86 @@ public class ECDH_BC {
 
     public static KeyPair generateECKeys() {
         try {
-            ECNamedCurveParameterSpec parameterSpec = ECNamedCurveTable.getParameterSpec("secp256r1");
-            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("ECDH", "BC");
-            keyPairGenerator.initialize(parameterSpec, new SecureRandom());
-            return keyPairGenerator.generateKeyPair();
-        } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidAlgorithmParameterException e) {
+            return engine.generateKeyPair();
+        } catch (GeneralSecurityException e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     * Generates {@code count} key pairs in one go, which the default engine does faster per key
+     * than separate {@link #generateECKeys()} calls.
+     */
+    public static KeyPair[] generateECKeys(int count) {
+        try {
+            return engine.generateKeyPairs(count);
+        } catch (GeneralSecurityException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
 
     public static SecretKey generateSharedSecret(PrivateKey privateKey,
                                                  PublicKey publicKey) {
         try {
-            KeyAgreement keyAgreement = KeyAgreement.getInstance("ECDH", "BC");
-            keyAgreement.init(privateKey);
-            keyAgreement.doPhase(publicKey, true);
-            return keyAgreement.generateSecret("AES");
-        } catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchProviderException e) {
+            return engine.generateSharedSecret(privateKey, publicKey);
+        } catch (GeneralSecurityException e) {
             e.printStackTrace();
             return null;
         }
     }
 
     public static String encryptString(SecretKey key, String plainText) {
+        byte[] cipherText = encryptString(key, plainText.getBytes(StandardCharsets.UTF_8));
+        return cipherText == null ? null : bytesToHex(cipherText);
+    }
+
+    /**
+     * Byte-oriented form of {@link #encryptString(SecretKey, String)}: no text encoding on either
+     * side, the raw AES-GCM ciphertext is returned.
+     */
+    public static byte[] encryptString(SecretKey key, byte[] plainText) {
         try {
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding", "BC");
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
+            Cipher cipher = ProviderRouter.shared().cipher("AES/GCM/NoPadding");
+            GCMParameterSpec ivSpec = new GCMParameterSpec(128, iv);
             cipher.init(Cipher.ENCRYPT_MODE, key, ivSpec);
-            byte[] cipherText = cipher.doFinal(plainText.getBytes("UTF-8"));
-            return bytesToHex(cipherText);
-        } catch (NoSuchAlgorithmException | NoSuchProviderException | NoSuchPaddingException
-                 | InvalidKeyException | InvalidAlgorithmParameterException | UnsupportedEncodingException
-                 | IllegalBlockSizeException | BadPaddingException e) {
+            return cipher.doFinal(plainText);
+        } catch (GeneralSecurityException e) {
             e.printStackTrace();
             return null;
         }
     }
 
     public static String decryptString(SecretKey key, String cipherText) {
+        byte[] decryptedBytes = decryptString(key, hexToBytes(cipherText));
+        return decryptedBytes == null ? null : new String(decryptedBytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Byte-oriented form of {@link #decryptString(SecretKey, String)}, taking the raw ciphertext.
+     */
+    public static byte[] decryptString(SecretKey key, byte[] cipherText) {
         try {
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding", "BC");
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
+            Cipher cipher = ProviderRouter.shared().cipher("AES/GCM/NoPadding");
+            GCMParameterSpec ivSpec = new GCMParameterSpec(128, iv);
             cipher.init(Cipher.DECRYPT_MODE, key, ivSpec);
-            byte[] decryptedBytes = cipher.doFinal(hexToBytes(cipherText));
-            return new String(decryptedBytes, "UTF-8");
-        } catch (NoSuchAlgorithmException | NoSuchProviderException | NoSuchPaddingException
-                 | InvalidKeyException | InvalidAlgorithmParameterException | UnsupportedEncodingException
-                 | IllegalBlockSizeException | BadPaddingException e) {
+            return cipher.doFinal(cipherText);
+        } catch (GeneralSecurityException e) {
             e.printStackTrace();
             return null;
         }
     }
 
     public static String bytesToHex(byte[] data) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : data) {
-            sb.append(String.format("%02X", b));
-        }
-        return sb.toString();
+        char[] hex = new char[TextCodec.hexLength(data.length)];
+        TextCodec.encodeHex(data, 0, data.length, hex, 0);
+        return new String(hex);
     }
 
     public static byte[] hexToBytes(String hexString) {
-        int len = hexString.length();
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(hexString.charAt(i), 16) << 4)
-                    + Character.digit(hexString.charAt(i + 1), 16));
-        }
+        byte[] data = new byte[hexString.length() / 2];
+        TextCodec.decodeHex(hexString, 0, hexString.length(), data, 0);
         return data;
     }
 }
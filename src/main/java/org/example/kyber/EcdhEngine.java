@@ -0,0 +1,55 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+/**
+ * The secp256r1 operations behind the static {@link ECDH_BC} API. Like the {@link KyberEngine}s,
+ * implementations can be swapped with {@link ECDH_BC#setEngine} or the {@code ecdh.engine} system
+ * property and compared in the timing tests.
+ */
+public interface EcdhEngine {
+
+    String ENGINE_PROPERTY = "ecdh.engine";
+
+    KeyPair generateKeyPair() throws GeneralSecurityException;
+
+    /**
+     * Generates {@code count} independent key pairs. Engines that can share work across the batch
+     * override this; the default simply calls {@link #generateKeyPair()} {@code count} times.
+     */
+    default KeyPair[] generateKeyPairs(int count) throws GeneralSecurityException {
+        KeyPair[] keyPairs = new KeyPair[count];
+        for (int i = 0; i < count; i++) {
+            keyPairs[i] = generateKeyPair();
+        }
+        return keyPairs;
+    }
+
+    SecretKey generateSharedSecret(PrivateKey privateKey, PublicKey publicKey) throws GeneralSecurityException;
+
+    /**
+     * Returns the engine registered under {@code name}: "jca" creates fresh JCA instances on every
+     * call, "cached" keeps them per thread and "fixedbase" also generates keys from a precomputed
+     * table of multiples of the generator point.
+     */
+    static EcdhEngine forName(String name) {
+        switch (name.toLowerCase()) {
+            case "jca":
+                return new JcaEcdhEngine();
+            case "cached":
+                return new CachedJcaEcdhEngine();
+            case "fixedbase":
+                return new FixedBaseEcdhEngine();
+            default:
+                throw new IllegalArgumentException("Unknown ECDH engine: " + name);
+        }
+    }
+}
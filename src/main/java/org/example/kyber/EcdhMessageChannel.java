@@ -0,0 +1,287 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AES-256-GCM message channel bound to one ECDH shared secret ({@link ECDH_BC#generateSharedSecret}).
+ * Unlike {@link ECDH_BC#encryptString}, which uses the same IV for every call, a channel can carry
+ * any number of messages under one agreement. Every message is self-contained:
+ * <pre>
+ *     sequence number (8) | AES-GCM(plaintext) | tag (16)
+ * </pre>
+ * Each direction has its own key and IV, derived from the shared secret with HKDF-SHA256, and a
+ * message's nonce is that IV XOR its 64-bit sequence number ({@link AeadDirection}), so nonces
+ * never repeat. The sequence number and the caller's additional data, if any, are authenticated.
+ * Messages may arrive out of order; one that was already opened, or that is {@value #REPLAY_WINDOW}
+ * or more behind the newest one, is rejected.
+ * <p>
+ * Each direction keeps one {@link Cipher} for the channel's whole life. Batches of messages are
+ * sealed into buffers from a {@link BufferPool}, each holding length-prefixed messages, and opened
+ * into one reused buffer, so a steady stream of batches allocates no buffers. One thread may seal
+ * while another opens.
+ */
+public class EcdhMessageChannel implements AutoCloseable {
+
+    public static final int SEQUENCE_LENGTH = 8;
+    public static final int TAG_LENGTH = AeadDirection.TAG_LENGTH;
+    public static final int OVERHEAD = SEQUENCE_LENGTH + TAG_LENGTH;
+    public static final int REPLAY_WINDOW = 64;
+    public static final int DEFAULT_BATCH_SIZE = 1 << 16;
+
+    private static final int LENGTH_PREFIX = 4;
+    private static final byte[] INITIATOR_INFO = "ecdh message initiator v1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESPONDER_INFO = "ecdh message responder v1".getBytes(StandardCharsets.US_ASCII);
+    private static final BufferPool SHARED_POOL = new BufferPool(DEFAULT_BATCH_SIZE, BufferPool.DEFAULT_CAPACITY);
+
+    /**
+     * Receives the messages of a batch. The plaintext buffer is reused for the next message.
+     */
+    public interface MessageHandler {
+        void message(ByteBuffer plaintext) throws GeneralSecurityException;
+    }
+
+    private final Direction sending;
+    private final Direction receiving;
+    private final BufferPool pool;
+    private ByteBuffer opened;
+    private long highestOpened = -1;
+    private long openedWindow;
+
+    private EcdhMessageChannel(SecretKey sharedSecret, byte[] sendingInfo, byte[] receivingInfo, BufferPool pool)
+            throws GeneralSecurityException {
+        byte[] secret = sharedSecret.getEncoded();
+        this.sending = new Direction(secret, sendingInfo);
+        this.receiving = new Direction(secret, receivingInfo);
+        this.pool = pool;
+    }
+
+    /**
+     * The end of the party that started the exchange; the peer uses {@link #responder}.
+     */
+    public static EcdhMessageChannel initiator(SecretKey sharedSecret) throws GeneralSecurityException {
+        return initiator(sharedSecret, SHARED_POOL);
+    }
+
+    public static EcdhMessageChannel initiator(SecretKey sharedSecret, BufferPool pool) throws GeneralSecurityException {
+        return new EcdhMessageChannel(sharedSecret, INITIATOR_INFO, RESPONDER_INFO, pool);
+    }
+
+    public static EcdhMessageChannel responder(SecretKey sharedSecret) throws GeneralSecurityException {
+        return responder(sharedSecret, SHARED_POOL);
+    }
+
+    public static EcdhMessageChannel responder(SecretKey sharedSecret, BufferPool pool) throws GeneralSecurityException {
+        return new EcdhMessageChannel(sharedSecret, RESPONDER_INFO, INITIATOR_INFO, pool);
+    }
+
+    public static int sealedLength(int plaintextLength) {
+        return OVERHEAD + plaintextLength;
+    }
+
+    /**
+     * Seals everything remaining in {@code plaintext} as one message into {@code dst} and returns
+     * the number of bytes written. {@code aad} may be null; its position is left unchanged.
+     */
+    public int seal(ByteBuffer plaintext, ByteBuffer aad, ByteBuffer dst) throws GeneralSecurityException {
+        int length = sealedLength(plaintext.remaining());
+        if (dst.remaining() < length) {
+            throw new ShortBufferException("Message needs " + length + " bytes, buffer has " + dst.remaining());
+        }
+        long sequence = sending.nextSequence();
+        Cipher cipher = sending.init(Cipher.ENCRYPT_MODE, sequence, aad);
+        dst.putLong(sequence);
+        cipher.doFinal(plaintext, dst);
+        return length;
+    }
+
+    public byte[] seal(byte[] plaintext, byte[] aad) throws GeneralSecurityException {
+        byte[] message = new byte[sealedLength(plaintext.length)];
+        seal(ByteBuffer.wrap(plaintext), aad == null ? null : ByteBuffer.wrap(aad), ByteBuffer.wrap(message));
+        return message;
+    }
+
+    /**
+     * Opens the message between the position and the limit of {@code message} into {@code dst} and
+     * returns the plaintext length. Fails if the message was tampered with, sealed with other
+     * additional data, or replayed.
+     */
+    public int open(ByteBuffer message, ByteBuffer aad, ByteBuffer dst) throws GeneralSecurityException {
+        if (message.remaining() < OVERHEAD) {
+            throw new GeneralSecurityException("Message of " + message.remaining() + " bytes is shorter than its overhead");
+        }
+        int length = message.remaining() - OVERHEAD;
+        if (dst.remaining() < length) {
+            throw new ShortBufferException("Plaintext needs " + length + " bytes, buffer has " + dst.remaining());
+        }
+        long sequence = message.getLong();
+        if (!isFresh(sequence)) {
+            throw new GeneralSecurityException("Replayed or outdated message " + sequence);
+        }
+        Cipher cipher = receiving.init(Cipher.DECRYPT_MODE, sequence, aad);
+        cipher.doFinal(message, dst);
+        markOpened(sequence);
+        return length;
+    }
+
+    public byte[] open(byte[] message, byte[] aad) throws GeneralSecurityException {
+        byte[] plaintext = new byte[Math.max(0, message.length - OVERHEAD)];
+        open(ByteBuffer.wrap(message), aad == null ? null : ByteBuffer.wrap(aad), ByteBuffer.wrap(plaintext));
+        return plaintext;
+    }
+
+    /**
+     * Seals every plaintext, consuming them, with the same additional data. The messages are
+     * written into as few pool buffers as they fit, each one a sequence of
+     * {@code length (4) | message}, flipped and ready to send. Hand the buffers back with
+     * {@link #release} once sent.
+     */
+    public List<ByteBuffer> sealBatch(List<ByteBuffer> plaintexts, ByteBuffer aad) throws GeneralSecurityException {
+        List<ByteBuffer> batches = new ArrayList<>();
+        ByteBuffer batch = pool.acquire();
+        for (ByteBuffer plaintext : plaintexts) {
+            int length = sealedLength(plaintext.remaining());
+            if (LENGTH_PREFIX + length > pool.getBufferSize()) {
+                release(batch);
+                batches.forEach(this::release);
+                throw new IllegalArgumentException("Message of " + plaintext.remaining() + " bytes does not fit a batch buffer");
+            }
+            if (batch.remaining() < LENGTH_PREFIX + length) {
+                batch.flip();
+                batches.add(batch);
+                batch = pool.acquire();
+            }
+            batch.putInt(length);
+            seal(plaintext, aad, batch);
+        }
+        batch.flip();
+        batches.add(batch);
+        return batches;
+    }
+
+    /**
+     * Opens every message of a batch written by {@link #sealBatch}, in order, and passes each
+     * plaintext to {@code handler}. Returns the number of messages; stops at the first one that
+     * fails to open.
+     */
+    public int openBatch(ByteBuffer batch, ByteBuffer aad, MessageHandler handler) throws GeneralSecurityException {
+        if (opened == null) {
+            opened = pool.acquire();
+        }
+        int limit = batch.limit();
+        int count = 0;
+        while (batch.hasRemaining()) {
+            if (batch.remaining() < LENGTH_PREFIX) {
+                throw new GeneralSecurityException("Truncated batch");
+            }
+            int length = batch.getInt();
+            if (length < OVERHEAD || length > batch.remaining()) {
+                throw new GeneralSecurityException("Invalid message length " + length + " in batch");
+            }
+            int end = batch.position() + length;
+            batch.limit(end);
+            opened.clear();
+            try {
+                open(batch, aad, opened);
+            } finally {
+                batch.limit(limit).position(end);
+            }
+            opened.flip();
+            handler.message(opened);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Hands a buffer returned by {@link #sealBatch} back to the pool.
+     */
+    public void release(ByteBuffer batch) {
+        pool.release(batch);
+    }
+
+    public long getMessagesSealed() {
+        return sending.sequence;
+    }
+
+    public long getMessagesOpened() {
+        return receiving.sequence;
+    }
+
+    /**
+     * Hands the channel's own buffer back to the pool.
+     */
+    @Override
+    public void close() {
+        if (opened != null) {
+            pool.release(opened);
+            opened = null;
+        }
+    }
+
+    private boolean isFresh(long sequence) {
+        if (sequence < 0) {
+            return false;
+        }
+        if (sequence > highestOpened) {
+            return true;
+        }
+        long age = highestOpened - sequence;
+        return age < REPLAY_WINDOW && (openedWindow >>> age & 1) == 0;
+    }
+
+    private void markOpened(long sequence) {
+        if (sequence > highestOpened) {
+            long shift = sequence - highestOpened;
+            openedWindow = shift >= REPLAY_WINDOW ? 1 : openedWindow << shift | 1;
+            highestOpened = sequence;
+        } else {
+            openedWindow |= 1L << (highestOpened - sequence);
+        }
+        receiving.sequence++;
+    }
+
+    /**
+     * One direction's key, IV and cipher, and its message counter.
+     */
+    private static final class Direction {
+        final AeadDirection aead;
+        final byte[] sequenceBytes = new byte[SEQUENCE_LENGTH];
+        long sequence;
+
+        Direction(byte[] secret, byte[] info) throws GeneralSecurityException {
+            this.aead = new AeadDirection(secret, info);
+        }
+
+        long nextSequence() {
+            if (sequence < 0) {
+                throw new IllegalStateException("Message sequence numbers exhausted; agree on a new key");
+            }
+            return sequence++;
+        }
+
+        Cipher init(int mode, long sequence, ByteBuffer aad) throws GeneralSecurityException {
+            Cipher cipher = aead.init(mode, sequence);
+            for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+                sequenceBytes[SEQUENCE_LENGTH - 1 - i] = (byte) (sequence >>> (8 * i));
+            }
+            cipher.updateAAD(sequenceBytes);
+            if (aad != null) {
+                int position = aad.position();
+                cipher.updateAAD(aad);
+                aad.position(position);
+            }
+            return cipher;
+        }
+    }
+}
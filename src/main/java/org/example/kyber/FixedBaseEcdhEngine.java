@@ -0,0 +1,90 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.asn1.sec.SECObjectIdentifiers;
+import org.bouncycastle.crypto.params.ECNamedDomainParameters;
+import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.bouncycastle.jcajce.provider.asymmetric.ec.BCECPrivateKey;
+import org.bouncycastle.jcajce.provider.asymmetric.ec.BCECPublicKey;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.WNafUtil;
+import org.bouncycastle.util.BigIntegers;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.SecureRandom;
+
+import static org.example.kyber.JcaEcdhEngine.ALGORITHM;
+
+/**
+ * {@link CachedJcaEcdhEngine} whose key generation skips the JCA generator: the private scalar is
+ * drawn the way BouncyCastle's {@code ECKeyPairGenerator} draws it, and the public point comes
+ * from a {@link GeneratorTable} for secp256r1 built once per JVM (about 170 KB, a few milliseconds).
+ * The keys are ordinary {@link BCECPublicKey}/{@link BCECPrivateKey} instances that encode and
+ * agree exactly like the ones the JCA generator returns. Key agreement is inherited unchanged.
+ * <p>
+ * {@link #generateKeyPairs} multiplies the whole batch at once with
+ * {@link GeneratorTable#multiplyAll}, sharing every field inversion across the batch, which makes
+ * a key about a third cheaper once the batch holds a hundred or so keys.
+ */
+public class FixedBaseEcdhEngine extends CachedJcaEcdhEngine {
+
+    static final ECNamedDomainParameters DOMAIN = new ECNamedDomainParameters(SECObjectIdentifiers.secp256r1, CURVE);
+
+    private static final BigInteger ORDER = CURVE.getN();
+    private static final int MIN_NAF_WEIGHT = ORDER.bitLength() >>> 2;
+
+    static final class Table {
+        static final GeneratorTable INSTANCE = new GeneratorTable(CURVE.getG(), ORDER);
+    }
+
+    @Override
+    public KeyPair generateKeyPair() {
+        BigInteger d = generatePrivateScalar(random());
+        return toKeyPair(d, Table.INSTANCE.multiply(d));
+    }
+
+    @Override
+    public KeyPair[] generateKeyPairs(int count) {
+        SecureRandom random = random();
+        BigInteger[] scalars = new BigInteger[count];
+        for (int i = 0; i < count; i++) {
+            scalars[i] = generatePrivateScalar(random);
+        }
+        ECPoint[] points = Table.INSTANCE.multiplyAll(scalars);
+        KeyPair[] keyPairs = new KeyPair[count];
+        for (int i = 0; i < count; i++) {
+            keyPairs[i] = toKeyPair(scalars[i], points[i]);
+        }
+        return keyPairs;
+    }
+
+    /**
+     * A uniform scalar in [1, n - 1], rejecting the rare ones with a low NAF weight as
+     * BouncyCastle's own generator does.
+     */
+    static BigInteger generatePrivateScalar(SecureRandom random) {
+        while (true) {
+            BigInteger d = BigIntegers.createRandomBigInteger(ORDER.bitLength(), random);
+            if (d.signum() > 0 && d.compareTo(ORDER) < 0 && WNafUtil.getNafWeight(d) >= MIN_NAF_WEIGHT) {
+                return d;
+            }
+        }
+    }
+
+    /**
+     * Wraps a private scalar and its normalized public point into JCA keys.
+     */
+    static KeyPair toKeyPair(BigInteger d, ECPoint q) {
+        BCECPublicKey publicKey = new BCECPublicKey(ALGORITHM, new ECPublicKeyParameters(q, DOMAIN),
+                PARAMETER_SPEC, BouncyCastleProvider.CONFIGURATION);
+        BCECPrivateKey privateKey = new BCECPrivateKey(ALGORITHM, new ECPrivateKeyParameters(d, DOMAIN),
+                publicKey, PARAMETER_SPEC, BouncyCastleProvider.CONFIGURATION);
+        return new KeyPair(publicKey, privateKey);
+    }
+}
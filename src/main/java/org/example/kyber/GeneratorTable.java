@@ -0,0 +1,171 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECFieldElement;
+import org.bouncycastle.math.ec.ECLookupTable;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.raw.Nat256;
+
+import java.math.BigInteger;
+
+/**
+ * Precomputed multiples of a fixed base point {@code G} on a 256-bit curve. The scalar is cut into
+ * {@value #WINDOW}-bit windows and window {@code i} has its own table of {@code j * 2^(6i) * G}, so
+ * a multiplication is one table lookup and one point addition per window and no doubling steps.
+ * <p>
+ * Every lookup reads the whole window table, so the memory access pattern does not depend on the
+ * scalar. To keep every window non-zero, the tables hold the digits 1 to 64 and the scalar is
+ * multiplied as {@code (k - C) + C} with {@code C = sum of 2^(6i)}: the digits of {@code k - C} mod
+ * {@code n} are each one less than the digit actually added. The point additions themselves are
+ * BouncyCastle's, which branch on the doubling and infinity cases.
+ * <p>
+ * Doubling is not rare: when the digits of {@code k - C} are 63 in windows 0 to {@code i - 1} and 0
+ * in window {@code i}, the running sum is exactly {@code 2^(6i) * G}, the addend of window
+ * {@code i}. At window 1 that is one scalar in 4096, so {@link #multiplyAll} must keep its generic
+ * addition for equal x coordinates, and the scalar does leak through that branch.
+ */
+final class GeneratorTable {
+
+    static final int WINDOW = 6;
+    static final int CHUNK = 128;
+
+    private static final int WINDOWS = (256 + WINDOW - 1) / WINDOW;
+    private static final int MASK = (1 << WINDOW) - 1;
+
+    private final ECCurve curve;
+    private final BigInteger order;
+    private final BigInteger offset;
+    private final ECLookupTable[] tables = new ECLookupTable[WINDOWS];
+
+    GeneratorTable(ECPoint generator, BigInteger order) {
+        this.curve = generator.getCurve();
+        this.order = order;
+        BigInteger offset = BigInteger.ZERO;
+        ECPoint base = generator.normalize();
+        for (int i = 0; i < WINDOWS; i++) {
+            ECPoint[] multiples = new ECPoint[1 << WINDOW];
+            multiples[0] = base;
+            for (int j = 1; j < multiples.length; j++) {
+                multiples[j] = multiples[j - 1].add(base);
+            }
+            curve.normalizeAll(multiples);
+            tables[i] = curve.createCacheSafeLookupTable(multiples, 0, multiples.length);
+            base = multiples[multiples.length - 1];
+            offset = offset.setBit(i * WINDOW);
+        }
+        this.offset = offset;
+    }
+
+    /**
+     * Returns {@code k * G} in affine coordinates.
+     */
+    ECPoint multiply(BigInteger k) {
+        int[] digits = Nat256.fromBigInteger(k.subtract(offset).mod(order));
+        ECPoint result = tables[0].lookup(digit(digits, 0));
+        for (int i = 1; i < WINDOWS; i++) {
+            result = result.add(tables[i].lookup(digit(digits, i)));
+        }
+        return result.normalize();
+    }
+
+    /**
+     * Returns {@code k * G} for every scalar, in affine coordinates. The batch is walked window by
+     * window and every point addition is done in affine coordinates, where it needs the inverse of
+     * {@code x2 - x1}; the inverses of one window step are computed together with Montgomery's
+     * trick, one field inversion for the whole batch plus three multiplications per point. An
+     * affine addition then costs about half of a projective one and no final conversion is needed.
+     * Large batches are processed {@value #CHUNK} points at a time: beyond that the saving on
+     * inversions is negligible and the working set stops fitting in the caches.
+     */
+    ECPoint[] multiplyAll(BigInteger[] ks) {
+        ECPoint[] points = new ECPoint[ks.length];
+        for (int off = 0; off < ks.length; off += CHUNK) {
+            multiplyAll(ks, off, Math.min(CHUNK, ks.length - off), points);
+        }
+        return points;
+    }
+
+    private void multiplyAll(BigInteger[] ks, int off, int count, ECPoint[] points) {
+        int[][] digits = new int[count][];
+        ECFieldElement[] xs = new ECFieldElement[count];
+        ECFieldElement[] ys = new ECFieldElement[count];
+        for (int j = 0; j < count; j++) {
+            digits[j] = Nat256.fromBigInteger(ks[off + j].subtract(offset).mod(order));
+            ECPoint first = tables[0].lookup(digit(digits[j], 0));
+            xs[j] = first.getXCoord();
+            ys[j] = first.getYCoord();
+        }
+        ECPoint[] addends = new ECPoint[count];
+        ECFieldElement[] inverses = new ECFieldElement[count];
+        for (int i = 1; i < WINDOWS; i++) {
+            for (int j = 0; j < count; j++) {
+                addends[j] = tables[i].lookup(digit(digits[j], i));
+                ECFieldElement dx = addends[j].getXCoord().subtract(xs[j]);
+                // equal x coordinates (a doubling, about one scalar in 4096, or a cancellation) are
+                // left to the generic addition
+                inverses[j] = dx.isZero() ? null : dx;
+            }
+            invertAll(inverses);
+            for (int j = 0; j < count; j++) {
+                ECFieldElement x2 = addends[j].getXCoord();
+                ECFieldElement y2 = addends[j].getYCoord();
+                if (inverses[j] == null) {
+                    ECPoint sum = curve.createPoint(xs[j].toBigInteger(), ys[j].toBigInteger()).add(addends[j]).normalize();
+                    xs[j] = sum.getXCoord();
+                    ys[j] = sum.getYCoord();
+                    continue;
+                }
+                ECFieldElement lambda = y2.subtract(ys[j]).multiply(inverses[j]);
+                ECFieldElement x3 = lambda.square().subtract(xs[j]).subtract(x2);
+                ys[j] = lambda.multiply(xs[j].subtract(x3)).subtract(ys[j]);
+                xs[j] = x3;
+            }
+        }
+        for (int j = 0; j < count; j++) {
+            points[off + j] = curve.createPoint(xs[j].toBigInteger(), ys[j].toBigInteger());
+        }
+    }
+
+    /**
+     * Replaces every non-null element by its inverse, with a single field inversion.
+     */
+    private static void invertAll(ECFieldElement[] elements) {
+        ECFieldElement[] products = new ECFieldElement[elements.length];
+        ECFieldElement product = null;
+        for (int j = 0; j < elements.length; j++) {
+            if (elements[j] != null) {
+                product = product == null ? elements[j] : product.multiply(elements[j]);
+            }
+            products[j] = product;
+        }
+        if (product == null) {
+            return;
+        }
+        ECFieldElement inverse = product.invert();
+        for (int j = elements.length - 1; j >= 0; j--) {
+            if (elements[j] == null) {
+                continue;
+            }
+            // the product of the elements before this one, if there are any
+            ECFieldElement before = j == 0 ? null : products[j - 1];
+            ECFieldElement element = elements[j];
+            elements[j] = before == null ? inverse : inverse.multiply(before);
+            inverse = inverse.multiply(element);
+        }
+    }
+
+    private static int digit(int[] words, int window) {
+        int bit = window * WINDOW;
+        int word = bit >>> 5;
+        int shift = bit & 31;
+        int value = words[word] >>> shift;
+        if (shift > 32 - WINDOW && word + 1 < words.length) {
+            value |= words[word + 1] << (32 - shift);
+        }
+        return value & MASK;
+    }
+}
@@ -0,0 +1,160 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
+import org.bouncycastle.crypto.params.HKDFParameters;
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hybrid key exchange combining ECDH on secp256r1 ({@link ECDH_BC}) with Kyber ({@link KyberExample}).
+ * The two shared secrets are fed to HKDF-SHA256, together with the sender's ephemeral EC public key
+ * and the Kyber encapsulation, so the result is secure as long as either half is. In every call the
+ * Kyber half runs on a background thread while the ECDH half runs on the caller, so the latency is
+ * close to the slower of the two rather than their sum.
+ */
+public class HybridKeyExchange {
+
+    public static final int SHARED_SECRET_LENGTH = 32;
+
+    private static final byte[] INFO = "ECDH-secp256r1+Kyber hybrid v1".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ExecutorService KYBER_EXECUTOR;
+
+    static {
+        AtomicInteger threadCount = new AtomicInteger();
+        KYBER_EXECUTOR = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+            Thread thread = new Thread(runnable, "hybrid-kyber-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Long-term (or ephemeral) key material of the receiving side.
+     */
+    public static class HybridKeyPair {
+        private final KeyPair ecKeyPair;
+        private final KeyPair kyberKeyPair;
+
+        public HybridKeyPair(KeyPair ecKeyPair, KeyPair kyberKeyPair) {
+            this.ecKeyPair = ecKeyPair;
+            this.kyberKeyPair = kyberKeyPair;
+        }
+
+        public KeyPair getEcKeyPair() {
+            return ecKeyPair;
+        }
+
+        public KeyPair getKyberKeyPair() {
+            return kyberKeyPair;
+        }
+    }
+
+    /**
+     * What the sender keeps (the shared secret) and what it sends (its ephemeral EC public key and
+     * the Kyber encapsulation).
+     */
+    public static class SenderResult {
+        private final PublicKey ephemeralEcPublicKey;
+        private final byte[] kyberEncapsulation;
+        private final byte[] sharedSecret;
+
+        SenderResult(PublicKey ephemeralEcPublicKey, byte[] kyberEncapsulation, byte[] sharedSecret) {
+            this.ephemeralEcPublicKey = ephemeralEcPublicKey;
+            this.kyberEncapsulation = kyberEncapsulation;
+            this.sharedSecret = sharedSecret;
+        }
+
+        public PublicKey getEphemeralEcPublicKey() {
+            return ephemeralEcPublicKey;
+        }
+
+        public byte[] getKyberEncapsulation() {
+            return kyberEncapsulation;
+        }
+
+        public byte[] getSharedSecret() {
+            return sharedSecret;
+        }
+    }
+
+    public static HybridKeyPair generateKeyPair(KyberParameterSpec kyberParameterSpec) throws Exception {
+        Future<KeyPair> kyberKeyPair = KYBER_EXECUTOR.submit(() -> KyberExample.generateKeyPair(kyberParameterSpec));
+        KeyPair ecKeyPair = ECDH_BC.generateECKeys();
+        if (ecKeyPair == null) {
+            kyberKeyPair.cancel(true);
+            throw new GeneralSecurityException("ECDH key generation failed");
+        }
+        return new HybridKeyPair(ecKeyPair, await(kyberKeyPair));
+    }
+
+    public static SenderResult generateSecretSender(PublicKey ecPublicKey, PublicKey kyberPublicKey) throws Exception {
+        Future<SecretKeyWithEncapsulation> kyberHalf = KYBER_EXECUTOR.submit(() -> KyberExample.generateSecretKeySender(kyberPublicKey));
+        KeyPair ephemeralEcKeyPair = ECDH_BC.generateECKeys();
+        byte[] ecdhSecret = ephemeralEcKeyPair == null ? null : agree(ephemeralEcKeyPair.getPrivate(), ecPublicKey);
+        if (ecdhSecret == null) {
+            kyberHalf.cancel(true);
+            throw new GeneralSecurityException("ECDH half of the hybrid exchange failed");
+        }
+        SecretKeyWithEncapsulation kyberSecret = await(kyberHalf);
+        byte[] sharedSecret = combine(ecdhSecret, kyberSecret.getEncoded(), ephemeralEcKeyPair.getPublic(), kyberSecret.getEncapsulation());
+        return new SenderResult(ephemeralEcKeyPair.getPublic(), kyberSecret.getEncapsulation(), sharedSecret);
+    }
+
+    public static byte[] generateSecretReceiver(HybridKeyPair keyPair, PublicKey ephemeralEcPublicKey, byte[] kyberEncapsulation) throws Exception {
+        Future<SecretKeyWithEncapsulation> kyberHalf = KYBER_EXECUTOR.submit(() ->
+                KyberExample.generateSecretKeyReceiver(keyPair.getKyberKeyPair().getPrivate(), kyberEncapsulation));
+        byte[] ecdhSecret = agree(keyPair.getEcKeyPair().getPrivate(), ephemeralEcPublicKey);
+        if (ecdhSecret == null) {
+            kyberHalf.cancel(true);
+            throw new GeneralSecurityException("ECDH half of the hybrid exchange failed");
+        }
+        return combine(ecdhSecret, await(kyberHalf).getEncoded(), ephemeralEcPublicKey, kyberEncapsulation);
+    }
+
+    static byte[] combine(byte[] ecdhSecret, byte[] kyberSecret, PublicKey ephemeralEcPublicKey, byte[] kyberEncapsulation) {
+        byte[] ikm = new byte[ecdhSecret.length + kyberSecret.length];
+        System.arraycopy(ecdhSecret, 0, ikm, 0, ecdhSecret.length);
+        System.arraycopy(kyberSecret, 0, ikm, ecdhSecret.length, kyberSecret.length);
+
+        byte[] ephemeralKey = ephemeralEcPublicKey.getEncoded();
+        byte[] info = new byte[INFO.length + ephemeralKey.length + kyberEncapsulation.length];
+        System.arraycopy(INFO, 0, info, 0, INFO.length);
+        System.arraycopy(ephemeralKey, 0, info, INFO.length, ephemeralKey.length);
+        System.arraycopy(kyberEncapsulation, 0, info, INFO.length + ephemeralKey.length, kyberEncapsulation.length);
+
+        HKDFBytesGenerator hkdf = new HKDFBytesGenerator(new SHA256Digest());
+        hkdf.init(new HKDFParameters(ikm, null, info));
+        byte[] sharedSecret = new byte[SHARED_SECRET_LENGTH];
+        hkdf.generateBytes(sharedSecret, 0, sharedSecret.length);
+        return sharedSecret;
+    }
+
+    private static byte[] agree(PrivateKey privateKey, PublicKey publicKey) {
+        SecretKey secretKey = ECDH_BC.generateSharedSecret(privateKey, publicKey);
+        return secretKey == null ? null : secretKey.getEncoded();
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+}
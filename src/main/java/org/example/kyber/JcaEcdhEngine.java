@@ -0,0 +1,44 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.jce.ECNamedCurveTable;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.jce.spec.ECNamedCurveParameterSpec;
+
+import javax.crypto.KeyAgreement;
+import javax.crypto.SecretKey;
+import java.security.*;
+
+/**
+ * Looks the curve and every primitive up through the JCA on each call. This is the original
+ * behaviour of {@link ECDH_BC} and the reference the other engines are measured against.
+ */
+public class JcaEcdhEngine implements EcdhEngine {
+    static final String CURVE_NAME = "secp256r1";
+    static final String ALGORITHM = "ECDH";
+    static final String PROVIDER = "BC";
+    static final String SECRET_KEY_ALGORITHM = "AES";
+
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @Override
+    public KeyPair generateKeyPair() throws GeneralSecurityException {
+        ECNamedCurveParameterSpec parameterSpec = ECNamedCurveTable.getParameterSpec(CURVE_NAME);
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(ALGORITHM, PROVIDER);
+        keyPairGenerator.initialize(parameterSpec, KyberRandom.current());
+        return keyPairGenerator.generateKeyPair();
+    }
+
+    @Override
+    public SecretKey generateSharedSecret(PrivateKey privateKey, PublicKey publicKey) throws GeneralSecurityException {
+        KeyAgreement keyAgreement = KeyAgreement.getInstance(ALGORITHM, PROVIDER);
+        keyAgreement.init(privateKey);
+        keyAgreement.doPhase(publicKey, true);
+        return keyAgreement.generateSecret(SECRET_KEY_ALGORITHM);
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.jcajce.spec.KEMExtractSpec;
+import org.bouncycastle.jcajce.spec.KEMGenerateSpec;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.*;
+
+/**
+ * Looks every primitive up through the JCA on each call. This is the original behaviour of
+ * {@link KyberExample} and the reference the other engines are measured against.
+ */
+public class JcaKyberEngine implements KyberEngine {
+    static final String KEM_ALGORITHM = "Kyber";
+    static final String PROVIDER = "BCPQC";
+    static final String ENCRYPTION_ALGORITHM = "AES";
+    static final String MODE_PADDING = "AES/ECB/PKCS5Padding";
+    static final String SECRET_KEY_ALGORITHM = "Secret";
+
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+        Security.addProvider(new BouncyCastlePQCProvider());
+    }
+
+    @Override
+    public byte[] encrypt(byte[] plainBytes, byte[] key) throws Exception {
+        SecretKeySpec secretKey = new SecretKeySpec(key, ENCRYPTION_ALGORITHM);
+        Cipher cipher = Cipher.getInstance(MODE_PADDING);
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+        return cipher.doFinal(plainBytes);
+    }
+
+    @Override
+    public byte[] decrypt(byte[] encryptedBytes, byte[] key) throws Exception {
+        SecretKeySpec secretKey = new SecretKeySpec(key, ENCRYPTION_ALGORITHM);
+        Cipher cipher = Cipher.getInstance(MODE_PADDING);
+        cipher.init(Cipher.DECRYPT_MODE, secretKey);
+        return cipher.doFinal(encryptedBytes);
+    }
+
+    @Override
+    public KeyPair generateKeyPair(KyberParameterSpec kyberParameterSpec) throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(KEM_ALGORITHM, PROVIDER);
+        keyPairGenerator.initialize(kyberParameterSpec, KyberRandom.current());
+        return keyPairGenerator.generateKeyPair();
+    }
+
+    @Override
+    public SecretKeyWithEncapsulation generateSecretKeySender(PublicKey publicKey) throws Exception {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance(KEM_ALGORITHM, PROVIDER);
+        KEMGenerateSpec kemGenerateSpec = new KEMGenerateSpec(publicKey, SECRET_KEY_ALGORITHM);
+        keyGenerator.init(kemGenerateSpec, KyberRandom.current());
+        return (SecretKeyWithEncapsulation) keyGenerator.generateKey();
+    }
+
+    @Override
+    public SecretKeyWithEncapsulation generateSecretKeyReceiver(PrivateKey privateKey, byte[] encapsulation) throws Exception {
+        KEMExtractSpec kemExtractSpec = new KEMExtractSpec(privateKey, encapsulation, SECRET_KEY_ALGORITHM);
+        KeyGenerator keyGenerator = KeyGenerator.getInstance(KEM_ALGORITHM, PROVIDER);
+        keyGenerator.init(kemExtractSpec);
+        return (SecretKeyWithEncapsulation) keyGenerator.generateKey();
+    }
+}
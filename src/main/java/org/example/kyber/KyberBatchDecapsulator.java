@@ -0,0 +1,203 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKEMExtractor;
+
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decapsulation service for one long-lived private key. Encapsulations are queued by
+ * {@link #submit(byte[])} and drained by worker threads in micro-batches of up to
+ * {@code maxBatchSize}. The key is held as a {@link PreparedKyberPrivateKey}, so each worker reuses
+ * its own {@link KyberKEMExtractor}, and the future of every request is completed by the worker that
+ * handled it. Requests may also name their own prepared key, so one set of workers can serve
+ * several keys at once, e.g. the current and the previous key of a rotating server.
+ */
+public class KyberBatchDecapsulator implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 32;
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    private final PreparedKyberPrivateKey privateKey;
+    private final int maxBatchSize;
+    private final BlockingQueue<Request> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile boolean closed;
+
+    public KyberBatchDecapsulator(PrivateKey privateKey) throws GeneralSecurityException {
+        this(privateKey, Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public KyberBatchDecapsulator(PrivateKey privateKey, int workerCount, int maxBatchSize, int queueCapacity)
+            throws GeneralSecurityException {
+        this(new PreparedKyberPrivateKey(privateKey), workerCount, maxBatchSize, queueCapacity);
+    }
+
+    /**
+     * A decapsulator without a default key; every request must name its key.
+     */
+    public KyberBatchDecapsulator(int workerCount, int maxBatchSize, int queueCapacity) {
+        this((PreparedKyberPrivateKey) null, workerCount, maxBatchSize, queueCapacity);
+    }
+
+    private KyberBatchDecapsulator(PreparedKyberPrivateKey privateKey, int workerCount, int maxBatchSize, int queueCapacity) {
+        if (workerCount <= 0 || maxBatchSize <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("workerCount, maxBatchSize and queueCapacity must be positive");
+        }
+        this.privateKey = privateKey;
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::run, "kyber-decapsulator-" + (i + 1));
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues {@code encapsulation} for decapsulation, waiting for space if the queue is full. If the
+     * decapsulator is closed meanwhile, the returned future is cancelled.
+     */
+    public CompletableFuture<SecretKeyWithEncapsulation> submit(byte[] encapsulation) throws InterruptedException {
+        return submit(defaultKey(), encapsulation);
+    }
+
+    public CompletableFuture<SecretKeyWithEncapsulation> submit(PreparedKyberPrivateKey key, byte[] encapsulation) throws InterruptedException {
+        if (closed) {
+            throw new RejectedExecutionException("Decapsulator is closed");
+        }
+        Request request = new Request(key, encapsulation);
+        queue.put(request);
+        withdrawIfClosed(request);
+        return request.future;
+    }
+
+    /**
+     * Queues {@code encapsulation} without waiting; if the queue is full the returned future fails
+     * with a {@link RejectedExecutionException}. Meant for event-loop threads that must not block.
+     */
+    public CompletableFuture<SecretKeyWithEncapsulation> offer(byte[] encapsulation) {
+        return offer(defaultKey(), encapsulation);
+    }
+
+    public CompletableFuture<SecretKeyWithEncapsulation> offer(PreparedKyberPrivateKey key, byte[] encapsulation) {
+        Request request = new Request(key, encapsulation);
+        if (closed || !queue.offer(request)) {
+            request.future.completeExceptionally(new RejectedExecutionException(closed ? "Decapsulator is closed" : "Decapsulation queue is full"));
+        } else {
+            withdrawIfClosed(request);
+        }
+        return request.future;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * Stops the workers once they finish their current batch and cancels every request still
+     * queued, including ones enqueued while closing.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        // frees the room a blocked submit waits for; it then sees the flag and withdraws
+        cancelPending();
+        boolean interrupted = false;
+        for (Thread worker : workers) {
+            while (worker.isAlive() && worker != Thread.currentThread()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        cancelPending();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void cancelPending() {
+        List<Request> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        for (Request request : pending) {
+            request.future.cancel(false);
+        }
+    }
+
+    /**
+     * Called after enqueueing: a request that raced with {@link #close()} may have missed its final
+     * drain, so it takes itself back out and is cancelled. If the drain or a worker took it first,
+     * that one completes it.
+     */
+    private void withdrawIfClosed(Request request) {
+        if (closed && queue.remove(request)) {
+            request.future.cancel(false);
+        }
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            for (Request request : batch) {
+                try {
+                    request.future.complete(request.key.decapsulate(request.encapsulation));
+                } catch (RuntimeException e) {
+                    request.future.completeExceptionally(e);
+                }
+            }
+            processed.addAndGet(batch.size());
+            batches.incrementAndGet();
+            batch.clear();
+        }
+    }
+
+    private PreparedKyberPrivateKey defaultKey() {
+        if (privateKey == null) {
+            throw new IllegalStateException("This decapsulator has no default key");
+        }
+        return privateKey;
+    }
+
+    private static final class Request {
+        final PreparedKyberPrivateKey key;
+        final byte[] encapsulation;
+        final CompletableFuture<SecretKeyWithEncapsulation> future = new CompletableFuture<>();
+
+        Request(PreparedKyberPrivateKey key, byte[] encapsulation) {
+            this.key = key;
+            this.encapsulation = encapsulation;
+        }
+    }
+}
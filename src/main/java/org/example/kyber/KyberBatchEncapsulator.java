@@ -0,0 +1,96 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+
+import java.security.PublicKey;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * Encapsulates fresh shared secrets to many public keys at once, e.g. for a fleet re-key. The keys
+ * are split into ranges that run on a {@link ForkJoinPool}; each result is written to the slot of
+ * its key, so the output is in input order. The default {@link LightweightKyberEngine} keeps its
+ * KEM generator and {@code SecureRandom} per thread, so every worker draws from its own random
+ * source.
+ */
+public class KyberBatchEncapsulator {
+
+    private final ForkJoinPool pool;
+    private final KyberEngine engine;
+
+    public KyberBatchEncapsulator() {
+        this(ForkJoinPool.commonPool(), new LightweightKyberEngine());
+    }
+
+    public KyberBatchEncapsulator(ForkJoinPool pool, KyberEngine engine) {
+        this.pool = pool;
+        this.engine = engine;
+    }
+
+    public SecretKeyWithEncapsulation[] encapsulate(PublicKey[] publicKeys) throws Exception {
+        SecretKeyWithEncapsulation[] results = new SecretKeyWithEncapsulation[publicKeys.length];
+        if (publicKeys.length == 0) {
+            return results;
+        }
+        // A few ranges per worker keeps them busy when some keys are larger than others.
+        int threshold = Math.max(1, publicKeys.length / (pool.getParallelism() * 4));
+        try {
+            pool.invoke(new EncapsulateRange(publicKeys, results, 0, publicKeys.length, threshold));
+        } catch (BatchException e) {
+            throw (Exception) e.getCause();
+        }
+        return results;
+    }
+
+    public SecretKeyWithEncapsulation[] encapsulate(Stream<? extends PublicKey> publicKeys) throws Exception {
+        return encapsulate(publicKeys.toArray(PublicKey[]::new));
+    }
+
+    private final class EncapsulateRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final PublicKey[] publicKeys;
+        private final SecretKeyWithEncapsulation[] results;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        EncapsulateRange(PublicKey[] publicKeys, SecretKeyWithEncapsulation[] results, int from, int to, int threshold) {
+            this.publicKeys = publicKeys;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                for (int i = from; i < to; i++) {
+                    try {
+                        results[i] = engine.generateSecretKeySender(publicKeys[i]);
+                    } catch (Exception e) {
+                        throw new BatchException(e);
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new EncapsulateRange(publicKeys, results, from, middle, threshold),
+                    new EncapsulateRange(publicKeys, results, middle, to, threshold));
+        }
+    }
+
+    private static final class BatchException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BatchException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+/**
+ * The operations behind the static {@link KyberExample} API. Implementations differ only in how
+ * they obtain the underlying primitives, so they can be swapped with {@link KyberExample#setEngine}
+ * or the {@code kyber.engine} system property and compared in the timing tests.
+ */
+public interface KyberEngine {
+
+    String ENGINE_PROPERTY = "kyber.engine";
+
+    byte[] encrypt(byte[] plainBytes, byte[] key) throws Exception;
+
+    byte[] decrypt(byte[] encryptedBytes, byte[] key) throws Exception;
+
+    KeyPair generateKeyPair(KyberParameterSpec kyberParameterSpec) throws Exception;
+
+    SecretKeyWithEncapsulation generateSecretKeySender(PublicKey publicKey) throws Exception;
+
+    SecretKeyWithEncapsulation generateSecretKeyReceiver(PrivateKey privateKey, byte[] encapsulation) throws Exception;
+
+    /**
+     * Returns the engine registered under {@code name}: "jca" creates fresh JCA instances on every
+     * call, "cached" keeps them per thread and "lightweight" bypasses the JCA entirely.
+     */
+    static KyberEngine forName(String name) {
+        switch (name.toLowerCase()) {
+            case "jca":
+                return new JcaKyberEngine();
+            case "cached":
+                return new CachedJcaKyberEngine();
+            case "lightweight":
+                return new LightweightKyberEngine();
+            default:
+                throw new IllegalArgumentException("Unknown Kyber engine: " + name);
+        }
+    }
+}
@@ -5,60 +5,70 @@ package org.example.kyber;
  */
 
 import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
-import org.bouncycastle.jcajce.spec.KEMExtractSpec;
-import org.bouncycastle.jcajce.spec.KEMGenerateSpec;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
 import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
 
-import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
-import javax.crypto.spec.SecretKeySpec;
 import java.security.*;
 
+/**
+ * Static entry point for the Kyber operations. The work is delegated to a {@link KyberEngine},
+ * chosen with the {@code kyber.engine} system property ("jca" by default) or {@link #setEngine}.
+ */
 public class KyberExample {
-    private static final String KEM_ALGORITHM = "Kyber";
-    private static final String PROVIDER = "BCPQC";
-    private static final String ENCRYPTION_ALGORITHM = "AES";
-    private static final String MODE_PADDING = "AES/ECB/PKCS5Padding";
 
     static {
         Security.addProvider(new BouncyCastleProvider());
         Security.addProvider(new BouncyCastlePQCProvider());
     }
 
+    private static volatile KyberEngine engine = KyberEngine.forName(System.getProperty(KyberEngine.ENGINE_PROPERTY, "jca"));
+
+    public static KyberEngine getEngine() {
+        return engine;
+    }
+
+    public static void setEngine(KyberEngine kyberEngine) {
+        if (kyberEngine == null) {
+            throw new IllegalArgumentException("engine must not be null");
+        }
+        engine = kyberEngine;
+    }
+
     public static byte[] encrypt(byte[] plainBytes, byte[] key) throws Exception {
-        SecretKeySpec secretKey = new SecretKeySpec(key, ENCRYPTION_ALGORITHM);
-        Cipher cipher = Cipher.getInstance(MODE_PADDING);
-        cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-        return cipher.doFinal(plainBytes);
+        return engine.encrypt(plainBytes, key);
     }
 
     public static byte[] decrypt(byte[] encryptedBytes, byte[] key) throws Exception {
-        SecretKeySpec secretKey = new SecretKeySpec(key, ENCRYPTION_ALGORITHM);
-        Cipher cipher = Cipher.getInstance(MODE_PADDING);
-        cipher.init(Cipher.DECRYPT_MODE, secretKey);
-        return cipher.doFinal(encryptedBytes);
+        return engine.decrypt(encryptedBytes, key);
     }
 
     public static KeyPair generateKeyPair(KyberParameterSpec kyberParameterSpec) throws Exception {
-        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(KEM_ALGORITHM, PROVIDER);
-        keyPairGenerator.initialize(kyberParameterSpec, new SecureRandom());
-        return keyPairGenerator.generateKeyPair();
+        return engine.generateKeyPair(kyberParameterSpec);
     }
 
     public static SecretKeyWithEncapsulation generateSecretKeySender(PublicKey publicKey) throws Exception {
-        KeyGenerator keyGenerator = KeyGenerator.getInstance(KEM_ALGORITHM, PROVIDER);
-        KEMGenerateSpec kemGenerateSpec = new KEMGenerateSpec(publicKey, "Secret");
-        keyGenerator.init(kemGenerateSpec);
-        return (SecretKeyWithEncapsulation) keyGenerator.generateKey();
+        return engine.generateSecretKeySender(publicKey);
     }
 
     public static SecretKeyWithEncapsulation generateSecretKeyReceiver(PrivateKey privateKey, byte[] encapsulation) throws Exception {
-        KEMExtractSpec kemExtractSpec = new KEMExtractSpec(privateKey, encapsulation, "Secret");
-        KeyGenerator keyGenerator = KeyGenerator.getInstance(KEM_ALGORITHM, PROVIDER);
-        keyGenerator.init(kemExtractSpec);
-        return (SecretKeyWithEncapsulation) keyGenerator.generateKey();
+        return engine.generateSecretKeyReceiver(privateKey, encapsulation);
+    }
+
+    public static SecretKeyWithEncapsulation generateSecretKeySender(PreparedKyberPublicKey publicKey) {
+        return publicKey.generateSecretKey();
+    }
+
+    public static PreparedKyberPublicKey prepare(PublicKey publicKey) throws Exception {
+        return KyberPublicKeyCache.shared().get(publicKey);
+    }
+
+    public static PreparedKyberPrivateKey prepare(PrivateKey privateKey) throws Exception {
+        return new PreparedKyberPrivateKey(privateKey);
+    }
+
+    public static SecretKeyWithEncapsulation generateSecretKeyReceiver(PreparedKyberPrivateKey privateKey, byte[] encapsulation) {
+        return privateKey.decapsulate(encapsulation);
     }
 
 
@@ -0,0 +1,258 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+
+import java.security.KeyPair;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps pre-generated ephemeral key pairs for one {@link KyberParameterSpec} so that key generation
+ * moves off the handshake path. Pairs sit in a lock-free queue bounded by the high watermark; when
+ * the pool drops below the low watermark, background workers top it back up to the high watermark.
+ * On an empty pool, {@link #take()} starts a refill and either waits for a worker or generates the
+ * pair inline, depending on the {@link Fallback}. A worker that fails to generate a pair stops and
+ * counts the failure ({@link #getFailures()}); the next miss starts the workers again.
+ */
+public class KyberKeyPairPool implements AutoCloseable {
+
+    public enum Fallback {
+        /** Wait up to the configured timeout for a background pair, then generate inline. */
+        BLOCK,
+        /** Generate the pair on the calling thread straight away. */
+        GENERATE_INLINE
+    }
+
+    public static final int DEFAULT_LOW_WATERMARK = 16;
+    public static final int DEFAULT_HIGH_WATERMARK = 64;
+
+    private static final ConcurrentMap<KyberParameterSpec, KyberKeyPairPool> SHARED_POOLS = new ConcurrentHashMap<>();
+
+    private final KyberParameterSpec kyberParameterSpec;
+    private final KyberEngine engine;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final int workers;
+    private final Fallback fallback;
+    private final long blockTimeoutMillis;
+
+    private final Queue<KeyPair> keyPairs = new ConcurrentLinkedQueue<>();
+    // Counts queued pairs plus the slots reserved by workers that are generating one.
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile Exception lastFailure;
+    private final Object available = new Object();
+    private final ExecutorService executor;
+    private volatile boolean closed;
+
+    public KyberKeyPairPool(KyberParameterSpec kyberParameterSpec) {
+        this(kyberParameterSpec, KyberExample.getEngine(), DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK,
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2), Fallback.GENERATE_INLINE, 0);
+    }
+
+    public KyberKeyPairPool(KyberParameterSpec kyberParameterSpec, KyberEngine engine, int lowWatermark, int highWatermark,
+                            int workers, Fallback fallback, long blockTimeoutMillis) {
+        if (lowWatermark < 0 || highWatermark <= 0 || lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("Invalid watermarks: low=" + lowWatermark + ", high=" + highWatermark);
+        }
+        if (workers <= 0) {
+            throw new IllegalArgumentException("workers must be positive");
+        }
+        this.kyberParameterSpec = kyberParameterSpec;
+        this.engine = engine;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.workers = workers;
+        this.fallback = fallback;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "kyber-keypair-pool-" + kyberParameterSpec.getName() + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        refill();
+    }
+
+    /**
+     * Returns the process-wide pool for {@code kyberParameterSpec}, created with the default
+     * settings on first use.
+     */
+    public static KyberKeyPairPool forSpec(KyberParameterSpec kyberParameterSpec) {
+        return SHARED_POOLS.computeIfAbsent(kyberParameterSpec, KyberKeyPairPool::new);
+    }
+
+    public KeyPair take() throws Exception {
+        KeyPair keyPair = poll();
+        if (keyPair != null) {
+            hits.incrementAndGet();
+            return keyPair;
+        }
+        misses.incrementAndGet();
+        // an empty pool may have no worker running, e.g. after a failed generation
+        refill();
+        if (fallback == Fallback.BLOCK) {
+            keyPair = awaitKeyPair();
+            if (keyPair != null) {
+                return keyPair;
+            }
+        }
+        return engine.generateKeyPair(kyberParameterSpec);
+    }
+
+    public KyberParameterSpec getParameterSpec() {
+        return kyberParameterSpec;
+    }
+
+    /**
+     * Pairs ready to be taken, not counting the ones being generated.
+     */
+    public int size() {
+        return queued.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Key generations that failed in the background; while this grows the pool is not refilling.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * The exception of the latest failed background generation, or null.
+     */
+    public Exception getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Stops the workers and wakes every {@link Fallback#BLOCK} caller, which then generates inline.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        SHARED_POOLS.remove(kyberParameterSpec, this);
+        keyPairs.clear();
+        queued.set(0);
+        wakeWaiters();
+    }
+
+    private KeyPair poll() {
+        KeyPair keyPair = keyPairs.poll();
+        if (keyPair != null) {
+            queued.decrementAndGet();
+            size.decrementAndGet();
+            if (size.get() < lowWatermark) {
+                refill();
+            }
+        }
+        return keyPair;
+    }
+
+    private KeyPair awaitKeyPair() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + blockTimeoutMillis;
+        waiters.incrementAndGet();
+        try {
+            synchronized (available) {
+                KeyPair keyPair;
+                long remaining;
+                while ((keyPair = poll()) == null && !closed && activeWorkers.get() > 0
+                        && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                    available.wait(remaining);
+                }
+                return keyPair;
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    private void refill() {
+        if (closed || !activeWorkers.compareAndSet(0, workers)) {
+            return;
+        }
+        for (int i = 0; i < workers; i++) {
+            try {
+                executor.execute(this::fillToHighWatermark);
+            } catch (RejectedExecutionException e) {
+                activeWorkers.set(0);
+                return;
+            }
+        }
+    }
+
+    private void fillToHighWatermark() {
+        boolean failed = false;
+        try {
+            while (!closed && reserveSlot()) {
+                KeyPair keyPair;
+                try {
+                    keyPair = engine.generateKeyPair(kyberParameterSpec);
+                } catch (Exception e) {
+                    size.decrementAndGet();
+                    if (closed) {
+                        // interrupted by close()
+                        return;
+                    }
+                    failed = true;
+                    failures.incrementAndGet();
+                    lastFailure = e;
+                    e.printStackTrace();
+                    return;
+                }
+                keyPairs.offer(keyPair);
+                queued.incrementAndGet();
+                wakeWaiters();
+            }
+        } finally {
+            // after a failure, retrying right away would spin; the next miss retries instead
+            if (activeWorkers.decrementAndGet() == 0) {
+                if (!failed && size.get() < lowWatermark) {
+                    refill();
+                }
+                // waiters stop waiting once no worker is left
+                wakeWaiters();
+            }
+        }
+    }
+
+    private void wakeWaiters() {
+        if (waiters.get() > 0) {
+            synchronized (available) {
+                available.notifyAll();
+            }
+        }
+    }
+
+    private boolean reserveSlot() {
+        int current;
+        do {
+            current = size.get();
+            if (current >= highWatermark) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        return true;
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberParameters;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+
+/**
+ * The Kyber parameter sets with their wire identifier and fixed encoded sizes, linking the JCA
+ * {@link KyberParameterSpec} to the lightweight {@link KyberParameters}.
+ */
+public enum KyberParameterSet {
+    KYBER512((byte) 1, 2, 768, KyberParameterSpec.kyber512, KyberParameters.kyber512),
+    KYBER768((byte) 2, 3, 1088, KyberParameterSpec.kyber768, KyberParameters.kyber768),
+    KYBER1024((byte) 3, 4, 1568, KyberParameterSpec.kyber1024, KyberParameters.kyber1024),
+    KYBER512_AES((byte) 4, 2, 768, KyberParameterSpec.kyber512_aes, KyberParameters.kyber512_aes),
+    KYBER768_AES((byte) 5, 3, 1088, KyberParameterSpec.kyber768_aes, KyberParameters.kyber768_aes),
+    KYBER1024_AES((byte) 6, 4, 1568, KyberParameterSpec.kyber1024_aes, KyberParameters.kyber1024_aes);
+
+    public static final int SYMMETRIC_BYTES = 32;
+    public static final int POLY_BYTES = 384;
+    public static final int SHARED_SECRET_BYTES = 32;
+
+    private final byte id;
+    private final int k;
+    private final int encapsulationSize;
+    private final KyberParameterSpec parameterSpec;
+    private final KyberParameters parameters;
+
+    KyberParameterSet(byte id, int k, int encapsulationSize, KyberParameterSpec parameterSpec, KyberParameters parameters) {
+        this.id = id;
+        this.k = k;
+        this.encapsulationSize = encapsulationSize;
+        this.parameterSpec = parameterSpec;
+        this.parameters = parameters;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public KyberParameterSpec getParameterSpec() {
+        return parameterSpec;
+    }
+
+    public KyberParameters getParameters() {
+        return parameters;
+    }
+
+    /** Size of the vector t and of the secret vector s. */
+    public int getPolyVecSize() {
+        return k * POLY_BYTES;
+    }
+
+    /** t || rho */
+    public int getPublicKeySize() {
+        return getPolyVecSize() + SYMMETRIC_BYTES;
+    }
+
+    /** s || t || rho || H(pk) || z */
+    public int getPrivateKeySize() {
+        return 2 * getPolyVecSize() + 3 * SYMMETRIC_BYTES;
+    }
+
+    public int getEncapsulationSize() {
+        return encapsulationSize;
+    }
+
+    public static KyberParameterSet fromId(byte id) {
+        for (KyberParameterSet set : values()) {
+            if (set.id == id) {
+                return set;
+            }
+        }
+        throw new IllegalArgumentException("Unknown Kyber parameter set id: " + id);
+    }
+
+    public static KyberParameterSet fromSpec(KyberParameterSpec parameterSpec) {
+        for (KyberParameterSet set : values()) {
+            if (set.parameterSpec.getName().equalsIgnoreCase(parameterSpec.getName())) {
+                return set;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported Kyber parameter spec: " + parameterSpec.getName());
+    }
+
+    public static KyberParameterSet fromParameters(KyberParameters parameters) {
+        for (KyberParameterSet set : values()) {
+            if (set.parameters.getName().equals(parameters.getName())) {
+                return set;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported Kyber parameters: " + parameters.getName());
+    }
+}
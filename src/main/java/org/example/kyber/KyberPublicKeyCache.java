@@ -0,0 +1,145 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberParameters;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPublicKeyParameters;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of {@link PreparedKyberPublicKey}s, for clients that keep encapsulating to the
+ * same few servers. A JCA key is looked up by the key object itself, so a repeat costs one map
+ * lookup instead of reading the key's parameters out of the provider; only the first use of a key
+ * object decodes it. Raw keys received on the wire are looked up by the SHA-256 of their encoding,
+ * and a JCA key seen for the first time shares the entry of the same raw key.
+ * <p>
+ * What is saved is the JCA-side work around an encapsulation, not the key setup inside it:
+ * BouncyCastle still unpacks t and expands matrix A on every {@link PreparedKyberPublicKey#encapsulate()}.
+ */
+public class KyberPublicKeyCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static final KyberPublicKeyCache SHARED = new KyberPublicKeyCache(DEFAULT_MAX_ENTRIES);
+
+    private final Map<KeyIdentity, PreparedKyberPublicKey> byKey;
+    private final Map<ByteBuffer, PreparedKyberPublicKey> byFingerprint;
+    private long hits;
+    private long misses;
+
+    public KyberPublicKeyCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.byKey = lruMap(maxEntries);
+        this.byFingerprint = lruMap(maxEntries);
+    }
+
+    public static KyberPublicKeyCache shared() {
+        return SHARED;
+    }
+
+    public PreparedKyberPublicKey get(PublicKey publicKey) throws GeneralSecurityException {
+        KeyIdentity identity = new KeyIdentity(publicKey);
+        synchronized (this) {
+            PreparedKyberPublicKey prepared = byKey.get(identity);
+            if (prepared != null) {
+                hits++;
+                return prepared;
+            }
+        }
+        KyberPublicKeyParameters parameters = LightweightKyberEngine.toParameters(publicKey);
+        PreparedKyberPublicKey prepared = get(parameters.getParameters(), parameters.getEncoded(), parameters);
+        synchronized (this) {
+            PreparedKyberPublicKey existing = byKey.putIfAbsent(identity, prepared);
+            return existing != null ? existing : prepared;
+        }
+    }
+
+    /**
+     * Returns the prepared key for a raw (t || rho) encoded public key, as received on the wire.
+     */
+    public PreparedKyberPublicKey get(KyberParameters kyberParameters, byte[] rawPublicKey) {
+        return get(kyberParameters, rawPublicKey, null);
+    }
+
+    /**
+     * The number of distinct keys cached.
+     */
+    public synchronized int size() {
+        return byFingerprint.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private PreparedKyberPublicKey get(KyberParameters kyberParameters, byte[] rawPublicKey, KyberPublicKeyParameters decoded) {
+        ByteBuffer fingerprint = fingerprint(rawPublicKey);
+        synchronized (this) {
+            PreparedKyberPublicKey prepared = byFingerprint.get(fingerprint);
+            if (prepared != null) {
+                hits++;
+                return prepared;
+            }
+            misses++;
+        }
+        PreparedKyberPublicKey prepared = new PreparedKyberPublicKey(
+                decoded != null ? decoded : new KyberPublicKeyParameters(kyberParameters, rawPublicKey));
+        synchronized (this) {
+            PreparedKyberPublicKey existing = byFingerprint.putIfAbsent(fingerprint, prepared);
+            return existing != null ? existing : prepared;
+        }
+    }
+
+    private static <K> Map<K, PreparedKyberPublicKey> lruMap(final int maxEntries) {
+        return new LinkedHashMap<K, PreparedKyberPublicKey>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, PreparedKyberPublicKey> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private static ByteBuffer fingerprint(byte[] rawPublicKey) {
+        SHA256Digest digest = new SHA256Digest();
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.update(rawPublicKey, 0, rawPublicKey.length);
+        digest.doFinal(hash, 0);
+        return ByteBuffer.wrap(hash);
+    }
+
+    /**
+     * Compares keys by reference: BCPQC keys of this release cannot be encoded, so their own
+     * {@code equals} is no use, and comparing contents would cost what the cache is meant to save.
+     */
+    private static final class KeyIdentity {
+        private final PublicKey key;
+
+        KeyIdentity(PublicKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof KeyIdentity && ((KeyIdentity) o).key == key;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(key);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.prng.SP800SecureRandom;
+import org.bouncycastle.crypto.prng.SP800SecureRandomBuilder;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Source of randomness for key generation and encapsulation. {@link #current()} returns a
+ * {@link SecureRandom} owned by the calling thread, so no two threads ever contend on one instance.
+ * Which kind of random is used is set by the {@code kyber.random} system property or
+ * {@link #setMode}:
+ * <ul>
+ *     <li>{@code default}: a plain {@link SecureRandom} per thread;</li>
+ *     <li>{@code drbg}: a per-thread SP 800-90A Hash_DRBG (SHA-256), reseeded from the system
+ *     entropy source every {@value #RESEED_INTERVAL} requests;</li>
+ *     <li>{@code ring}: a per-thread view on a {@link RandomRingBuffer} filled by a background
+ *     DRBG, falling back to the thread's own DRBG when the buffer runs dry.</li>
+ * </ul>
+ * A thread picks its random when it first calls {@link #current()} after a mode change; the
+ * cached and lightweight engines keep the one they got on first use, so set the mode at startup.
+ */
+public final class KyberRandom {
+
+    public static final String RANDOM_PROPERTY = "kyber.random";
+    public static final int RESEED_INTERVAL = 1 << 16;
+
+    public enum Mode {
+        DEFAULT, DRBG, RING
+    }
+
+    private static final AtomicLong NONCE = new AtomicLong(System.nanoTime());
+    private static final ThreadLocal<Holder> RANDOMS = new ThreadLocal<>();
+    private static volatile Mode mode = Mode.valueOf(System.getProperty(RANDOM_PROPERTY, "default").toUpperCase());
+    private static volatile RandomRingBuffer ringBuffer;
+
+    private KyberRandom() {
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    public static void setMode(Mode newMode) {
+        if (newMode == null) {
+            throw new IllegalArgumentException("mode must not be null");
+        }
+        mode = newMode;
+    }
+
+    public static SecureRandom current() {
+        Mode currentMode = mode;
+        Holder holder = RANDOMS.get();
+        if (holder == null || holder.mode != currentMode) {
+            holder = new Holder(currentMode, create(currentMode));
+            RANDOMS.set(holder);
+        }
+        return holder.random;
+    }
+
+    /**
+     * Builds a new SHA-256 Hash_DRBG that reseeds itself every {@value #RESEED_INTERVAL} requests.
+     */
+    public static SecureRandom newDrbg() {
+        return new ReseedingDrbg();
+    }
+
+    private static SecureRandom create(Mode mode) {
+        switch (mode) {
+            case DRBG:
+                return newDrbg();
+            case RING:
+                return new RingBufferSecureRandom(ringBuffer(), newDrbg());
+            default:
+                return new SecureRandom();
+        }
+    }
+
+    private static RandomRingBuffer ringBuffer() {
+        RandomRingBuffer buffer = ringBuffer;
+        if (buffer == null) {
+            synchronized (KyberRandom.class) {
+                buffer = ringBuffer;
+                if (buffer == null) {
+                    buffer = new RandomRingBuffer(RandomRingBuffer.DEFAULT_CAPACITY, newDrbg());
+                    ringBuffer = buffer;
+                }
+            }
+        }
+        return buffer;
+    }
+
+    private static byte[] nonce() {
+        return ByteBuffer.allocate(16)
+                .putLong(NONCE.incrementAndGet())
+                .putLong(Thread.currentThread().getId())
+                .array();
+    }
+
+    private static final class Holder {
+        final Mode mode;
+        final SecureRandom random;
+
+        Holder(Mode mode, SecureRandom random) {
+            this.mode = mode;
+            this.random = random;
+        }
+    }
+
+    private static final class ReseedingDrbg extends SecureRandom {
+        private static final long serialVersionUID = 1L;
+
+        private final transient SP800SecureRandom drbg =
+                new SP800SecureRandomBuilder().buildHash(new SHA256Digest(), nonce(), false);
+        private transient int requests;
+
+        @Override
+        public String getAlgorithm() {
+            return drbg.getAlgorithm();
+        }
+
+        @Override
+        public void setSeed(byte[] seed) {
+            // SecureRandom's constructor calls this before the DRBG exists.
+            if (drbg != null) {
+                drbg.setSeed(seed);
+            }
+        }
+
+        @Override
+        public void setSeed(long seed) {
+            if (drbg != null) {
+                drbg.setSeed(seed);
+            }
+        }
+
+        @Override
+        public void nextBytes(byte[] bytes) {
+            if (++requests >= RESEED_INTERVAL) {
+                drbg.reseed((byte[]) null);
+                requests = 0;
+            }
+            drbg.nextBytes(bytes);
+        }
+
+        @Override
+        public byte[] generateSeed(int numBytes) {
+            return drbg.generateSeed(numBytes);
+        }
+    }
+
+    private static final class RingBufferSecureRandom extends SecureRandom {
+        private static final long serialVersionUID = 1L;
+
+        private final transient RandomRingBuffer buffer;
+        private final transient SecureRandom fallback;
+
+        RingBufferSecureRandom(RandomRingBuffer buffer, SecureRandom fallback) {
+            this.buffer = buffer;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "RingBuffer(" + fallback.getAlgorithm() + ")";
+        }
+
+        @Override
+        public void setSeed(byte[] seed) {
+            if (fallback != null) {
+                fallback.setSeed(seed);
+            }
+        }
+
+        @Override
+        public void setSeed(long seed) {
+            if (fallback != null) {
+                fallback.setSeed(seed);
+            }
+        }
+
+        @Override
+        public void nextBytes(byte[] bytes) {
+            int taken = buffer.take(bytes, 0, bytes.length);
+            if (taken < bytes.length) {
+                byte[] rest = new byte[bytes.length - taken];
+                fallback.nextBytes(rest);
+                System.arraycopy(rest, 0, bytes, taken, rest.length);
+            }
+        }
+
+        @Override
+        public byte[] generateSeed(int numBytes) {
+            return fallback.generateSeed(numBytes);
+        }
+    }
+}
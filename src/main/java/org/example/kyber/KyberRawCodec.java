@@ -0,0 +1,86 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPrivateKeyParameters;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPublicKeyParameters;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Raw fixed-size encoding of Kyber keys and encapsulations, with no X.509/PKCS#8 wrapping: a public
+ * key is t || rho, a private key s || t || rho || H(pk) || z, and an encapsulation is the
+ * ciphertext as is. The parameter set is not part of the encoding; callers carry it separately
+ * (e.g. as {@link KyberParameterSet#getId()}). Everything is written to and read from
+ * caller-supplied buffers at their current position.
+ */
+public final class KyberRawCodec {
+
+    private KyberRawCodec() {
+    }
+
+    public static void writePublicKey(KyberPublicKeyParameters publicKey, ByteBuffer out) {
+        KyberParameterSet set = KyberParameterSet.fromParameters(publicKey.getParameters());
+        ensureRemaining(out, set.getPublicKeySize());
+        out.put(publicKey.getEncoded());
+    }
+
+    public static KyberPublicKeyParameters readPublicKey(KyberParameterSet set, ByteBuffer in) {
+        ensureRemaining(in, set.getPublicKeySize());
+        byte[] t = new byte[set.getPolyVecSize()];
+        byte[] rho = new byte[KyberParameterSet.SYMMETRIC_BYTES];
+        in.get(t).get(rho);
+        return new KyberPublicKeyParameters(set.getParameters(), t, rho);
+    }
+
+    public static void writePrivateKey(KyberPrivateKeyParameters privateKey, ByteBuffer out) {
+        KyberParameterSet set = KyberParameterSet.fromParameters(privateKey.getParameters());
+        ensureRemaining(out, set.getPrivateKeySize());
+        out.put(privateKey.getEncoded());
+    }
+
+    public static KyberPrivateKeyParameters readPrivateKey(KyberParameterSet set, ByteBuffer in) {
+        ensureRemaining(in, set.getPrivateKeySize());
+        byte[] s = new byte[set.getPolyVecSize()];
+        byte[] t = new byte[set.getPolyVecSize()];
+        byte[] rho = new byte[KyberParameterSet.SYMMETRIC_BYTES];
+        byte[] hpk = new byte[KyberParameterSet.SYMMETRIC_BYTES];
+        byte[] nonce = new byte[KyberParameterSet.SYMMETRIC_BYTES];
+        in.get(s).get(t).get(rho).get(hpk).get(nonce);
+        return new KyberPrivateKeyParameters(set.getParameters(), s, hpk, nonce, t, rho);
+    }
+
+    public static void writeEncapsulation(KyberParameterSet set, byte[] encapsulation, ByteBuffer out) {
+        if (encapsulation.length != set.getEncapsulationSize()) {
+            throw new IllegalArgumentException("Expected a " + set.getEncapsulationSize() + " byte encapsulation for "
+                    + set + ", got " + encapsulation.length);
+        }
+        ensureRemaining(out, encapsulation.length);
+        out.put(encapsulation);
+    }
+
+    /**
+     * Reads an encapsulation into {@code destination}, which must be exactly
+     * {@link KyberParameterSet#getEncapsulationSize()} bytes long, so callers can reuse it.
+     */
+    public static byte[] readEncapsulation(KyberParameterSet set, ByteBuffer in, byte[] destination) {
+        if (destination.length != set.getEncapsulationSize()) {
+            throw new IllegalArgumentException("Destination must be " + set.getEncapsulationSize() + " bytes for " + set);
+        }
+        ensureRemaining(in, destination.length);
+        in.get(destination);
+        return destination;
+    }
+
+    public static byte[] readEncapsulation(KyberParameterSet set, ByteBuffer in) {
+        return readEncapsulation(set, in, new byte[set.getEncapsulationSize()]);
+    }
+
+    private static void ensureRemaining(ByteBuffer buffer, int size) {
+        if (buffer.remaining() < size) {
+            throw new IllegalArgumentException("Buffer has " + buffer.remaining() + " bytes remaining, " + size + " needed");
+        }
+    }
+}
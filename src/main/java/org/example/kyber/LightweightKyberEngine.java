@@ -0,0 +1,199 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.crypto.BufferedBlockCipher;
+import org.bouncycastle.crypto.SecretWithEncapsulation;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.crypto.crystals.kyber.*;
+import org.bouncycastle.pqc.crypto.util.PrivateKeyFactory;
+import org.bouncycastle.pqc.crypto.util.PublicKeyFactory;
+import org.bouncycastle.pqc.jcajce.provider.kyber.BCKyberPrivateKey;
+import org.bouncycastle.pqc.jcajce.provider.kyber.BCKyberPublicKey;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.security.*;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.example.kyber.JcaKyberEngine.SECRET_KEY_ALGORITHM;
+
+/**
+ * Runs Kyber directly on the BouncyCastle lightweight classes ({@link KyberKeyPairGenerator},
+ * {@link KyberKEMGenerator}, {@link KyberKEMExtractor}) and AES on {@link AESEngine}, with no
+ * provider lookup, no KEM spec wrapping and no ASN.1 encoding. Keys it generates are
+ * {@link LightweightKyberPublicKey}/{@link LightweightKyberPrivateKey}, which carry their
+ * parameters; keys from the BCPQC provider are unwrapped on each call.
+ */
+public class LightweightKyberEngine implements KyberEngine {
+
+    private static final Method PUBLIC_KEY_PARAMS = keyParamsAccessor(BCKyberPublicKey.class);
+    private static final Method PRIVATE_KEY_PARAMS = keyParamsAccessor(BCKyberPrivateKey.class);
+
+    private final ThreadLocal<Primitives> primitives = ThreadLocal.withInitial(Primitives::new);
+
+    public static KyberParameters toParameters(KyberParameterSpec kyberParameterSpec) {
+        return KyberParameterSet.fromSpec(kyberParameterSpec).getParameters();
+    }
+
+    public static KyberPublicKeyParameters toParameters(PublicKey publicKey) throws GeneralSecurityException {
+        if (publicKey instanceof LightweightKyberPublicKey && ((LightweightKyberPublicKey) publicKey).getParameters() != null) {
+            return ((LightweightKyberPublicKey) publicKey).getParameters();
+        }
+        if (publicKey instanceof BCKyberPublicKey) {
+            return (KyberPublicKeyParameters) keyParams(PUBLIC_KEY_PARAMS, publicKey);
+        }
+        return (KyberPublicKeyParameters) decode(publicKey, true);
+    }
+
+    public static KyberPrivateKeyParameters toParameters(PrivateKey privateKey) throws GeneralSecurityException {
+        if (privateKey instanceof LightweightKyberPrivateKey && ((LightweightKyberPrivateKey) privateKey).getParameters() != null) {
+            return ((LightweightKyberPrivateKey) privateKey).getParameters();
+        }
+        if (privateKey instanceof BCKyberPrivateKey) {
+            return (KyberPrivateKeyParameters) keyParams(PRIVATE_KEY_PARAMS, privateKey);
+        }
+        return (KyberPrivateKeyParameters) decode(privateKey, false);
+    }
+
+    // BCPQC keys of this BC release cannot be encoded (getEncoded() returns null), so their
+    // parameters are read through the provider's own package-private accessor.
+    private static Method keyParamsAccessor(Class<?> keyClass) {
+        try {
+            Method method = keyClass.getDeclaredMethod("getKeyParams");
+            method.setAccessible(true);
+            return method;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Object keyParams(Method accessor, Key key) throws GeneralSecurityException {
+        if (accessor == null) {
+            return decode(key, key instanceof PublicKey);
+        }
+        try {
+            return accessor.invoke(key);
+        } catch (ReflectiveOperationException e) {
+            throw new InvalidKeyException("Cannot read Kyber key parameters", e);
+        }
+    }
+
+    private static Object decode(Key key, boolean isPublic) throws GeneralSecurityException {
+        byte[] encoded = key.getEncoded();
+        if (encoded == null) {
+            throw new InvalidKeyException("Kyber key has no encoding: " + key.getClass().getName());
+        }
+        try {
+            return isPublic ? PublicKeyFactory.createKey(encoded) : PrivateKeyFactory.createKey(encoded);
+        } catch (IOException | ClassCastException e) {
+            throw new InvalidKeyException("Not a Kyber key", e);
+        }
+    }
+
+    @Override
+    public byte[] encrypt(byte[] plainBytes, byte[] key) throws Exception {
+        return process(true, plainBytes, key);
+    }
+
+    @Override
+    public byte[] decrypt(byte[] encryptedBytes, byte[] key) throws Exception {
+        return process(false, encryptedBytes, key);
+    }
+
+    @Override
+    public KeyPair generateKeyPair(KyberParameterSpec kyberParameterSpec) throws Exception {
+        AsymmetricCipherKeyPair keyPair = generateKeyPair(toParameters(kyberParameterSpec));
+        return new KeyPair(new LightweightKyberPublicKey((KyberPublicKeyParameters) keyPair.getPublic()),
+                new LightweightKyberPrivateKey((KyberPrivateKeyParameters) keyPair.getPrivate()));
+    }
+
+    @Override
+    public SecretKeyWithEncapsulation generateSecretKeySender(PublicKey publicKey) throws Exception {
+        SecretWithEncapsulation secretWithEncapsulation = encapsulate(toParameters(publicKey));
+        return new SecretKeyWithEncapsulation(new SecretKeySpec(secretWithEncapsulation.getSecret(), SECRET_KEY_ALGORITHM),
+                secretWithEncapsulation.getEncapsulation());
+    }
+
+    @Override
+    public SecretKeyWithEncapsulation generateSecretKeyReceiver(PrivateKey privateKey, byte[] encapsulation) throws Exception {
+        byte[] secret = decapsulate(toParameters(privateKey), encapsulation);
+        return new SecretKeyWithEncapsulation(new SecretKeySpec(secret, SECRET_KEY_ALGORITHM), encapsulation);
+    }
+
+    public AsymmetricCipherKeyPair generateKeyPair(KyberParameters parameters) {
+        return primitives.get().keyPairGenerator(parameters).generateKeyPair();
+    }
+
+    public SecretWithEncapsulation encapsulate(KyberPublicKeyParameters publicKey) {
+        return primitives.get().kemGenerator.generateEncapsulated(publicKey);
+    }
+
+    /**
+     * Encapsulates to a public key given in its raw form (t || rho), as returned by
+     * {@link KyberPublicKeyParameters#getEncoded()}.
+     */
+    public SecretWithEncapsulation encapsulate(KyberParameters parameters, byte[] rawPublicKey) {
+        return encapsulate(new KyberPublicKeyParameters(parameters, rawPublicKey));
+    }
+
+    /**
+     * Encapsulates to a {@link KyberRawCodec} public key read from {@code rawPublicKey} and writes
+     * the encapsulation to {@code encapsulationOut}; returns the shared secret.
+     */
+    public byte[] encapsulate(KyberParameterSet set, ByteBuffer rawPublicKey, ByteBuffer encapsulationOut) {
+        SecretWithEncapsulation secretWithEncapsulation = encapsulate(KyberRawCodec.readPublicKey(set, rawPublicKey));
+        KyberRawCodec.writeEncapsulation(set, secretWithEncapsulation.getEncapsulation(), encapsulationOut);
+        return secretWithEncapsulation.getSecret();
+    }
+
+    public byte[] decapsulate(KyberPrivateKeyParameters privateKey, byte[] encapsulation) {
+        return new KyberKEMExtractor(privateKey).extractSecret(encapsulation);
+    }
+
+    public byte[] decapsulate(KyberPrivateKeyParameters privateKey, ByteBuffer encapsulation) {
+        KyberParameterSet set = KyberParameterSet.fromParameters(privateKey.getParameters());
+        return decapsulate(privateKey, KyberRawCodec.readEncapsulation(set, encapsulation));
+    }
+
+    private byte[] process(boolean forEncryption, byte[] input, byte[] key) throws Exception {
+        BufferedBlockCipher cipher = primitives.get().cipher;
+        cipher.init(forEncryption, new KeyParameter(key));
+        byte[] output = new byte[cipher.getOutputSize(input.length)];
+        int length = cipher.processBytes(input, 0, input.length, output, 0);
+        length += cipher.doFinal(output, length);
+        if (length == output.length) {
+            return output;
+        }
+        byte[] trimmed = new byte[length];
+        System.arraycopy(output, 0, trimmed, 0, length);
+        return trimmed;
+    }
+
+    private static final class Primitives {
+        final SecureRandom random = KyberRandom.current();
+        final KyberKEMGenerator kemGenerator = new KyberKEMGenerator(random);
+        final BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new AESEngine());
+        final Map<KyberParameters, KyberKeyPairGenerator> keyPairGenerators = new HashMap<>();
+
+        KyberKeyPairGenerator keyPairGenerator(KyberParameters parameters) {
+            KyberKeyPairGenerator keyPairGenerator = keyPairGenerators.get(parameters);
+            if (keyPairGenerator == null) {
+                keyPairGenerator = new KyberKeyPairGenerator();
+                keyPairGenerator.init(new KyberKeyGenerationParameters(random, parameters));
+                keyPairGenerators.put(parameters, keyPairGenerator);
+            }
+            return keyPairGenerator;
+        }
+    }
+}
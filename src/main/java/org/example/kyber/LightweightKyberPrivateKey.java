@@ -0,0 +1,27 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPrivateKeyParameters;
+import org.bouncycastle.pqc.jcajce.provider.kyber.BCKyberPrivateKey;
+
+/**
+ * A {@link BCKyberPrivateKey} that also exposes its low-level parameters, the private counterpart
+ * of {@link LightweightKyberPublicKey}.
+ */
+public class LightweightKyberPrivateKey extends BCKyberPrivateKey {
+    private static final long serialVersionUID = 1L;
+
+    private final transient KyberPrivateKeyParameters parameters;
+
+    public LightweightKyberPrivateKey(KyberPrivateKeyParameters parameters) {
+        super(parameters);
+        this.parameters = parameters;
+    }
+
+    public KyberPrivateKeyParameters getParameters() {
+        return parameters;
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPublicKeyParameters;
+import org.bouncycastle.pqc.jcajce.provider.kyber.BCKyberPublicKey;
+
+/**
+ * A {@link BCKyberPublicKey} that also exposes its low-level parameters, so
+ * {@link LightweightKyberEngine} can use it without an X.509 round trip. It is still accepted by
+ * the BCPQC provider, so keys can be passed freely between engines.
+ */
+public class LightweightKyberPublicKey extends BCKyberPublicKey {
+    private static final long serialVersionUID = 1L;
+
+    private final transient KyberPublicKeyParameters parameters;
+
+    public LightweightKyberPublicKey(KyberPublicKeyParameters parameters) {
+        super(parameters);
+        this.parameters = parameters;
+    }
+
+    public KyberPublicKeyParameters getParameters() {
+        return parameters;
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKEMExtractor;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPrivateKeyParameters;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+
+import static org.example.kyber.JcaKyberEngine.SECRET_KEY_ALGORITHM;
+
+/**
+ * A private key prepared once for many decapsulations. It holds the decoded key parameters and one
+ * {@link KyberKEMExtractor} per thread, so a call does only the per-ciphertext work. Unlike
+ * {@link KyberExample#generateSecretKeyReceiver(PrivateKey, byte[])}, it builds no KEMExtractSpec,
+ * looks up no KeyGenerator, and decodes no key or Kyber engine on each call.
+ * <p>
+ * The expanded matrix A and the NTT-domain vectors live in BouncyCastle's package-private
+ * {@code KyberIndCpa}, which a signed provider jar does not let us reach, so they are still rebuilt
+ * by the extractor on every call.
+ */
+public class PreparedKyberPrivateKey {
+
+    private final KyberPrivateKeyParameters parameters;
+    private final ThreadLocal<KyberKEMExtractor> extractors;
+
+    public PreparedKyberPrivateKey(PrivateKey privateKey) throws GeneralSecurityException {
+        this(LightweightKyberEngine.toParameters(privateKey));
+    }
+
+    public PreparedKyberPrivateKey(KyberPrivateKeyParameters parameters) {
+        this.parameters = parameters;
+        this.extractors = ThreadLocal.withInitial(() -> new KyberKEMExtractor(parameters));
+    }
+
+    public KyberPrivateKeyParameters getParameters() {
+        return parameters;
+    }
+
+    public int getEncapsulationLength() {
+        return extractors.get().getEncapsulationLength();
+    }
+
+    public byte[] extractSecret(byte[] encapsulation) {
+        return extractors.get().extractSecret(encapsulation);
+    }
+
+    public SecretKeyWithEncapsulation decapsulate(byte[] encapsulation) {
+        return new SecretKeyWithEncapsulation(new SecretKeySpec(extractSecret(encapsulation), SECRET_KEY_ALGORITHM), encapsulation);
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.crypto.SecretWithEncapsulation;
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKEMGenerator;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPublicKeyParameters;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.example.kyber.JcaKyberEngine.SECRET_KEY_ALGORITHM;
+
+/**
+ * A peer public key held as BouncyCastle's lightweight parameters, normally obtained from a
+ * {@link KyberPublicKeyCache}. Encapsulation runs on a per-thread {@link KyberKEMGenerator}, which
+ * skips the JCA key and cipher lookups of {@link KyberExample#generateSecretKeySender(java.security.PublicKey)}.
+ * It does not skip key setup: as with {@link PreparedKyberPrivateKey}, BouncyCastle unpacks the key
+ * and expands matrix A inside the generator on every call, because that state is not reachable
+ * from outside the provider.
+ */
+public class PreparedKyberPublicKey {
+
+    private static final ThreadLocal<KyberKEMGenerator> GENERATORS =
+            ThreadLocal.withInitial(() -> new KyberKEMGenerator(KyberRandom.current()));
+
+    private final KyberPublicKeyParameters parameters;
+
+    public PreparedKyberPublicKey(KyberPublicKeyParameters parameters) {
+        this.parameters = parameters;
+    }
+
+    public KyberPublicKeyParameters getParameters() {
+        return parameters;
+    }
+
+    public SecretWithEncapsulation encapsulate() {
+        return GENERATORS.get().generateEncapsulated(parameters);
+    }
+
+    public SecretKeyWithEncapsulation generateSecretKey() {
+        SecretWithEncapsulation secretWithEncapsulation = encapsulate();
+        return new SecretKeyWithEncapsulation(new SecretKeySpec(secretWithEncapsulation.getSecret(), SECRET_KEY_ALGORITHM),
+                secretWithEncapsulation.getEncapsulation());
+    }
+}
@@ -0,0 +1,651 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import org.bouncycastle.jce.ECNamedCurveTable;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.*;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates {@link Cipher}, {@link KeyAgreement} and {@link Mac} instances from the provider measured
+ * fastest for the algorithm, and from the JCA's default provider for any algorithm not routed.
+ * Routing an algorithm first checks every provider that offers it the way this project's callers
+ * use it: a cipher must give the same output as the JCA default through both the array and the
+ * {@link ByteBuffer} methods, with additional data for AEAD modes, decrypt its own output, and
+ * reject a forged tag; a key agreement must give the same secret on both sides; a MAC the same tag.
+ * The providers that pass are then timed against each other, interleaved so that JIT warm-up
+ * favours none of them. The default provider is only replaced by one at least
+ * {@value #MIN_SPEEDUP}x faster in nearly every one of the final rounds, so measurement noise does
+ * not move a route.
+ * <p>
+ * Measuring takes from 0.3 to 1 s per provider and algorithm, and competes with everything else
+ * the JVM runs, so nothing is measured behind a caller's back: {@link #calibrate()} routes the
+ * algorithms this project uses and is meant to be called once at startup, before serving. With the
+ * {@code crypto.provider.cache} system property set to a file, routes are loaded from there instead,
+ * as long as they were measured on the same JVM, architecture and provider list and the provider
+ * still passes the checks, and newly measured ones are written back. {@link #getRoutes()} shows what
+ * was chosen and why.
+ */
+public final class ProviderRouter {
+
+    public static final String CACHE_PROPERTY = "crypto.provider.cache";
+
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    private static final String FINGERPRINT_KEY = "fingerprint";
+    // Every candidate runs in turn for one slice at a time. Slicing goes on until no candidate has
+    // improved its best slice by more than a few percent for STABLE_SLICES rounds: the JIT can take
+    // several hundred milliseconds to compile a provider's intrinsics (AES-NI, carry-less
+    // multiplication), and a fixed warm-up would rank a provider by its interpreter. The last
+    // STABLE_SLICES rounds are the ones compared.
+    private static final long SLICE_NANOS = 10_000_000;
+    private static final int MIN_SLICES = 30;
+    private static final int STABLE_SLICES = 10;
+    private static final int MAX_SLICES = 100;
+    // A challenger must beat the default by this factor in all but ROUNDS_ALLOWED_TO_LOSE rounds
+    private static final double MIN_SPEEDUP = 1.5;
+    private static final int ROUNDS_ALLOWED_TO_LOSE = 1;
+    private static final int SAMPLE_LENGTH = 1024;
+    private static final int AAD_LENGTH = 7;
+
+    public enum Primitive {
+        CIPHER("Cipher"), KEY_AGREEMENT("KeyAgreement"), MAC("Mac");
+
+        private final String serviceType;
+
+        Primitive(String serviceType) {
+            this.serviceType = serviceType;
+        }
+
+        public String getServiceType() {
+            return serviceType;
+        }
+    }
+
+    /**
+     * The provider an algorithm is routed to, with the measurements it was chosen on.
+     */
+    public static final class Route {
+        private final Primitive primitive;
+        private final String algorithm;
+        private final String provider;
+        private final String defaultProvider;
+        private final Map<String, Long> nanosPerOperation;
+        private final Map<String, String> rejected;
+
+        Route(Primitive primitive, String algorithm, String provider, String defaultProvider,
+              Map<String, Long> nanosPerOperation, Map<String, String> rejected) {
+            this.primitive = primitive;
+            this.algorithm = algorithm;
+            this.provider = provider;
+            this.defaultProvider = defaultProvider;
+            this.nanosPerOperation = Collections.unmodifiableMap(nanosPerOperation);
+            this.rejected = Collections.unmodifiableMap(rejected);
+        }
+
+        public Primitive getPrimitive() {
+            return primitive;
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        public String getProvider() {
+            return provider;
+        }
+
+        /**
+         * The working provider the JCA would pick by itself, which the route keeps unless another
+         * one is clearly faster.
+         */
+        public String getDefaultProvider() {
+            return defaultProvider;
+        }
+
+        /**
+         * Median time of one operation over the compared rounds for every provider that passed the
+         * check; empty for a route loaded from the cache.
+         */
+        public Map<String, Long> getNanosPerOperation() {
+            return nanosPerOperation;
+        }
+
+        /**
+         * Providers that offer the algorithm but failed the check, with the reason.
+         */
+        public Map<String, String> getRejected() {
+            return rejected;
+        }
+
+        public boolean isCached() {
+            return nanosPerOperation.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(primitive.serviceType).append('.').append(algorithm)
+                    .append(" -> ").append(provider);
+            if (provider.equals(defaultProvider)) {
+                sb.append(" (default)");
+            }
+            if (isCached()) {
+                sb.append(" (cached)");
+            }
+            nanosPerOperation.forEach((name, nanos) -> sb.append(", ").append(name).append(' ')
+                    .append(nanos / 1000.0).append(" us"));
+            rejected.forEach((name, reason) -> sb.append(", ").append(name).append(" rejected: ").append(reason));
+            return sb.toString();
+        }
+    }
+
+    private static final class Holder {
+        static final ProviderRouter SHARED = createShared();
+    }
+
+    private final Path cache;
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+    /**
+     * @param cache file to load routes from and save them to, or null to always measure
+     */
+    public ProviderRouter(Path cache) {
+        this.cache = cache;
+        if (cache != null && Files.exists(cache)) {
+            load();
+        }
+    }
+
+    /**
+     * The router used throughout the project, with the {@code crypto.provider.cache} file if set.
+     * Until {@link #calibrate()} runs, only cached routes are used.
+     */
+    public static ProviderRouter shared() {
+        return Holder.SHARED;
+    }
+
+    private static ProviderRouter createShared() {
+        String cacheFile = System.getProperty(CACHE_PROPERTY);
+        return new ProviderRouter(cacheFile == null ? null : Paths.get(cacheFile));
+    }
+
+    /**
+     * Routes the algorithms this project uses that are not routed yet. Call it once at startup,
+     * before any traffic: measuring them takes seconds of CPU.
+     */
+    public void calibrate() throws GeneralSecurityException {
+        route(Primitive.CIPHER, "AES/GCM/NoPadding");
+        route(Primitive.CIPHER, JcaKyberEngine.MODE_PADDING);
+        route(Primitive.KEY_AGREEMENT, JcaEcdhEngine.ALGORITHM);
+        route(Primitive.MAC, "HmacSHA256");
+    }
+
+    public Cipher cipher(String transformation) throws GeneralSecurityException {
+        Provider provider = provider(Primitive.CIPHER, transformation);
+        return provider != null ? Cipher.getInstance(transformation, provider) : Cipher.getInstance(transformation);
+    }
+
+    public KeyAgreement keyAgreement(String algorithm) throws GeneralSecurityException {
+        Provider provider = provider(Primitive.KEY_AGREEMENT, algorithm);
+        return provider != null ? KeyAgreement.getInstance(algorithm, provider) : KeyAgreement.getInstance(algorithm);
+    }
+
+    public Mac mac(String algorithm) throws GeneralSecurityException {
+        Provider provider = provider(Primitive.MAC, algorithm);
+        return provider != null ? Mac.getInstance(algorithm, provider) : Mac.getInstance(algorithm);
+    }
+
+    /**
+     * Returns the route for an algorithm, measuring the providers if it has none yet.
+     */
+    public Route route(Primitive primitive, String algorithm) throws GeneralSecurityException {
+        Route route = routes.get(key(primitive, algorithm));
+        return route != null ? route : select(primitive, algorithm);
+    }
+
+    /**
+     * Every route taken so far, by {@code type.algorithm}.
+     */
+    public Map<String, Route> getRoutes() {
+        return Collections.unmodifiableMap(new TreeMap<>(routes));
+    }
+
+    /**
+     * The routed provider, or null to let the JCA pick: when the algorithm is not routed, or its
+     * provider was removed since.
+     */
+    private Provider provider(Primitive primitive, String algorithm) {
+        Route route = routes.get(key(primitive, algorithm));
+        return route == null ? null : Security.getProvider(route.provider);
+    }
+
+    private synchronized Route select(Primitive primitive, String algorithm) throws GeneralSecurityException {
+        Route route = routes.get(key(primitive, algorithm));
+        if (route != null) {
+            return route;
+        }
+        Map<String, String> rejected = new LinkedHashMap<>();
+        List<Candidate> candidates = check(primitive, algorithm, rejected);
+        if (candidates.isEmpty()) {
+            throw new NoSuchAlgorithmException("No working provider for " + key(primitive, algorithm) + ": " + rejected);
+        }
+
+        long[] best = new long[candidates.size()];
+        Arrays.fill(best, Long.MAX_VALUE);
+        long[][] rounds = new long[candidates.size()][MAX_SLICES];
+        int slices = 0;
+        int stable = 0;
+        while (slices < MAX_SLICES && (slices < MIN_SLICES || stable < STABLE_SLICES)) {
+            boolean improved = false;
+            for (int i = 0; i < candidates.size(); i++) {
+                long start = System.nanoTime();
+                long elapsed;
+                int operations = 0;
+                do {
+                    candidates.get(i).operate();
+                    operations++;
+                } while ((elapsed = System.nanoTime() - start) < SLICE_NANOS);
+                long nanos = elapsed / operations;
+                rounds[i][slices] = nanos;
+                if (nanos < best[i] - best[i] / 20) {
+                    improved = true;
+                }
+                best[i] = Math.min(best[i], nanos);
+            }
+            stable = improved ? 0 : stable + 1;
+            slices++;
+        }
+
+        // candidates.get(0) is the default; the others must win clearly and repeatedly
+        int from = slices - STABLE_SLICES;
+        Map<String, Long> nanosPerOperation = new LinkedHashMap<>();
+        int chosen = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            long[] compared = Arrays.copyOfRange(rounds[i], from, slices);
+            nanosPerOperation.put(candidates.get(i).provider, median(compared));
+            int lost = 0;
+            for (int round = from; round < slices; round++) {
+                if (rounds[i][round] * MIN_SPEEDUP > rounds[0][round]) {
+                    lost++;
+                }
+            }
+            if (i > 0 && lost <= ROUNDS_ALLOWED_TO_LOSE
+                    && (chosen == 0 || median(compared) < nanosPerOperation.get(candidates.get(chosen).provider))) {
+                chosen = i;
+            }
+        }
+        route = new Route(primitive, algorithm, candidates.get(chosen).provider, candidates.get(0).provider,
+                nanosPerOperation, rejected);
+        routes.put(key(primitive, algorithm), route);
+        if (cache != null) {
+            save();
+        }
+        return route;
+    }
+
+    /**
+     * Returns the providers that pass the checks, in the JCA's order of preference, so the first one
+     * is the JCA's own choice; the others go to {@code rejected} with the reason.
+     */
+    private static List<Candidate> check(Primitive primitive, String algorithm, Map<String, String> rejected) {
+        List<Candidate> candidates = new ArrayList<>();
+        byte[] referenceAnswer = null;
+        for (Provider provider : Security.getProviders()) {
+            Candidate candidate;
+            try {
+                candidate = newCandidate(primitive, algorithm, provider);
+            } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+                // not offered by this provider
+                continue;
+            } catch (GeneralSecurityException | RuntimeException e) {
+                rejected.put(provider.getName(), e.toString());
+                continue;
+            }
+            try {
+                byte[] answer = candidate.answer();
+                candidate.verify(answer);
+                if (referenceAnswer == null) {
+                    referenceAnswer = answer;
+                } else if (!Arrays.equals(referenceAnswer, answer)) {
+                    rejected.put(provider.getName(), "disagrees with " + candidates.get(0).provider);
+                    continue;
+                }
+                candidates.add(candidate);
+            } catch (GeneralSecurityException | RuntimeException e) {
+                rejected.put(provider.getName(), e.toString());
+            }
+        }
+        return candidates;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static String key(Primitive primitive, String algorithm) {
+        return primitive.serviceType + "." + algorithm;
+    }
+
+    /**
+     * Identifies the setting the measurements hold for.
+     */
+    private static String fingerprint() {
+        StringBuilder sb = new StringBuilder(System.getProperty("java.vm.name")).append(' ')
+                .append(System.getProperty("java.vm.version")).append(' ').append(System.getProperty("os.arch"));
+        for (Provider provider : Security.getProviders()) {
+            sb.append(' ').append(provider.getName()).append('-').append(provider.getVersionStr());
+        }
+        return sb.toString();
+    }
+
+    private void load() {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(cache)) {
+            properties.load(in);
+        } catch (IOException e) {
+            return;
+        }
+        if (!fingerprint().equals(properties.getProperty(FINGERPRINT_KEY))) {
+            return;
+        }
+        for (Primitive primitive : Primitive.values()) {
+            String prefix = primitive.serviceType + ".";
+            for (String name : properties.stringPropertyNames()) {
+                if (name.startsWith(prefix)) {
+                    String algorithm = name.substring(prefix.length());
+                    String provider = properties.getProperty(name);
+                    // a route is only as good as its provider's answers, so it is checked again
+                    Map<String, String> rejected = new LinkedHashMap<>();
+                    List<Candidate> candidates = check(primitive, algorithm, rejected);
+                    if (candidates.stream().anyMatch(candidate -> candidate.provider.equals(provider))) {
+                        routes.put(name, new Route(primitive, algorithm, provider, candidates.get(0).provider,
+                                Collections.emptyMap(), rejected));
+                    }
+                }
+            }
+        }
+    }
+
+    private void save() {
+        Properties properties = new Properties();
+        properties.setProperty(FINGERPRINT_KEY, fingerprint());
+        routes.forEach((name, route) -> properties.setProperty(name, route.provider));
+        try (OutputStream out = Files.newOutputStream(cache)) {
+            properties.store(out, "Fastest provider per primitive, see " + ProviderRouter.class.getName());
+        } catch (IOException e) {
+            // the routes still hold for this run; they are measured again next time
+            e.printStackTrace();
+        }
+    }
+
+    // ---------------------------------------------------------------- candidates
+
+    private static Candidate newCandidate(Primitive primitive, String algorithm, Provider provider)
+            throws GeneralSecurityException {
+        switch (primitive) {
+            case CIPHER:
+                return new CipherCandidate(algorithm, provider);
+            case KEY_AGREEMENT:
+                return new KeyAgreementCandidate(algorithm, provider);
+            case MAC:
+                return new MacCandidate(algorithm, provider);
+            default:
+                throw new IllegalArgumentException(primitive.name());
+        }
+    }
+
+    private static byte[] sample(int length, int seed) {
+        byte[] sample = new byte[length];
+        for (int i = 0; i < length; i++) {
+            sample[i] = (byte) (i * 31 + seed);
+        }
+        return sample;
+    }
+
+    /**
+     * One provider's implementation of the algorithm under test.
+     */
+    private abstract static class Candidate {
+        final String provider;
+
+        Candidate(Provider provider) {
+            this.provider = provider.getName();
+        }
+
+        /** The output on the fixed input, compared across providers. */
+        abstract byte[] answer() throws GeneralSecurityException;
+
+        /** Further checks on this provider's own answer. */
+        void verify(byte[] answer) throws GeneralSecurityException {
+        }
+
+        /** One timed operation. */
+        abstract void operate() throws GeneralSecurityException;
+    }
+
+    /**
+     * Checks a cipher through the calls this project makes: {@code doFinal(byte[])} as in
+     * {@link JcaKyberEngine} and {@link ECDH_BC}, and {@code updateAAD(ByteBuffer)} with
+     * {@code doFinal(ByteBuffer, ByteBuffer)} on heap buffers as in {@link AeadDirection}'s callers,
+     * where the additional data and the output share one buffer. Times the buffer path.
+     */
+    private static final class CipherCandidate extends Candidate {
+        private final Cipher cipher;
+        private final SecretKeySpec key;
+        private final byte[] plaintext = sample(SAMPLE_LENGTH, 1);
+        private final byte[] aad = sample(AAD_LENGTH, 5);
+        private final ByteBuffer source = ByteBuffer.wrap(plaintext);
+        // additional data followed by room for the output, a padding block and a tag
+        private final ByteBuffer record = ByteBuffer.allocate(AAD_LENGTH + SAMPLE_LENGTH + 32);
+        private final ByteBuffer opened = ByteBuffer.allocate(SAMPLE_LENGTH + 32);
+        private final byte[] iv;
+        private final boolean gcm;
+        // nonces 0 and 1 are taken by the check
+        private long counter = 1;
+
+        CipherCandidate(String transformation, Provider provider) throws GeneralSecurityException {
+            super(provider);
+            this.cipher = Cipher.getInstance(transformation, provider);
+            String mode = transformation.contains("/") ? transformation.split("/")[1].toUpperCase() : "ECB";
+            this.gcm = mode.equals("GCM");
+            this.iv = mode.equals("ECB") ? null : new byte[gcm ? 12 : cipher.getBlockSize()];
+            this.key = new SecretKeySpec(sample(32, 2), transformation.split("/")[0]);
+        }
+
+        private void init(int mode, long nonce) throws GeneralSecurityException {
+            if (iv == null) {
+                cipher.init(mode, key);
+                return;
+            }
+            for (int i = 0; i < 8; i++) {
+                iv[iv.length - 1 - i] = (byte) (nonce >>> (8 * i));
+            }
+            AlgorithmParameterSpec spec = gcm ? new GCMParameterSpec(128, iv) : new IvParameterSpec(iv);
+            cipher.init(mode, key, spec);
+        }
+
+        /** Seals the sample into {@link #record} through the buffer methods, after the additional data. */
+        private void sealRecord(long nonce) throws GeneralSecurityException {
+            init(Cipher.ENCRYPT_MODE, nonce);
+            record.clear();
+            record.put(aad).flip();
+            if (gcm) {
+                cipher.updateAAD(record);
+            }
+            record.limit(record.capacity()).position(AAD_LENGTH);
+            source.clear();
+            cipher.doFinal(source, record);
+        }
+
+        /** Opens {@code ciphertext} through the buffer methods; returns the plaintext. */
+        private byte[] openRecord(long nonce, byte[] ciphertext) throws GeneralSecurityException {
+            init(Cipher.DECRYPT_MODE, nonce);
+            record.clear();
+            record.put(aad).put(ciphertext).flip();
+            record.limit(AAD_LENGTH);
+            if (gcm) {
+                cipher.updateAAD(record);
+            }
+            record.limit(AAD_LENGTH + ciphertext.length).position(AAD_LENGTH);
+            opened.clear();
+            cipher.doFinal(record, opened);
+            return Arrays.copyOf(opened.array(), opened.position());
+        }
+
+        private byte[] open(long nonce, byte[] ciphertext) throws GeneralSecurityException {
+            init(Cipher.DECRYPT_MODE, nonce);
+            if (gcm) {
+                cipher.updateAAD(aad);
+            }
+            return cipher.doFinal(ciphertext);
+        }
+
+        /**
+         * The array path under nonce 0 followed by the buffer path under nonce 1: a GCM cipher
+         * refuses to encrypt twice under one nonce.
+         */
+        @Override
+        byte[] answer() throws GeneralSecurityException {
+            init(Cipher.ENCRYPT_MODE, 0);
+            if (gcm) {
+                cipher.updateAAD(aad);
+            }
+            byte[] array = cipher.doFinal(plaintext);
+            sealRecord(1);
+            byte[] buffer = Arrays.copyOfRange(record.array(), AAD_LENGTH, record.position());
+            byte[] answer = Arrays.copyOf(array, array.length + buffer.length);
+            System.arraycopy(buffer, 0, answer, array.length, buffer.length);
+            return answer;
+        }
+
+        @Override
+        void verify(byte[] answer) throws GeneralSecurityException {
+            int half = answer.length / 2;
+            byte[] array = Arrays.copyOfRange(answer, 0, half);
+            byte[] buffer = Arrays.copyOfRange(answer, half, answer.length);
+            // each path must open what the other one sealed
+            if (!Arrays.equals(plaintext, openRecord(0, array)) || !Arrays.equals(plaintext, open(1, buffer))) {
+                throw new GeneralSecurityException("does not decrypt its own ciphertext");
+            }
+            if (gcm) {
+                byte[] forged = array.clone();
+                forged[forged.length - 1] ^= 1;
+                try {
+                    openRecord(0, forged);
+                } catch (AEADBadTagException expected) {
+                    return;
+                }
+                throw new GeneralSecurityException("accepts a forged tag");
+            }
+        }
+
+        @Override
+        void operate() throws GeneralSecurityException {
+            // a fresh nonce every time: GCM implementations refuse to encrypt twice under one
+            sealRecord(++counter);
+        }
+    }
+
+    private static final class KeyAgreementCandidate extends Candidate {
+        private final KeyAgreement keyAgreement;
+        private final KeyPair first;
+        private final KeyPair second;
+
+        KeyAgreementCandidate(String algorithm, Provider provider) throws GeneralSecurityException {
+            super(provider);
+            this.keyAgreement = KeyAgreement.getInstance(algorithm, provider);
+            KeyPair[] keyPairs = ProbeKeys.forAlgorithm(algorithm);
+            this.first = keyPairs[0];
+            this.second = keyPairs[1];
+        }
+
+        @Override
+        byte[] answer() throws GeneralSecurityException {
+            keyAgreement.init(first.getPrivate());
+            keyAgreement.doPhase(second.getPublic(), true);
+            return keyAgreement.generateSecret();
+        }
+
+        @Override
+        void verify(byte[] answer) throws GeneralSecurityException {
+            keyAgreement.init(second.getPrivate());
+            keyAgreement.doPhase(first.getPublic(), true);
+            if (!Arrays.equals(answer, keyAgreement.generateSecret())) {
+                throw new GeneralSecurityException("both sides derive different secrets");
+            }
+        }
+
+        @Override
+        void operate() throws GeneralSecurityException {
+            answer();
+        }
+    }
+
+    private static final class MacCandidate extends Candidate {
+        private final Mac mac;
+        private final byte[] message = sample(SAMPLE_LENGTH, 3);
+
+        MacCandidate(String algorithm, Provider provider) throws GeneralSecurityException {
+            super(provider);
+            this.mac = Mac.getInstance(algorithm, provider);
+            mac.init(new SecretKeySpec(sample(32, 4), algorithm));
+        }
+
+        @Override
+        byte[] answer() {
+            return mac.doFinal(message);
+        }
+
+        @Override
+        void operate() {
+            mac.doFinal(message);
+        }
+    }
+
+    /**
+     * Key pairs for key agreement checks, made the way this project makes its keys: by the default
+     * provider's generator for the algorithm, on secp256r1 for elliptic curves. A provider that
+     * cannot use such keys is of no use here and fails the check.
+     */
+    private static final class ProbeKeys {
+        private static final Map<String, KeyPair[]> KEYS = new ConcurrentHashMap<>();
+
+        static KeyPair[] forAlgorithm(String algorithm) throws GeneralSecurityException {
+            KeyPair[] keyPairs = KEYS.get(algorithm);
+            if (keyPairs == null) {
+                KeyPairGenerator generator = KeyPairGenerator.getInstance(algorithm);
+                if (algorithm.toUpperCase().startsWith("EC")) {
+                    generator.initialize(ECNamedCurveTable.getParameterSpec(JcaEcdhEngine.CURVE_NAME));
+                }
+                keyPairs = new KeyPair[]{generator.generateKeyPair(), generator.generateKeyPair()};
+                KEYS.put(algorithm, keyPairs);
+            }
+            return keyPairs;
+        }
+    }
+}
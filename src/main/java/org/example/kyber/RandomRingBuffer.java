@@ -0,0 +1,102 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-size ring of random bytes kept full by a background thread, so that callers copy
+ * pre-generated bytes instead of running a generator. Every byte is handed out at most once.
+ */
+public class RandomRingBuffer implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int FILL_CHUNK = 4096;
+
+    private final byte[] ring;
+    private final SecureRandom source;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition drained = lock.newCondition();
+    private final Thread filler;
+    private int readPosition;
+    private int available;
+    private volatile boolean closed;
+
+    public RandomRingBuffer(int capacity, SecureRandom source) {
+        if (capacity < FILL_CHUNK) {
+            throw new IllegalArgumentException("capacity must be at least " + FILL_CHUNK);
+        }
+        this.ring = new byte[capacity];
+        this.source = source;
+        this.filler = new Thread(this::fill, "kyber-random-ring");
+        this.filler.setDaemon(true);
+        this.filler.start();
+    }
+
+    /**
+     * Copies up to {@code length} random bytes into {@code out} and returns how many were copied;
+     * fewer than requested means the buffer is running behind.
+     */
+    public int take(byte[] out, int offset, int length) {
+        lock.lock();
+        try {
+            int count = Math.min(length, available);
+            int first = Math.min(count, ring.length - readPosition);
+            System.arraycopy(ring, readPosition, out, offset, first);
+            System.arraycopy(ring, 0, out, offset + first, count - first);
+            // Wipe what was handed out so it cannot leak through a later read.
+            Arrays.fill(ring, readPosition, readPosition + first, (byte) 0);
+            Arrays.fill(ring, 0, count - first, (byte) 0);
+            readPosition = (readPosition + count) % ring.length;
+            available -= count;
+            if (available <= ring.length / 2) {
+                drained.signal();
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int available() {
+        lock.lock();
+        try {
+            return available;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        filler.interrupt();
+    }
+
+    private void fill() {
+        byte[] chunk = new byte[FILL_CHUNK];
+        while (!closed) {
+            source.nextBytes(chunk);
+            lock.lock();
+            try {
+                while (!closed && ring.length - available < chunk.length) {
+                    drained.await();
+                }
+                int writePosition = (readPosition + available) % ring.length;
+                int first = Math.min(chunk.length, ring.length - writePosition);
+                System.arraycopy(chunk, 0, ring, writePosition, first);
+                System.arraycopy(chunk, first, ring, 0, chunk.length - first);
+                available += chunk.length;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
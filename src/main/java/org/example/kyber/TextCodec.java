@@ -0,0 +1,360 @@
+package org.example.kyber;
+
+/**
+ * @author Amine_Mighri
+ */
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Table-driven hex and Base64 codec for moving ciphertexts as text. Every method reads from and
+ * writes into buffers the caller provides, so encoding or decoding allocates nothing; the
+ * {@code *Length} methods give the size to provide. Hex is written in upper case and read in
+ * either case. Base64 uses the standard alphabet of RFC 4648 and is written with padding; the
+ * padding is optional when reading. Malformed input is rejected with an
+ * {@link IllegalArgumentException}.
+ * <p>
+ * The {@code byte[]} and {@link ByteBuffer} text forms are US-ASCII, which is what goes on the wire.
+ * {@link ByteBuffer} methods consume the source from its position to its limit and advance both
+ * buffers.
+ */
+public final class TextCodec {
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final char[] BASE64_DIGITS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final char PADDING = '=';
+    private static final int INVALID = -1;
+
+    // Both characters of every byte value, so encoding one byte is two table reads
+    private static final char[] HEX_PAIRS = new char[512];
+    // Digit value of every character below 128, INVALID for the others
+    private static final byte[] HEX_VALUES = new byte[128];
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            HEX_PAIRS[2 * b] = HEX_DIGITS[b >>> 4];
+            HEX_PAIRS[2 * b + 1] = HEX_DIGITS[b & 0xf];
+        }
+        Arrays.fill(HEX_VALUES, (byte) INVALID);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[HEX_DIGITS[i]] = (byte) i;
+            HEX_VALUES[Character.toLowerCase(HEX_DIGITS[i])] = (byte) i;
+        }
+        Arrays.fill(BASE64_VALUES, (byte) INVALID);
+        for (int i = 0; i < 64; i++) {
+            BASE64_VALUES[BASE64_DIGITS[i]] = (byte) i;
+        }
+    }
+
+    private TextCodec() {
+    }
+
+    // ---------------------------------------------------------------- hex
+
+    public static int hexLength(int byteCount) {
+        return 2 * byteCount;
+    }
+
+    /**
+     * Writes {@code len} bytes as {@code 2 * len} hex characters at {@code dst[dstOff]} and returns
+     * the number of characters written.
+     */
+    public static int encodeHex(byte[] src, int off, int len, char[] dst, int dstOff) {
+        for (int i = 0; i < len; i++) {
+            int pair = (src[off + i] & 0xff) << 1;
+            dst[dstOff++] = HEX_PAIRS[pair];
+            dst[dstOff++] = HEX_PAIRS[pair + 1];
+        }
+        return 2 * len;
+    }
+
+    /**
+     * Same as {@link #encodeHex(byte[], int, int, char[], int)}, writing ASCII bytes.
+     */
+    public static int encodeHex(byte[] src, int off, int len, byte[] dst, int dstOff) {
+        for (int i = 0; i < len; i++) {
+            int pair = (src[off + i] & 0xff) << 1;
+            dst[dstOff++] = (byte) HEX_PAIRS[pair];
+            dst[dstOff++] = (byte) HEX_PAIRS[pair + 1];
+        }
+        return 2 * len;
+    }
+
+    public static void encodeHex(ByteBuffer src, ByteBuffer dst) {
+        checkRemaining(dst, hexLength(src.remaining()));
+        while (src.hasRemaining()) {
+            int pair = (src.get() & 0xff) << 1;
+            dst.put((byte) HEX_PAIRS[pair]);
+            dst.put((byte) HEX_PAIRS[pair + 1]);
+        }
+    }
+
+    /**
+     * Decodes {@code len} hex characters into {@code len / 2} bytes at {@code dst[dstOff]} and
+     * returns the number of bytes written.
+     */
+    public static int decodeHex(char[] src, int off, int len, byte[] dst, int dstOff) {
+        checkHexLength(len);
+        for (int i = 0; i < len; i += 2) {
+            dst[dstOff++] = (byte) (hexValue(src[off + i]) << 4 | hexValue(src[off + i + 1]));
+        }
+        return len / 2;
+    }
+
+    public static int decodeHex(CharSequence src, int off, int len, byte[] dst, int dstOff) {
+        checkHexLength(len);
+        for (int i = 0; i < len; i += 2) {
+            dst[dstOff++] = (byte) (hexValue(src.charAt(off + i)) << 4 | hexValue(src.charAt(off + i + 1)));
+        }
+        return len / 2;
+    }
+
+    /**
+     * Same as {@link #decodeHex(char[], int, int, byte[], int)}, reading ASCII bytes.
+     */
+    public static int decodeHex(byte[] src, int off, int len, byte[] dst, int dstOff) {
+        checkHexLength(len);
+        for (int i = 0; i < len; i += 2) {
+            dst[dstOff++] = (byte) (hexValue(src[off + i]) << 4 | hexValue(src[off + i + 1]));
+        }
+        return len / 2;
+    }
+
+    public static void decodeHex(ByteBuffer src, ByteBuffer dst) {
+        checkHexLength(src.remaining());
+        checkRemaining(dst, src.remaining() / 2);
+        while (src.hasRemaining()) {
+            dst.put((byte) (hexValue(src.get()) << 4 | hexValue(src.get())));
+        }
+    }
+
+    // ---------------------------------------------------------------- Base64
+
+    /**
+     * Length of the padded Base64 text for {@code byteCount} bytes.
+     */
+    public static int base64Length(int byteCount) {
+        return (byteCount + 2) / 3 * 4;
+    }
+
+    /**
+     * Number of bytes the Base64 text {@code src[off, off + len)} decodes to.
+     */
+    public static int base64DecodedLength(char[] src, int off, int len) {
+        int padding = 0;
+        while (padding < 2 && len - padding > 0 && src[off + len - padding - 1] == PADDING) {
+            padding++;
+        }
+        return decodedLength(len, padding);
+    }
+
+    public static int base64DecodedLength(byte[] src, int off, int len) {
+        int padding = 0;
+        while (padding < 2 && len - padding > 0 && src[off + len - padding - 1] == PADDING) {
+            padding++;
+        }
+        return decodedLength(len, padding);
+    }
+
+    /**
+     * Writes {@code len} bytes as padded Base64 at {@code dst[dstOff]} and returns the number of
+     * characters written.
+     */
+    public static int encodeBase64(byte[] src, int off, int len, char[] dst, int dstOff) {
+        int start = dstOff;
+        int end = off + len - len % 3;
+        for (int i = off; i < end; i += 3) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | src[i + 2] & 0xff;
+            dst[dstOff++] = BASE64_DIGITS[bits >>> 18];
+            dst[dstOff++] = BASE64_DIGITS[bits >>> 12 & 0x3f];
+            dst[dstOff++] = BASE64_DIGITS[bits >>> 6 & 0x3f];
+            dst[dstOff++] = BASE64_DIGITS[bits & 0x3f];
+        }
+        int rest = len % 3;
+        if (rest > 0) {
+            int bits = (src[end] & 0xff) << 16 | (rest == 2 ? (src[end + 1] & 0xff) << 8 : 0);
+            dst[dstOff++] = BASE64_DIGITS[bits >>> 18];
+            dst[dstOff++] = BASE64_DIGITS[bits >>> 12 & 0x3f];
+            dst[dstOff++] = rest == 2 ? BASE64_DIGITS[bits >>> 6 & 0x3f] : PADDING;
+            dst[dstOff++] = PADDING;
+        }
+        return dstOff - start;
+    }
+
+    /**
+     * Same as {@link #encodeBase64(byte[], int, int, char[], int)}, writing ASCII bytes.
+     */
+    public static int encodeBase64(byte[] src, int off, int len, byte[] dst, int dstOff) {
+        int start = dstOff;
+        int end = off + len - len % 3;
+        for (int i = off; i < end; i += 3) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | src[i + 2] & 0xff;
+            dst[dstOff++] = (byte) BASE64_DIGITS[bits >>> 18];
+            dst[dstOff++] = (byte) BASE64_DIGITS[bits >>> 12 & 0x3f];
+            dst[dstOff++] = (byte) BASE64_DIGITS[bits >>> 6 & 0x3f];
+            dst[dstOff++] = (byte) BASE64_DIGITS[bits & 0x3f];
+        }
+        int rest = len % 3;
+        if (rest > 0) {
+            int bits = (src[end] & 0xff) << 16 | (rest == 2 ? (src[end + 1] & 0xff) << 8 : 0);
+            dst[dstOff++] = (byte) BASE64_DIGITS[bits >>> 18];
+            dst[dstOff++] = (byte) BASE64_DIGITS[bits >>> 12 & 0x3f];
+            dst[dstOff++] = (byte) (rest == 2 ? BASE64_DIGITS[bits >>> 6 & 0x3f] : PADDING);
+            dst[dstOff++] = (byte) PADDING;
+        }
+        return dstOff - start;
+    }
+
+    public static void encodeBase64(ByteBuffer src, ByteBuffer dst) {
+        checkRemaining(dst, base64Length(src.remaining()));
+        while (src.remaining() >= 3) {
+            int bits = (src.get() & 0xff) << 16 | (src.get() & 0xff) << 8 | src.get() & 0xff;
+            dst.put((byte) BASE64_DIGITS[bits >>> 18]);
+            dst.put((byte) BASE64_DIGITS[bits >>> 12 & 0x3f]);
+            dst.put((byte) BASE64_DIGITS[bits >>> 6 & 0x3f]);
+            dst.put((byte) BASE64_DIGITS[bits & 0x3f]);
+        }
+        int rest = src.remaining();
+        if (rest > 0) {
+            int bits = (src.get() & 0xff) << 16 | (rest == 2 ? (src.get() & 0xff) << 8 : 0);
+            dst.put((byte) BASE64_DIGITS[bits >>> 18]);
+            dst.put((byte) BASE64_DIGITS[bits >>> 12 & 0x3f]);
+            dst.put((byte) (rest == 2 ? BASE64_DIGITS[bits >>> 6 & 0x3f] : PADDING));
+            dst.put((byte) PADDING);
+        }
+    }
+
+    /**
+     * Decodes the Base64 text {@code src[off, off + len)}, padded or not, at {@code dst[dstOff]}
+     * and returns the number of bytes written, {@link #base64DecodedLength(char[], int, int)}.
+     */
+    public static int decodeBase64(char[] src, int off, int len, byte[] dst, int dstOff) {
+        int decoded = base64DecodedLength(src, off, len);
+        int end = off + decoded / 3 * 4;
+        for (int i = off; i < end; i += 4) {
+            int bits = base64Value(src[i]) << 18 | base64Value(src[i + 1]) << 12
+                    | base64Value(src[i + 2]) << 6 | base64Value(src[i + 3]);
+            dst[dstOff++] = (byte) (bits >>> 16);
+            dst[dstOff++] = (byte) (bits >>> 8);
+            dst[dstOff++] = (byte) bits;
+        }
+        int rest = decoded % 3;
+        if (rest > 0) {
+            int bits = base64Value(src[end]) << 18 | base64Value(src[end + 1]) << 12
+                    | (rest == 2 ? base64Value(src[end + 2]) << 6 : 0);
+            checkTrailingBits(bits, rest);
+            dst[dstOff++] = (byte) (bits >>> 16);
+            if (rest == 2) {
+                dst[dstOff] = (byte) (bits >>> 8);
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Same as {@link #decodeBase64(char[], int, int, byte[], int)}, reading ASCII bytes.
+     */
+    public static int decodeBase64(byte[] src, int off, int len, byte[] dst, int dstOff) {
+        int decoded = base64DecodedLength(src, off, len);
+        int end = off + decoded / 3 * 4;
+        for (int i = off; i < end; i += 4) {
+            int bits = base64Value(src[i]) << 18 | base64Value(src[i + 1]) << 12
+                    | base64Value(src[i + 2]) << 6 | base64Value(src[i + 3]);
+            dst[dstOff++] = (byte) (bits >>> 16);
+            dst[dstOff++] = (byte) (bits >>> 8);
+            dst[dstOff++] = (byte) bits;
+        }
+        int rest = decoded % 3;
+        if (rest > 0) {
+            int bits = base64Value(src[end]) << 18 | base64Value(src[end + 1]) << 12
+                    | (rest == 2 ? base64Value(src[end + 2]) << 6 : 0);
+            checkTrailingBits(bits, rest);
+            dst[dstOff++] = (byte) (bits >>> 16);
+            if (rest == 2) {
+                dst[dstOff] = (byte) (bits >>> 8);
+            }
+        }
+        return decoded;
+    }
+
+    public static void decodeBase64(ByteBuffer src, ByteBuffer dst) {
+        int padding = 0;
+        while (padding < 2 && src.remaining() - padding > 0 && src.get(src.limit() - padding - 1) == PADDING) {
+            padding++;
+        }
+        int decoded = decodedLength(src.remaining(), padding);
+        checkRemaining(dst, decoded);
+        for (int i = decoded / 3; i > 0; i--) {
+            int bits = base64Value(src.get()) << 18 | base64Value(src.get()) << 12
+                    | base64Value(src.get()) << 6 | base64Value(src.get());
+            dst.put((byte) (bits >>> 16));
+            dst.put((byte) (bits >>> 8));
+            dst.put((byte) bits);
+        }
+        int rest = decoded % 3;
+        if (rest > 0) {
+            int bits = base64Value(src.get()) << 18 | base64Value(src.get()) << 12
+                    | (rest == 2 ? base64Value(src.get()) << 6 : 0);
+            checkTrailingBits(bits, rest);
+            dst.put((byte) (bits >>> 16));
+            if (rest == 2) {
+                dst.put((byte) (bits >>> 8));
+            }
+        }
+        src.position(src.limit());
+    }
+
+    // ---------------------------------------------------------------- helpers
+
+    private static int hexValue(int c) {
+        int value = c >= 0 && c < 128 ? HEX_VALUES[c] : INVALID;
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid hex character: " + (char) c);
+        }
+        return value;
+    }
+
+    private static int base64Value(int c) {
+        int value = c >= 0 && c < 128 ? BASE64_VALUES[c] : INVALID;
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid Base64 character: " + (char) c);
+        }
+        return value;
+    }
+
+    private static void checkHexLength(int len) {
+        if ((len & 1) != 0) {
+            throw new IllegalArgumentException("Hex text must have an even length: " + len);
+        }
+    }
+
+    /**
+     * Bytes decoded from {@code len} Base64 characters of which the last {@code padding} are
+     * padding, rejecting lengths no encoder produces.
+     */
+    private static int decodedLength(int len, int padding) {
+        int digits = len - padding;
+        if (padding > 0 && len % 4 != 0 || digits % 4 == 1) {
+            throw new IllegalArgumentException("Invalid Base64 length: " + len);
+        }
+        return digits / 4 * 3 + Math.max(0, digits % 4 - 1);
+    }
+
+    /**
+     * The bits below the last decoded byte must be zero, as an encoder leaves them.
+     */
+    private static void checkTrailingBits(int bits, int rest) {
+        if ((bits & (rest == 1 ? 0xffff : 0xff)) != 0) {
+            throw new IllegalArgumentException("Invalid Base64 trailing bits");
+        }
+    }
+
+    private static void checkRemaining(ByteBuffer dst, int needed) {
+        if (dst.remaining() < needed) {
+            throw new IllegalArgumentException("Destination needs " + needed + " bytes, has " + dst.remaining());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package senario;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free single-producer, single-consumer byte ring, one direction of a
+ * {@link LoopbackTransport} connection. The producer and the consumer each own one free-running
+ * position; a side only parks when the ring is full or empty, and the other side unparks it after
+ * moving its position.
+ */
+final class ByteRing {
+
+    private final byte[] buffer;
+    private final int mask;
+    private final AtomicLong readPosition = new AtomicLong();
+    private final AtomicLong writePosition = new AtomicLong();
+    private volatile Thread parkedReader;
+    private volatile Thread parkedWriter;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity ring size in bytes, a power of two
+     */
+    ByteRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.buffer = new byte[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Copies {@code len} bytes in, waiting for space as needed.
+     */
+    void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (closed) {
+                throw new IOException("Connection closed");
+            }
+            long write = writePosition.get();
+            int free = buffer.length - (int) (write - readPosition.get());
+            if (free == 0) {
+                parkedWriter = Thread.currentThread();
+                if (buffer.length - (int) (write - readPosition.get()) == 0 && !closed) {
+                    park();
+                }
+                parkedWriter = null;
+                continue;
+            }
+            int count = Math.min(len, free);
+            copy(b, off, buffer, (int) write & mask, count, true);
+            writePosition.set(write + count);
+            unpark(parkedReader);
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Copies up to {@code len} bytes out, waiting until there is at least one. Returns -1 once the
+     * ring is closed and drained.
+     */
+    int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            long read = readPosition.get();
+            int available = (int) (writePosition.get() - read);
+            if (available > 0) {
+                int count = Math.min(len, available);
+                copy(buffer, (int) read & mask, b, off, count, false);
+                readPosition.set(read + count);
+                unpark(parkedWriter);
+                return count;
+            }
+            if (closed) {
+                // the writer may have published its last bytes just before closing
+                if (writePosition.get() == read) {
+                    return -1;
+                }
+                continue;
+            }
+            parkedReader = Thread.currentThread();
+            if (writePosition.get() == read && !closed) {
+                park();
+            }
+            parkedReader = null;
+        }
+    }
+
+    int available() {
+        return (int) (writePosition.get() - readPosition.get());
+    }
+
+    /**
+     * Ends the stream: the reader sees the end after the bytes already written, the writer fails.
+     */
+    void close() {
+        closed = true;
+        unpark(parkedReader);
+        unpark(parkedWriter);
+    }
+
+    private void copy(byte[] from, int fromOffset, byte[] to, int toOffset, int count, boolean intoRing) {
+        int ringOffset = intoRing ? toOffset : fromOffset;
+        int first = Math.min(count, buffer.length - ringOffset);
+        System.arraycopy(from, fromOffset, to, toOffset, first);
+        if (first < count) {
+            if (intoRing) {
+                System.arraycopy(from, fromOffset + first, to, 0, count - first);
+            } else {
+                System.arraycopy(from, 0, to, toOffset + first, count - first);
+            }
+        }
+    }
+
+    private static void park() throws InterruptedIOException {
+        LockSupport.park();
+        if (Thread.interrupted()) {
+            throw new InterruptedIOException("Interrupted while waiting on the ring");
+        }
+    }
+
+    private static void unpark(Thread thread) {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -2,17 +2,27 @@ package senario;
 
 import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.pqc.crypto.util.PublicKeyFactory;
 import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
 import org.bouncycastle.util.encoders.Hex;
 import org.example.kyber.KyberExample;
+import org.example.kyber.KyberParameterSet;
+import org.example.kyber.KyberRandom;
+import org.example.kyber.KyberRawCodec;
+import org.example.kyber.LightweightKyberPublicKey;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.net.ProtocolException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.security.PublicKey;
 import java.security.Security;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Client {
     static {
@@ -24,36 +34,186 @@ public class Client {
     private static final int PORT = 12345;
 
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("load")) {
+            LoadGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         try (Socket socket = new Socket(SERVER_ADDRESS, PORT)) {
             System.out.println("Connected to server");
 
-// Setup to receive server's public key
-            try (ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
-                 ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream())) {
-                byte[] serverPublicKeyBytes = (byte[]) in.readObject();
-                System.out.println("Received server public key bytes: " + Hex.toHexString(serverPublicKeyBytes)); // Debugging
-
-                if (serverPublicKeyBytes != null) {
-                    PublicKey serverPublicKey = (PublicKey) PublicKeyFactory.createKey(serverPublicKeyBytes);
-                    if (serverPublicKey != null) {
-                        // Generate shared secret and encapsulation
-                        SecretKeyWithEncapsulation encapsulatedSecret = KyberExample.generateSecretKeySender(serverPublicKey);
-
-                        // Send encapsulated secret to server
-                        out.writeObject(encapsulatedSecret);
-                        out.flush();
-
-                        System.out.println("Encapsulated secret sent to server");
-                    } else {
-                        System.out.println("Failed to create public key from received bytes");
-                    }
-                } else {
-                    System.out.println("Received server public key bytes are null");
-                }
-            } catch (IOException | ClassNotFoundException e) {
-                e.printStackTrace();
+            SecretKeyWithEncapsulation encapsulatedSecret = handshake(socket);
+            System.out.println("Encapsulated secret sent to server");
+            System.out.println("Shared secret: " + Hex.toHexString(encapsulatedSecret.getEncoded()));
+        }
+    }
+
+    /**
+     * Runs the client side of one full handshake on {@code socket} and returns the shared secret.
+     */
+    public static SecretKeyWithEncapsulation handshake(Socket socket) throws Exception {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        HandshakeFrame frame = new HandshakeFrame();
+
+        ServerPublicKey serverPublicKey = readPublicKey(in, frame);
+        SecretKeyWithEncapsulation encapsulatedSecret = fullHandshake(in, out, frame, serverPublicKey);
+        readTicket(in, frame);
+        return encapsulatedSecret;
+    }
+
+    /**
+     * Runs the client side of one handshake on {@code socket} and returns the session key. If
+     * {@code tickets} holds a ticket the session is resumed with it, skipping the KEM; if the
+     * server refuses it, the same connection falls back to a full handshake. The ticket issued at
+     * the end replaces the one in {@code tickets}.
+     */
+    public static byte[] handshake(Socket socket, AtomicReference<SessionTicket> tickets) throws Exception {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        return handshake(in, out, new HandshakeFrame(), tickets);
+    }
+
+    /**
+     * Same as {@link #handshake(Socket, AtomicReference)}, over any {@link Transport}.
+     */
+    public static byte[] handshake(Transport.Connection connection, AtomicReference<SessionTicket> tickets) throws Exception {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        return handshake(in, out, new HandshakeFrame(), tickets);
+    }
+
+    /**
+     * Runs {@link #handshake(Socket, AtomicReference)} and returns an encrypted record channel keyed
+     * with the session key, on the same connection.
+     */
+    public static RecordChannel connect(Socket socket, AtomicReference<SessionTicket> tickets) throws Exception {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        HandshakeFrame frame = new HandshakeFrame();
+        byte[] sessionKey = handshake(in, out, frame, tickets);
+        // The last frame read was the ticket, which carries the session's parameter set
+        return RecordChannel.client(in, out, frame.getParameterSet(), sessionKey);
+    }
+
+    private static byte[] handshake(DataInputStream in, DataOutputStream out, HandshakeFrame frame,
+                                    AtomicReference<SessionTicket> tickets) throws Exception {
+        ServerPublicKey serverPublicKey = readPublicKey(in, frame);
+        KyberParameterSet parameterSet = serverPublicKey.parameterSet;
+        SessionTicket ticket = tickets.getAndSet(null);
+        if (ticket != null) {
+            byte[] clientNonce = new byte[HandshakeFrame.RESUMPTION_NONCE_LENGTH];
+            KyberRandom.current().nextBytes(clientNonce);
+            HandshakeFrame.writeHeader(out, HandshakeFrame.TYPE_RESUME, parameterSet, ticket.getTicket().length + clientNonce.length);
+            out.write(ticket.getTicket());
+            out.write(clientNonce);
+            out.flush();
+
+            frame.readHeader(in);
+            if (frame.getType() == HandshakeFrame.TYPE_RESUMED) {
+                frame.expect(HandshakeFrame.TYPE_RESUMED, HandshakeFrame.RESUMPTION_NONCE_LENGTH);
+                byte[] serverNonce = new byte[HandshakeFrame.RESUMPTION_NONCE_LENGTH];
+                in.readFully(serverNonce);
+                byte[] sessionKey = SessionTicketManager.resumedSessionKey(ticket.getResumptionSecret(), clientNonce, serverNonce);
+                storeTicket(tickets, readTicket(in, frame), sessionKey);
+                return sessionKey;
             }
+            // Ticket refused: carry on with a full handshake on the same connection
+            frame.expect(HandshakeFrame.TYPE_STATUS, 1);
+            in.readByte();
+        }
+        byte[] sessionKey = fullHandshake(in, out, frame, serverPublicKey).getEncoded();
+        storeTicket(tickets, readTicket(in, frame), sessionKey);
+        return sessionKey;
+    }
+
+    static ServerPublicKey readPublicKey(DataInputStream in, HandshakeFrame frame) throws IOException {
+// Setup to receive server's public key
+        frame.readHeader(in);
+        if (frame.getType() == HandshakeFrame.TYPE_RETRY) {
+            // Shed by admission control: no handshake on this connection
+            frame.expect(HandshakeFrame.TYPE_RETRY, HandshakeFrame.RETRY_AFTER_LENGTH);
+            throw new ServerBusyException(in.readInt());
+        }
+        return ServerPublicKey.read(in, frame);
+    }
+
+    private static SecretKeyWithEncapsulation fullHandshake(DataInputStream in, DataOutputStream out, HandshakeFrame frame,
+                                                            ServerPublicKey serverPublicKey) throws Exception {
+        SecretKeyWithEncapsulation encapsulatedSecret = encapsulate(serverPublicKey);
+        sendEncapsulation(out, serverPublicKey, encapsulatedSecret.getEncapsulation());
+        awaitStatus(in, frame);
+        return encapsulatedSecret;
+    }
+
+    static SecretKeyWithEncapsulation encapsulate(ServerPublicKey serverPublicKey) throws Exception {
+        // Generate shared secret and encapsulation
+        return KyberExample.generateSecretKeySender(serverPublicKey.toPublicKey());
+    }
+
+    static void sendEncapsulation(DataOutputStream out, ServerPublicKey serverPublicKey, byte[] encapsulation) throws IOException {
+        // Send encapsulated secret to server, tagged with the epoch of the key it was made against
+        HandshakeFrame.writeHeader(out, HandshakeFrame.TYPE_ENCAPSULATION, serverPublicKey.parameterSet,
+                HandshakeFrame.EPOCH_LENGTH + encapsulation.length);
+        out.writeInt(serverPublicKey.epoch);
+        out.write(encapsulation);
+        out.flush();
+    }
+
+    static void awaitStatus(DataInputStream in, HandshakeFrame frame) throws IOException {
+        // Wait for the server to finish so the socket is not closed under it
+        frame.readHeader(in).expect(HandshakeFrame.TYPE_STATUS, 1);
+        byte status = in.readByte();
+        if (status == HandshakeFrame.STATUS_UNKNOWN_EPOCH) {
+            throw new ProtocolException("Server no longer accepts the key epoch of this handshake");
+        }
+        if (status != HandshakeFrame.STATUS_OK) {
+            throw new ProtocolException("Server rejected the handshake with status " + status);
+        }
+    }
+
+    static byte[] readTicket(DataInputStream in, HandshakeFrame frame) throws IOException {
+        frame.readHeader(in).expectAtMost(HandshakeFrame.TYPE_TICKET, SessionTicketManager.TICKET_LENGTH);
+        byte[] ticket = new byte[frame.getLength()];
+        in.readFully(ticket);
+        return ticket;
+    }
+
+    private static void storeTicket(AtomicReference<SessionTicket> tickets, byte[] ticket, byte[] sessionKey) {
+        if (ticket.length > 0) {
+            tickets.set(new SessionTicket(ticket, SessionTicketManager.resumptionSecret(sessionKey)));
+        }
+    }
+
+    /**
+     * A server public key as published in a {@link HandshakeFrame#TYPE_PUBLIC_KEY} frame, with the
+     * epoch that encapsulations against it must carry.
+     */
+    static final class ServerPublicKey {
+        final KyberParameterSet parameterSet;
+        final int epoch;
+        final byte[] encoded;
+
+        private ServerPublicKey(KyberParameterSet parameterSet, int epoch, byte[] encoded) {
+            this.parameterSet = parameterSet;
+            this.epoch = epoch;
+            this.encoded = encoded;
+        }
+
+        /**
+         * Reads the payload of a public key frame whose header was just read into {@code frame}.
+         */
+        static ServerPublicKey read(DataInput in, HandshakeFrame frame) throws IOException {
+            KyberParameterSet parameterSet = frame.getParameterSet();
+            frame.expect(HandshakeFrame.TYPE_PUBLIC_KEY, HandshakeFrame.EPOCH_LENGTH + parameterSet.getPublicKeySize());
+            int epoch = in.readInt();
+            byte[] encoded = new byte[parameterSet.getPublicKeySize()];
+            in.readFully(encoded);
+            return new ServerPublicKey(parameterSet, epoch, encoded);
+        }
 
+        PublicKey toPublicKey() {
+            // Raw encoding: t || rho
+            return new LightweightKyberPublicKey(KyberRawCodec.readPublicKey(parameterSet, ByteBuffer.wrap(encoded)));
         }
     }
 }
@@ -0,0 +1,46 @@
+package senario;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for the blocking per-connection handshake code. This is the Java 8 version; the
+ * multi-release jar carries a Java 21 version (src/main/java21) in which
+ * {@link #perConnection()} runs every connection on its own virtual thread. The JVM only resolves
+ * that version from the packaged jar: run from a class directory such as target/classes, as the
+ * tests are, this version is loaded on every Java release.
+ */
+public final class ConnectionExecutors {
+
+    private ConnectionExecutors() {
+    }
+
+    /**
+     * One thread per accepted connection; on Java 8 to 20 these are platform threads.
+     */
+    public static ExecutorService perConnection() {
+        return Executors.newCachedThreadPool(daemonThreads("connection"));
+    }
+
+    /**
+     * A fixed pool of platform threads, the baseline the per-connection mode is compared against.
+     */
+    public static ExecutorService fixedPlatformPool(int threads) {
+        return Executors.newFixedThreadPool(threads, daemonThreads("connection-pool"));
+    }
+
+    public static String describePerConnection() {
+        return "platform thread per connection";
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
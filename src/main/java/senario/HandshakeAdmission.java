@@ -0,0 +1,232 @@
+package senario;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.example.kyber.KyberExample;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for handshakes. At most {@link #getConcurrencyLimit()} handshakes run at once,
+ * where the limit is how many decapsulations the processors can finish within the target latency,
+ * {@code processors * targetLatency / decapsulationTime}, and the decapsulation time is a moving
+ * average of measured CPU time. Connections over the limit wait in a bounded FIFO queue; a
+ * connection that finds the queue full, or that waited longer than the target latency, is shed
+ * straight away with a retry-after hint of how long the current backlog takes to drain. Under a
+ * reconnect storm, latency stays near the target and the excess is refused cheaply instead of
+ * piling up.
+ * <p>
+ * The limit is a CPU budget, but an admitted handshake holds its slot until {@link #finished()},
+ * including the round trips it spends waiting on the client. Over slow links most of that time is
+ * network wait, so the CPU-derived limit alone can let far more connections in at once than the
+ * server wants to hold; {@code maxInFlight} caps them outright.
+ * <p>
+ * The {@link Handler} is called outside any lock and must not block.
+ */
+public class HandshakeAdmission<T> {
+
+    public static final long DEFAULT_TARGET_LATENCY_MILLIS = 250;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final double SMOOTHING = 0.1;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * What to do with a connection once admission control has decided.
+     */
+    public interface Handler<T> {
+        /** Start the handshake; {@link #finished()} must be called when it ends. */
+        void admit(T connection);
+
+        /** Refuse the connection, telling the client to come back after {@code retryAfterMillis}. */
+        void shed(T connection, long retryAfterMillis);
+    }
+
+    private final Handler<T> handler;
+    private final int processors;
+    private final long targetLatencyNanos;
+    private final int queueCapacity;
+    private final int maxInFlight;
+    private final ArrayDeque<Waiting<T>> queue = new ArrayDeque<>();
+    private double decapsulationNanos;
+    private int inFlight;
+    private int maxQueueDepth;
+    private long admitted;
+    private long shed;
+
+    /**
+     * @param decapsulationNanos initial estimate of the CPU time of one decapsulation, see {@link #measureDecapsulationNanos}
+     */
+    public HandshakeAdmission(Handler<T> handler, int processors, long targetLatencyMillis, int queueCapacity,
+                              long decapsulationNanos) {
+        this(handler, processors, targetLatencyMillis, queueCapacity, decapsulationNanos, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param decapsulationNanos initial estimate of the CPU time of one decapsulation, see {@link #measureDecapsulationNanos}
+     * @param maxInFlight        most handshakes admitted at once, whatever the CPU budget allows
+     */
+    public HandshakeAdmission(Handler<T> handler, int processors, long targetLatencyMillis, int queueCapacity,
+                              long decapsulationNanos, int maxInFlight) {
+        if (processors <= 0 || targetLatencyMillis <= 0 || queueCapacity < 0 || decapsulationNanos <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("Invalid admission settings");
+        }
+        this.maxInFlight = maxInFlight;
+        this.handler = handler;
+        this.processors = processors;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.queueCapacity = queueCapacity;
+        this.decapsulationNanos = decapsulationNanos;
+    }
+
+    /**
+     * Times {@code rounds} decapsulations against {@code epoch}, after as many warm-up rounds, and
+     * returns the mean CPU time of one.
+     */
+    public static long measureDecapsulationNanos(ServerKeyRing.Epoch epoch, int rounds) throws Exception {
+        SecretKeyWithEncapsulation secret = KyberExample.generateSecretKeySender(epoch.getKeyPair().getPublic());
+        for (int i = 0; i < rounds; i++) {
+            KyberExample.generateSecretKeyReceiver(epoch.getKeyPair().getPrivate(), secret.getEncapsulation());
+        }
+        long start = cpuTimeNanos();
+        for (int i = 0; i < rounds; i++) {
+            KyberExample.generateSecretKeyReceiver(epoch.getKeyPair().getPrivate(), secret.getEncapsulation());
+        }
+        return Math.max(1, (cpuTimeNanos() - start) / rounds);
+    }
+
+    /**
+     * CPU time of the calling thread if the JVM measures it, wall-clock time otherwise.
+     */
+    static long cpuTimeNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Admits, queues or sheds a new connection.
+     */
+    public void offer(T connection) {
+        long now = System.nanoTime();
+        List<Waiting<T>> expired;
+        boolean admit = false;
+        long retryAfterMillis = 0;
+        synchronized (this) {
+            expired = expire(now);
+            if (queue.isEmpty() && inFlight < getConcurrencyLimit()) {
+                inFlight++;
+                admitted++;
+                admit = true;
+            } else if (queue.size() < queueCapacity) {
+                queue.addLast(new Waiting<>(connection, now));
+                maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+            } else {
+                shed++;
+                retryAfterMillis = retryAfterMillis();
+            }
+        }
+        shedExpired(expired);
+        if (admit) {
+            handler.admit(connection);
+        } else if (retryAfterMillis > 0) {
+            handler.shed(connection, retryAfterMillis);
+        }
+    }
+
+    /**
+     * Ends an admitted handshake and admits queued connections into the freed capacity.
+     */
+    public void finished() {
+        List<Waiting<T>> expired;
+        List<T> admittedNow = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            expired = expire(System.nanoTime());
+            int limit = getConcurrencyLimit();
+            while (inFlight < limit && !queue.isEmpty()) {
+                admittedNow.add(queue.removeFirst().connection);
+                inFlight++;
+                admitted++;
+            }
+        }
+        shedExpired(expired);
+        for (T connection : admittedNow) {
+            handler.admit(connection);
+        }
+    }
+
+    /**
+     * Folds one measured decapsulation into the moving average the limit is derived from.
+     */
+    public synchronized void recordDecapsulation(long nanos) {
+        decapsulationNanos += SMOOTHING * (nanos - decapsulationNanos);
+    }
+
+    public synchronized int getConcurrencyLimit() {
+        return (int) Math.max(1, Math.min(maxInFlight, processors * targetLatencyNanos / decapsulationNanos));
+    }
+
+    public synchronized long getDecapsulationNanos() {
+        return (long) decapsulationNanos;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public synchronized long getAdmitted() {
+        return admitted;
+    }
+
+    public synchronized long getShed() {
+        return shed;
+    }
+
+    private List<Waiting<T>> expire(long now) {
+        List<Waiting<T>> expired = Collections.emptyList();
+        while (!queue.isEmpty() && now - queue.peekFirst().enqueuedAt >= targetLatencyNanos) {
+            if (expired.isEmpty()) {
+                expired = new ArrayList<>();
+            }
+            Waiting<T> waiting = queue.removeFirst();
+            waiting.retryAfterMillis = retryAfterMillis();
+            expired.add(waiting);
+            shed++;
+        }
+        return expired;
+    }
+
+    private void shedExpired(List<Waiting<T>> expired) {
+        for (Waiting<T> waiting : expired) {
+            handler.shed(waiting.connection, waiting.retryAfterMillis);
+        }
+    }
+
+    private long retryAfterMillis() {
+        double backlogNanos = (inFlight + queue.size()) * decapsulationNanos / processors;
+        return Math.max(1, (long) Math.ceil(backlogNanos / 1e6));
+    }
+
+    private static final class Waiting<T> {
+        final T connection;
+        final long enqueuedAt;
+        long retryAfterMillis;
+
+        Waiting(T connection, long enqueuedAt) {
+            this.connection = connection;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package senario;
+
+import org.example.kyber.KyberParameterSet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary framing of the handshake messages, shared by the blocking and the NIO endpoints. Every
+ * frame is a fixed {@link #HEADER_SIZE} byte header followed by the payload:
+ * <pre>
+ *     version (1) | type (1) | parameter set id (1) | payload length (4, big-endian) | payload
+ * </pre>
+ * Payloads are the raw encodings of {@link org.example.kyber.KyberRawCodec} for
+ * {@link #TYPE_PUBLIC_KEY} and {@link #TYPE_ENCAPSULATION}, each prefixed with the
+ * {@link #EPOCH_LENGTH} byte epoch of the server key they belong to, and a single status byte for
+ * {@link #TYPE_STATUS} ({@link #STATUS_UNKNOWN_EPOCH} when that key has been retired). A
+ * successful handshake ends with a {@link #TYPE_TICKET} frame holding a {@link SessionTicketManager}
+ * ticket, empty when the server does not issue tickets; a client that holds a ticket answers the
+ * public key with {@link #TYPE_RESUME} (ticket and client nonce) instead of an encapsulation, and
+ * the server either accepts with {@link #TYPE_RESUMED} (server nonce) or sends a
+ * {@link #STATUS_REJECTED} status and waits for the encapsulation. On a multiplexed connection
+ * every encapsulation and status instead carries a {@link #STREAM_ID_LENGTH} byte stream id ahead
+ * of its payload ({@link #TYPE_STREAM_ENCAPSULATION}, {@link #TYPE_STREAM_STATUS}), and the server
+ * sends a new public key frame whenever it starts a new epoch. After the handshake, application
+ * data may follow in encrypted {@link #TYPE_RECORD} frames ({@link RecordChannel}). A server
+ * under overload may answer a new connection with a {@link #TYPE_RETRY} frame, carrying a
+ * retry-after hint, instead of its public key ({@link HandshakeAdmission}). An instance is a mutable header that
+ * a connection reuses for every frame it reads, so decoding allocates nothing.
+ */
+public final class HandshakeFrame {
+
+    public static final byte VERSION = 2;
+    public static final int HEADER_SIZE = 7;
+
+    public static final byte TYPE_PUBLIC_KEY = 1;
+    public static final byte TYPE_ENCAPSULATION = 2;
+    public static final byte TYPE_STATUS = 3;
+    public static final byte TYPE_TICKET = 4;
+    public static final byte TYPE_RESUME = 5;
+    public static final byte TYPE_RESUMED = 6;
+    public static final byte TYPE_STREAM_ENCAPSULATION = 7;
+    public static final byte TYPE_STREAM_STATUS = 8;
+    public static final byte TYPE_RECORD = 9;
+    public static final byte TYPE_RETRY = 10;
+
+    /**
+     * Length of the stream id that prefixes the payload of the stream frames of a multiplexed connection.
+     */
+    public static final int STREAM_ID_LENGTH = 4;
+
+    /**
+     * Length of the server key epoch that prefixes public keys and encapsulations ({@link ServerKeyRing}).
+     */
+    public static final int EPOCH_LENGTH = 4;
+
+    /**
+     * Length of the retry-after hint, in milliseconds, of a {@link #TYPE_RETRY} frame.
+     */
+    public static final int RETRY_AFTER_LENGTH = 4;
+
+    /**
+     * Length of the client and server nonces carried by {@link #TYPE_RESUME} and {@link #TYPE_RESUMED}.
+     */
+    public static final int RESUMPTION_NONCE_LENGTH = 32;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_REJECTED = 1;
+    public static final byte STATUS_UNKNOWN_EPOCH = 2;
+
+    private byte type;
+    private KyberParameterSet parameterSet;
+    private int length;
+
+    public byte getType() {
+        return type;
+    }
+
+    public KyberParameterSet getParameterSet() {
+        return parameterSet;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Reads a header from a stream, blocking until all {@link #HEADER_SIZE} bytes are there.
+     */
+    public HandshakeFrame readHeader(DataInput in) throws IOException {
+        return set(in.readByte(), in.readByte(), in.readByte(), in.readInt());
+    }
+
+    /**
+     * Reads a header from the next {@link #HEADER_SIZE} bytes of {@code in}.
+     */
+    public HandshakeFrame readHeader(ByteBuffer in) throws IOException {
+        if (in.remaining() < HEADER_SIZE) {
+            throw new ProtocolException("Truncated frame header: " + in.remaining() + " bytes");
+        }
+        return set(in.get(), in.get(), in.get(), in.getInt());
+    }
+
+    /**
+     * Checks that the frame just read has the given type and payload length.
+     */
+    public HandshakeFrame expect(byte expectedType, int expectedLength) throws ProtocolException {
+        if (type != expectedType) {
+            throw new ProtocolException("Expected frame type " + expectedType + ", got " + type);
+        }
+        if (length != expectedLength) {
+            throw new ProtocolException("Expected a " + expectedLength + " byte payload, got " + length);
+        }
+        return this;
+    }
+
+    /**
+     * Checks that the frame just read has the given type and a payload of at most {@code maxLength} bytes.
+     */
+    public HandshakeFrame expectAtMost(byte expectedType, int maxLength) throws ProtocolException {
+        if (type != expectedType) {
+            throw new ProtocolException("Expected frame type " + expectedType + ", got " + type);
+        }
+        if (length > maxLength) {
+            throw new ProtocolException("Expected at most a " + maxLength + " byte payload, got " + length);
+        }
+        return this;
+    }
+
+    public static void writeHeader(DataOutput out, byte type, KyberParameterSet parameterSet, int length) throws IOException {
+        out.writeByte(VERSION);
+        out.writeByte(type);
+        out.writeByte(parameterSet.getId());
+        out.writeInt(length);
+    }
+
+    public static void writeHeader(ByteBuffer out, byte type, KyberParameterSet parameterSet, int length) {
+        out.put(VERSION).put(type).put(parameterSet.getId()).putInt(length);
+    }
+
+    public static void writeStatus(DataOutput out, KyberParameterSet parameterSet, byte status) throws IOException {
+        writeHeader(out, TYPE_STATUS, parameterSet, 1);
+        out.writeByte(status);
+    }
+
+    public static void writeStatus(ByteBuffer out, KyberParameterSet parameterSet, byte status) {
+        writeHeader(out, TYPE_STATUS, parameterSet, 1);
+        out.put(status);
+    }
+
+    public static void writeStreamStatus(ByteBuffer out, KyberParameterSet parameterSet, int streamId, byte status) {
+        writeHeader(out, TYPE_STREAM_STATUS, parameterSet, STREAM_ID_LENGTH + 1);
+        out.putInt(streamId).put(status);
+    }
+
+    private HandshakeFrame set(byte version, byte type, byte parameterSetId, int length) throws ProtocolException {
+        if (version != VERSION) {
+            throw new ProtocolException("Unsupported frame version " + version);
+        }
+        if (length < 0) {
+            throw new ProtocolException("Negative frame length " + length);
+        }
+        try {
+            this.parameterSet = KyberParameterSet.fromId(parameterSetId);
+        } catch (IllegalArgumentException e) {
+            throw new ProtocolException(e.getMessage());
+        }
+        this.type = type;
+        this.length = length;
+        return this;
+    }
+}
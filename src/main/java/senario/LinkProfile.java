@@ -0,0 +1,69 @@
+package senario;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One-way latency and bandwidth of an emulated link for {@link LoopbackTransport}. The presets are
+ * nominal figures for the constrained links the larger Kyber parameter sets are meant to survive,
+ * not measurements of any particular network.
+ */
+public final class LinkProfile {
+
+    /** No delay at all: the bare cost of the protocol. */
+    public static final LinkProfile UNLIMITED = new LinkProfile("unlimited", 0, 0);
+    public static final LinkProfile LAN = new LinkProfile("lan", 100, 1_000_000_000L);
+    /** IEEE 802.15.4 radio, as under 6LoWPAN or Thread. */
+    public static final LinkProfile IEEE_802_15_4 = new LinkProfile("802.15.4", 10_000, 250_000);
+    public static final LinkProfile LTE_M = new LinkProfile("lte-m", 50_000, 375_000);
+    public static final LinkProfile NB_IOT = new LinkProfile("nb-iot", 300_000, 60_000);
+
+    private final String name;
+    private final long latencyNanos;
+    private final long bitsPerSecond;
+
+    /**
+     * @param latencyMicros one-way propagation delay
+     * @param bitsPerSecond link rate, or 0 for unlimited
+     */
+    public LinkProfile(String name, long latencyMicros, long bitsPerSecond) {
+        if (latencyMicros < 0 || bitsPerSecond < 0) {
+            throw new IllegalArgumentException("Latency and bandwidth must not be negative");
+        }
+        this.name = name;
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        this.bitsPerSecond = bitsPerSecond;
+    }
+
+    public static LinkProfile[] presets() {
+        return new LinkProfile[]{UNLIMITED, LAN, IEEE_802_15_4, LTE_M, NB_IOT};
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public long getBitsPerSecond() {
+        return bitsPerSecond;
+    }
+
+    public boolean isUnlimited() {
+        return latencyNanos == 0 && bitsPerSecond == 0;
+    }
+
+    /**
+     * Time {@code bytes} take to go onto the wire at the link rate.
+     */
+    public long transmissionNanos(long bytes) {
+        return bitsPerSecond == 0 ? 0 : bytes * 8 * 1_000_000_000L / bitsPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + TimeUnit.NANOSECONDS.toMicros(latencyNanos) / 1000.0 + " ms, "
+                + (bitsPerSecond == 0 ? "unlimited" : bitsPerSecond / 1000 + " kbit/s") + ")";
+    }
+}
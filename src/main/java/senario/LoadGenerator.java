@@ -0,0 +1,252 @@
+package senario;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator for the blocking handshake servers ({@link Server}, {@link ThreadedServer}): a
+ * number of client threads open one connection per handshake, either back to back (closed loop) or
+ * at a fixed target rate (open loop), and time every step of the client side of the handshake.
+ * In open-loop mode the end-to-end latency is measured from the moment a handshake was scheduled
+ * to start, so time spent queued behind a slow server is not hidden.
+ * <p>
+ * Run with {@code senario.Client load [--host=h] [--port=p] [--connections=n] [--concurrency=c]
+ * [--rate=r] [--duration=s] [--params=kyber768]}. Without {@code --port} an in-process
+ * {@link ThreadedServer} with the given parameter set is started and loaded. With {@code --port}
+ * the external server chooses the parameter set, so {@code --params} is rejected.
+ */
+public class LoadGenerator {
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+        Security.addProvider(new BouncyCastlePQCProvider());
+    }
+
+    /**
+     * The steps of one client handshake that are timed separately.
+     */
+    public enum Stage {
+        CONNECT, KEY_RECEIPT, ENCAPSULATION, SEND, CONFIRMATION, SERVICE, LATENCY
+    }
+
+    private final InetSocketAddress address;
+    private final long connections;
+    private final int concurrency;
+    private final double rate;
+    private final long durationNanos;
+
+    /**
+     * @param connections   handshakes to run in total, or 0 to run until {@code durationMillis}
+     * @param concurrency   client threads, hence connections open at the same time at most
+     * @param rate          handshakes started per second across all threads, or 0 for a closed loop
+     * @param durationMillis how long to run at most
+     */
+    public LoadGenerator(String host, int port, long connections, int concurrency, double rate, long durationMillis) {
+        this.address = new InetSocketAddress(host, port);
+        this.connections = connections > 0 ? connections : Long.MAX_VALUE;
+        this.concurrency = concurrency;
+        this.rate = rate;
+        this.durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        String host = options.getOrDefault("host", "localhost");
+        long connections = Long.parseLong(options.getOrDefault("connections", "0"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        long durationMillis = (long) (Double.parseDouble(options.getOrDefault("duration", "10")) * 1000);
+        KyberParameterSpec kyberParameterSpec = KyberParameterSpec.fromName(options.getOrDefault("params", "kyber512"));
+
+        ThreadedServer embedded = null;
+        int port;
+        if (options.containsKey("port")) {
+            if (options.containsKey("params")) {
+                throw new IllegalArgumentException("--params only applies to the in-process server; "
+                        + "the server on --port chooses its own parameter set");
+            }
+            port = Integer.parseInt(options.get("port"));
+        } else {
+            embedded = new ThreadedServer(0, kyberParameterSpec, ConnectionExecutors.perConnection());
+            port = embedded.getPort();
+            System.out.println("Started an in-process " + kyberParameterSpec.getName() + " server on port " + port
+                    + " (" + ConnectionExecutors.describePerConnection() + ")");
+        }
+        try {
+            new LoadGenerator(host, port, connections, concurrency, rate, durationMillis).run().print(System.out);
+        } finally {
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+    }
+
+    public Report run() throws InterruptedException {
+        Report report = new Report();
+        AtomicLong next = new AtomicLong();
+        long start = System.nanoTime();
+        long deadline = start + durationNanos;
+        List<Thread> threads = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Thread thread = new Thread(() -> {
+                long index;
+                while ((index = next.getAndIncrement()) < connections) {
+                    long scheduled = rate > 0 ? start + (long) (index * 1e9 / rate) : System.nanoTime();
+                    if (scheduled >= deadline) {
+                        return;
+                    }
+                    while (System.nanoTime() < scheduled) {
+                        LockSupport.parkNanos(scheduled - System.nanoTime());
+                    }
+                    handshake(scheduled, report);
+                }
+            }, "load-generator-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private void handshake(long scheduled, Report report) {
+        long start = System.nanoTime();
+        try (Socket socket = new Socket()) {
+            socket.setTcpNoDelay(true);
+            socket.connect(address);
+            long connected = System.nanoTime();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            HandshakeFrame frame = new HandshakeFrame();
+
+            Client.ServerPublicKey serverPublicKey = Client.readPublicKey(in, frame);
+            long keyReceived = System.nanoTime();
+            byte[] encapsulation = Client.encapsulate(serverPublicKey).getEncapsulation();
+            long encapsulated = System.nanoTime();
+            Client.sendEncapsulation(out, serverPublicKey, encapsulation);
+            long sent = System.nanoTime();
+            Client.awaitStatus(in, frame);
+            Client.readTicket(in, frame);
+            long confirmed = System.nanoTime();
+
+            report.record(Stage.CONNECT, connected - start);
+            report.record(Stage.KEY_RECEIPT, keyReceived - connected);
+            report.record(Stage.ENCAPSULATION, encapsulated - keyReceived);
+            report.record(Stage.SEND, sent - encapsulated);
+            report.record(Stage.CONFIRMATION, confirmed - sent);
+            report.record(Stage.SERVICE, confirmed - start);
+            report.record(Stage.LATENCY, confirmed - scheduled);
+            report.completed.incrementAndGet();
+        } catch (ServerBusyException e) {
+            report.shed.incrementAndGet();
+        } catch (Exception e) {
+            report.fail(e);
+        }
+    }
+
+    /**
+     * Throughput and per-stage latency histograms of one run.
+     */
+    public static final class Report {
+        private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong shed = new AtomicLong();
+        // failures by exception class, with the message of the first one of each class
+        private final ConcurrentMap<String, AtomicLong> failureCounts = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, String> firstFailureMessages = new ConcurrentHashMap<>();
+        private long elapsedNanos;
+
+        Report() {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        void record(Stage stage, long nanos) {
+            histograms[stage.ordinal()].recordNanos(nanos);
+        }
+
+        void fail(Exception e) {
+            failed.incrementAndGet();
+            String cause = e.getClass().getName();
+            failureCounts.computeIfAbsent(cause, name -> new AtomicLong()).incrementAndGet();
+            firstFailureMessages.putIfAbsent(cause, String.valueOf(e.getMessage()));
+        }
+
+        public LatencyHistogram getHistogram(Stage stage) {
+            return histograms[stage.ordinal()];
+        }
+
+        public long getCompleted() {
+            return completed.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * Failed handshakes by the class name of the exception that ended them.
+         */
+        public Map<String, Long> getFailureCauses() {
+            Map<String, Long> causes = new TreeMap<>();
+            failureCounts.forEach((cause, count) -> causes.put(cause, count.get()));
+            return causes;
+        }
+
+        /**
+         * Handshakes the server refused under load with a retry-after hint.
+         */
+        public long getShed() {
+            return shed.get();
+        }
+
+        public double getThroughput() {
+            return completed.get() / (elapsedNanos / 1e9);
+        }
+
+        public void print(PrintStream out) {
+            out.printf("%d handshakes completed, %d failed, %d shed in %.1f s: %.1f handshakes/s%n",
+                    getCompleted(), getFailed(), getShed(), elapsedNanos / 1e9, getThroughput());
+            getFailureCauses().forEach((cause, count) ->
+                    out.printf("  %d x %s: %s%n", count, cause, firstFailureMessages.get(cause)));
+            out.printf("%-14s %10s %10s %10s %10s %10s%n", "stage (us)", "p50", "p90", "p99", "p99.9", "max");
+            for (Stage stage : Stage.values()) {
+                LatencyHistogram histogram = getHistogram(stage);
+                out.printf("%-14s %10d %10d %10d %10d %10d%n", stage.name().toLowerCase(),
+                        histogram.percentileMicros(50), histogram.percentileMicros(90), histogram.percentileMicros(99),
+                        histogram.percentileMicros(99.9), histogram.maxMicros());
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package senario;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process {@link Transport}: each connection is a pair of {@link ByteRing}s, so a handshake
+ * costs no system calls and no kernel buffering. With a {@link LinkProfile} other than
+ * {@link LinkProfile#UNLIMITED} every write is delivered as one packet: it occupies its direction
+ * of the link for its transmission time at the link rate, queued behind earlier writes, and
+ * becomes readable a propagation delay after it has been sent. Writers are never slowed down;
+ * only the reader waits.
+ */
+public class LoopbackTransport implements Transport {
+
+    public static final int DEFAULT_RING_CAPACITY = 1 << 16;
+
+    // Every packet is preceded in the ring by its delivery time and length
+    private static final int PACKET_HEADER_SIZE = 12;
+
+    // Marks the accept queue once the transport is closed
+    private static final Connection CLOSED = new Connection() {
+        @Override
+        public InputStream getInputStream() {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final LinkProfile link;
+    private final int ringCapacity;
+    private final BlockingQueue<Connection> pending = new LinkedBlockingQueue<>();
+    private volatile boolean closed;
+
+    public LoopbackTransport() {
+        this(LinkProfile.UNLIMITED);
+    }
+
+    public LoopbackTransport(LinkProfile link) {
+        this(link, DEFAULT_RING_CAPACITY);
+    }
+
+    public LoopbackTransport(LinkProfile link, int ringCapacity) {
+        this.link = link;
+        this.ringCapacity = ringCapacity;
+    }
+
+    public LinkProfile getLink() {
+        return link;
+    }
+
+    @Override
+    public Connection connect() throws IOException {
+        if (closed) {
+            throw new IOException("Transport closed");
+        }
+        ByteRing toServer = new ByteRing(ringCapacity);
+        ByteRing toClient = new ByteRing(ringCapacity);
+        pending.add(new RingConnection(toServer, toClient, link));
+        return new RingConnection(toClient, toServer, link);
+    }
+
+    @Override
+    public Connection accept() throws IOException {
+        try {
+            Connection connection = pending.take();
+            if (connection == CLOSED) {
+                pending.add(CLOSED);
+                throw new IOException("Transport closed");
+            }
+            return connection;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while accepting");
+        }
+    }
+
+    /**
+     * Stops accepting; a blocked {@link #accept()} fails. Open connections stay usable.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        pending.add(CLOSED);
+    }
+
+    private static final class RingConnection implements Connection {
+        private final ByteRing incoming;
+        private final ByteRing outgoing;
+        private final InputStream in;
+        private final OutputStream out;
+
+        RingConnection(ByteRing incoming, ByteRing outgoing, LinkProfile link) {
+            this.incoming = incoming;
+            this.outgoing = outgoing;
+            if (link.isUnlimited()) {
+                this.in = new RingInputStream(incoming);
+                this.out = new RingOutputStream(outgoing);
+            } else {
+                this.in = new LinkInputStream(incoming);
+                this.out = new LinkOutputStream(outgoing, link);
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public void close() {
+            incoming.close();
+            outgoing.close();
+        }
+    }
+
+    private static class RingInputStream extends InputStream {
+        final ByteRing ring;
+        private final byte[] single = new byte[1];
+
+        RingInputStream(ByteRing ring) {
+            this.ring = ring;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return ring.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            return ring.available();
+        }
+
+        @Override
+        public void close() {
+            ring.close();
+        }
+    }
+
+    private static class RingOutputStream extends OutputStream {
+        final ByteRing ring;
+        private final byte[] single = new byte[1];
+
+        RingOutputStream(ByteRing ring) {
+            this.ring = ring;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ring.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            ring.close();
+        }
+    }
+
+    /**
+     * Stamps every write with the time the emulated link delivers its last byte.
+     */
+    private static final class LinkOutputStream extends RingOutputStream {
+        private final LinkProfile link;
+        private final byte[] header = new byte[PACKET_HEADER_SIZE];
+        private long linkFreeAt;
+
+        LinkOutputStream(ByteRing ring, LinkProfile link) {
+            super(ring);
+            this.link = link;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            linkFreeAt = Math.max(System.nanoTime(), linkFreeAt) + link.transmissionNanos(len);
+            long deliverAt = linkFreeAt + link.getLatencyNanos();
+            for (int i = 0; i < 8; i++) {
+                header[i] = (byte) (deliverAt >>> (56 - 8 * i));
+            }
+            for (int i = 0; i < 4; i++) {
+                header[8 + i] = (byte) (len >>> (24 - 8 * i));
+            }
+            ring.write(header, 0, PACKET_HEADER_SIZE);
+            ring.write(b, off, len);
+        }
+    }
+
+    /**
+     * Holds every packet back until its delivery time.
+     */
+    private static final class LinkInputStream extends RingInputStream {
+        private final byte[] header = new byte[PACKET_HEADER_SIZE];
+        private int packetRemaining;
+
+        LinkInputStream(ByteRing ring) {
+            super(ring);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (packetRemaining == 0 && !nextPacket()) {
+                return -1;
+            }
+            int read = ring.read(b, off, Math.min(len, packetRemaining));
+            if (read < 0) {
+                throw new IOException("Connection closed inside a packet");
+            }
+            packetRemaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return Math.min(packetRemaining, ring.available());
+        }
+
+        private boolean nextPacket() throws IOException {
+            for (int filled = 0; filled < PACKET_HEADER_SIZE; ) {
+                int read = ring.read(header, filled, PACKET_HEADER_SIZE - filled);
+                if (read < 0) {
+                    if (filled == 0) {
+                        return false;
+                    }
+                    throw new IOException("Connection closed inside a packet header");
+                }
+                filled += read;
+            }
+            long deliverAt = 0;
+            for (int i = 0; i < 8; i++) {
+                deliverAt = deliverAt << 8 | header[i] & 0xff;
+            }
+            int length = 0;
+            for (int i = 8; i < PACKET_HEADER_SIZE; i++) {
+                length = length << 8 | header[i] & 0xff;
+            }
+            long wait;
+            while ((wait = deliverAt - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException("Interrupted while waiting for a packet");
+                }
+            }
+            packetRemaining = length;
+            return true;
+        }
+    }
+}
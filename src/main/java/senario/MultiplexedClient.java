@@ -0,0 +1,169 @@
+package senario;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+import org.example.kyber.KyberExample;
+import org.example.kyber.KyberParameterSet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client side of a multiplexed {@link NioServer} connection: one socket carries any number of
+ * in-flight handshakes, each tagged with a stream id. Encapsulations are pipelined without waiting
+ * for earlier answers, and a reader thread completes each handshake's future when its
+ * {@link HandshakeFrame#TYPE_STREAM_STATUS} arrives, in whatever order the server finishes them.
+ * When the server rotates its key it pushes the new public key on the connection, and handshakes
+ * started after that use the new epoch.
+ */
+public class MultiplexedClient implements AutoCloseable {
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+        Security.addProvider(new BouncyCastlePQCProvider());
+    }
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final KyberParameterSet parameterSet;
+    private volatile Client.ServerPublicKey serverPublicKey;
+    private final Map<Integer, Stream> streams = new ConcurrentHashMap<>();
+    private int nextStreamId;
+    private volatile IOException failure;
+
+    public MultiplexedClient(String host, int port) throws Exception {
+        this(new Socket(host, port));
+    }
+
+    public MultiplexedClient(Socket socket) throws Exception {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        HandshakeFrame frame = new HandshakeFrame();
+        this.serverPublicKey = Client.readPublicKey(in, frame);
+        this.parameterSet = serverPublicKey.parameterSet;
+
+        Thread reader = new Thread(() -> readStatuses(in, frame), "multiplexed-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public KyberParameterSet getParameterSet() {
+        return parameterSet;
+    }
+
+    public int getInFlight() {
+        return streams.size();
+    }
+
+    /**
+     * The epoch of the server key that new handshakes are made against.
+     */
+    public int getEpoch() {
+        return serverPublicKey.epoch;
+    }
+
+    /**
+     * Starts one handshake and returns its shared secret once the server has confirmed it.
+     */
+    public CompletableFuture<SecretKeyWithEncapsulation> handshake() throws Exception {
+        return handshakes(1).get(0);
+    }
+
+    /**
+     * Starts {@code count} handshakes, writes all their encapsulations in one flush and returns
+     * their shared secrets in the same order; the server may confirm them in any order.
+     */
+    public List<CompletableFuture<SecretKeyWithEncapsulation>> handshakes(int count) throws Exception {
+        Client.ServerPublicKey key = serverPublicKey;
+        PublicKey publicKey = key.toPublicKey();
+        List<Stream> started = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            started.add(new Stream(KyberExample.generateSecretKeySender(publicKey)));
+        }
+        synchronized (out) {
+            if (failure != null) {
+                throw failure;
+            }
+            for (Stream stream : started) {
+                int streamId = nextStreamId++;
+                streams.put(streamId, stream);
+                byte[] encapsulation = stream.secret.getEncapsulation();
+                HandshakeFrame.writeHeader(out, HandshakeFrame.TYPE_STREAM_ENCAPSULATION, parameterSet,
+                        HandshakeFrame.STREAM_ID_LENGTH + HandshakeFrame.EPOCH_LENGTH + encapsulation.length);
+                out.writeInt(streamId);
+                out.writeInt(key.epoch);
+                out.write(encapsulation);
+            }
+            out.flush();
+        }
+        List<CompletableFuture<SecretKeyWithEncapsulation>> results = new ArrayList<>(count);
+        for (Stream stream : started) {
+            results.add(stream.result);
+        }
+        return results;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private void readStatuses(DataInputStream in, HandshakeFrame frame) {
+        try {
+            while (true) {
+                frame.readHeader(in);
+                if (frame.getType() == HandshakeFrame.TYPE_PUBLIC_KEY) {
+                    // The server rotated its key; later handshakes use the new epoch
+                    serverPublicKey = Client.ServerPublicKey.read(in, frame);
+                    continue;
+                }
+                frame.expect(HandshakeFrame.TYPE_STREAM_STATUS, HandshakeFrame.STREAM_ID_LENGTH + 1);
+                int streamId = in.readInt();
+                byte status = in.readByte();
+                Stream stream = streams.remove(streamId);
+                if (stream == null) {
+                    throw new ProtocolException("Status for unknown stream " + streamId);
+                }
+                if (status == HandshakeFrame.STATUS_OK) {
+                    stream.result.complete(stream.secret);
+                } else if (status == HandshakeFrame.STATUS_UNKNOWN_EPOCH) {
+                    stream.result.completeExceptionally(new ProtocolException("Server no longer accepts the key epoch of stream " + streamId));
+                } else {
+                    stream.result.completeExceptionally(new ProtocolException("Server rejected stream " + streamId + " with status " + status));
+                }
+            }
+        } catch (IOException e) {
+            synchronized (out) {
+                failure = e;
+            }
+            for (Stream stream : streams.values()) {
+                stream.result.completeExceptionally(e);
+            }
+            streams.clear();
+        }
+    }
+
+    private static final class Stream {
+        final SecretKeyWithEncapsulation secret;
+        final CompletableFuture<SecretKeyWithEncapsulation> result = new CompletableFuture<>();
+
+        Stream(SecretKeyWithEncapsulation secret) {
+            this.secret = secret;
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package senario;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.example.kyber.KyberBatchDecapsulator;
+import org.example.kyber.KyberParameterSet;
+import org.example.kyber.KyberRawCodec;
+import org.example.kyber.ProviderRouter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.security.Security;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-client Kyber handshake server on non-blocking channels. A few event-loop threads, each with
+ * its own {@link Selector}, do all the socket I/O; decapsulation is handed to a
+ * {@link KyberBatchDecapsulator} so a loop never runs the KEM itself. Messages use the same
+ * {@link HandshakeFrame} framing as {@link Server}:
+ * <ol>
+ *     <li>server: {@link HandshakeFrame#TYPE_PUBLIC_KEY} with the key epoch and the raw public key
+ *     ({@link KyberRawCodec});</li>
+ *     <li>client: {@link HandshakeFrame#TYPE_ENCAPSULATION} with the same epoch and the raw encapsulation;</li>
+ *     <li>server: {@link HandshakeFrame#TYPE_STATUS}, {@link #STATUS_OK} once the shared secret is
+ *     computed, and an empty {@link HandshakeFrame#TYPE_TICKET}.</li>
+ * </ol>
+ * It does not issue resumption tickets and refuses {@link HandshakeFrame#TYPE_RESUME} requests, so
+ * clients presenting a ticket fall back to the full handshake. A connection whose first message is a
+ * {@link HandshakeFrame#TYPE_STREAM_ENCAPSULATION} is multiplexed instead: the client pipelines any
+ * number of stream-tagged encapsulations, and each is answered with a
+ * {@link HandshakeFrame#TYPE_STREAM_STATUS} as soon as its decapsulation finishes, in any order
+ * (see {@link MultiplexedClient}). Keys come from a {@link ServerKeyRing}: new connections get the
+ * current epoch, multiplexed connections are sent the new public key after a rotation, and
+ * encapsulations for a retired epoch are decapsulated until its grace window closes.
+ */
+public class NioServer implements AutoCloseable {
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+        Security.addProvider(new BouncyCastlePQCProvider());
+    }
+
+    public static final byte STATUS_OK = HandshakeFrame.STATUS_OK;
+    public static final byte STATUS_REJECTED = HandshakeFrame.STATUS_REJECTED;
+
+    private static final int DEFAULT_PORT = 12345;
+    private static final long DEFAULT_KEY_ROTATION_MILLIS = 60 * 60 * 1000L;
+    private static final long DEFAULT_KEY_GRACE_MILLIS = 5 * 60 * 1000L;
+
+    private final ServerKeyRing keys;
+    private final KyberParameterSet parameterSet;
+    private final ByteBuffer okFrame;
+    private final ByteBuffer rejectedFrame;
+    private final ByteBuffer unknownEpochFrame;
+    private final KyberBatchDecapsulator decapsulator;
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final AtomicLong completedHandshakes = new AtomicLong();
+    private final AtomicLong failedHandshakes = new AtomicLong();
+    private int nextLoop;
+
+    public NioServer(int port, KyberParameterSpec kyberParameterSpec, int ioThreads, int workerThreads) throws Exception {
+        this(port, new ServerKeyRing(kyberParameterSpec, 0, 0), ioThreads, workerThreads);
+    }
+
+    /**
+     * Serves handshakes with the current epoch of {@code keys}; the server owns the ring and closes it.
+     */
+    public NioServer(int port, ServerKeyRing keys, int ioThreads, int workerThreads) throws Exception {
+        this.keys = keys;
+        this.parameterSet = keys.getParameterSet();
+        this.okFrame = statusFrame(parameterSet, STATUS_OK, true);
+        this.rejectedFrame = statusFrame(parameterSet, STATUS_REJECTED, false);
+        this.unknownEpochFrame = statusFrame(parameterSet, HandshakeFrame.STATUS_UNKNOWN_EPOCH, false);
+
+        this.decapsulator = new KyberBatchDecapsulator(workerThreads,
+                KyberBatchDecapsulator.DEFAULT_MAX_BATCH_SIZE, KyberBatchDecapsulator.DEFAULT_QUEUE_CAPACITY);
+
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+
+        this.loops = new EventLoop[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        loops[0].execute(() -> {
+            try {
+                serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+            } catch (ClosedChannelException e) {
+                e.printStackTrace();
+            }
+        });
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int ioThreads = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int workerThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        KyberParameterSpec kyberParameterSpec = args.length > 3 ? KyberParameterSpec.fromName(args[3]) : KyberParameterSpec.kyber512;
+        long rotationMillis = args.length > 4 ? Long.parseLong(args[4]) * 1000 : DEFAULT_KEY_ROTATION_MILLIS;
+
+        // measure the crypto providers now rather than inside the first handshakes
+        ProviderRouter.shared().calibrate();
+        NioServer server = new NioServer(port, new ServerKeyRing(kyberParameterSpec, rotationMillis, DEFAULT_KEY_GRACE_MILLIS),
+                ioThreads, workerThreads);
+        System.out.println("NIO server is listening on port " + server.getPort() + " with " + ioThreads
+                + " I/O threads and " + workerThreads + " decapsulation workers");
+        while (true) {
+            Thread.sleep(10000);
+            System.out.println("Handshakes completed: " + server.getCompletedHandshakes()
+                    + ", failed: " + server.getFailedHandshakes()
+                    + ", decapsulation queue: " + server.decapsulator.getQueueDepth()
+                    + ", key epoch: " + server.keys.current().getId());
+        }
+    }
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    public KyberParameterSet getParameterSet() {
+        return parameterSet;
+    }
+
+    public ServerKeyRing getKeys() {
+        return keys;
+    }
+
+    public long getCompletedHandshakes() {
+        return completedHandshakes.get();
+    }
+
+    public long getFailedHandshakes() {
+        return failedHandshakes.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverChannel.close();
+        for (EventLoop loop : loops) {
+            loop.close();
+        }
+        decapsulator.close();
+        keys.close();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            EventLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            SocketChannel accepted = channel;
+            loop.execute(() -> loop.register(accepted));
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        volatile boolean closed;
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "nio-server-io-" + index);
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void register(SocketChannel channel) {
+            try {
+                Connection connection = new Connection(this, channel);
+                connection.key = channel.register(selector, SelectionKey.OP_WRITE, connection);
+                connection.onWritable();
+            } catch (IOException e) {
+                closeQuietly(channel);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!closed) {
+                try {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                connection.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable();
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            connection.fail();
+                        }
+                    }
+                } catch (ClosedSelectorException e) {
+                    return;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        void close() throws IOException {
+            closed = true;
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            selector.close();
+        }
+    }
+
+    private final class Connection {
+        final EventLoop loop;
+        final SocketChannel channel;
+        final ByteBuffer header = ByteBuffer.allocate(HandshakeFrame.HEADER_SIZE);
+        final HandshakeFrame frame = new HandshakeFrame();
+        final Deque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+        SelectionKey key;
+        ByteBuffer payload;
+        byte payloadType;
+        boolean multiplexed;
+        boolean reading = true;
+        boolean finished;
+        int inFlight;
+        int announcedEpoch;
+
+        Connection(EventLoop loop, SocketChannel channel) {
+            this.loop = loop;
+            this.channel = channel;
+            ServerKeyRing.Epoch epoch = keys.current();
+            announcedEpoch = epoch.getId();
+            pendingWrites.add(epoch.getPublicKeyFrame());
+        }
+
+        void onReadable() throws IOException {
+            while (reading) {
+                if (payload == null) {
+                    if (channel.read(header) < 0) {
+                        onEndOfStream();
+                        return;
+                    }
+                    if (header.hasRemaining()) {
+                        return;
+                    }
+                    header.flip();
+                    startPayload(frame.readHeader(header));
+                    header.clear();
+                }
+                if (payload.hasRemaining() && channel.read(payload) < 0) {
+                    onEndOfStream();
+                    return;
+                }
+                if (payload.hasRemaining()) {
+                    return;
+                }
+                ByteBuffer complete = payload;
+                payload = null;
+                complete.flip();
+                onFrame(complete);
+            }
+        }
+
+        void startPayload(HandshakeFrame frame) throws ProtocolException {
+            if (frame.getParameterSet() != parameterSet) {
+                throw new ProtocolException("Expected " + parameterSet + ", got " + frame.getParameterSet());
+            }
+            if (frame.getType() == HandshakeFrame.TYPE_STREAM_ENCAPSULATION) {
+                frame.expect(HandshakeFrame.TYPE_STREAM_ENCAPSULATION,
+                        HandshakeFrame.STREAM_ID_LENGTH + HandshakeFrame.EPOCH_LENGTH + parameterSet.getEncapsulationSize());
+                multiplexed = true;
+            } else if (multiplexed) {
+                throw new ProtocolException("Only stream frames are allowed on a multiplexed connection");
+            } else if (frame.getType() == HandshakeFrame.TYPE_RESUME) {
+                // this server issues no tickets: drain the resumption request and refuse it
+                frame.expectAtMost(HandshakeFrame.TYPE_RESUME, SessionTicketManager.TICKET_LENGTH + HandshakeFrame.RESUMPTION_NONCE_LENGTH);
+            } else {
+                frame.expect(HandshakeFrame.TYPE_ENCAPSULATION, HandshakeFrame.EPOCH_LENGTH + parameterSet.getEncapsulationSize());
+            }
+            payloadType = frame.getType();
+            payload = ByteBuffer.allocate(frame.getLength());
+        }
+
+        void onFrame(ByteBuffer complete) throws IOException {
+            switch (payloadType) {
+                case HandshakeFrame.TYPE_RESUME:
+                    write(rejectedFrame.duplicate());
+                    break;
+                case HandshakeFrame.TYPE_ENCAPSULATION: {
+                    reading = false;
+                    ServerKeyRing.Epoch epoch = keys.forEpoch(complete.getInt());
+                    if (epoch == null) {
+                        finished = true;
+                        failedHandshakes.incrementAndGet();
+                        write(unknownEpochFrame.duplicate());
+                        break;
+                    }
+                    inFlight++;
+                    updateInterest();
+                    decapsulator.offer(epoch.getPreparedPrivateKey(), remaining(complete)).whenComplete((secret, error) ->
+                            loop.execute(() -> onDecapsulated(secret, error)));
+                    break;
+                }
+                default: {
+                    // stream frames are decapsulated concurrently and answered in completion order
+                    announceCurrentEpoch();
+                    int streamId = complete.getInt();
+                    ServerKeyRing.Epoch epoch = keys.forEpoch(complete.getInt());
+                    if (epoch == null) {
+                        failedHandshakes.incrementAndGet();
+                        write(streamStatus(streamId, HandshakeFrame.STATUS_UNKNOWN_EPOCH));
+                        break;
+                    }
+                    inFlight++;
+                    decapsulator.offer(epoch.getPreparedPrivateKey(), remaining(complete)).whenComplete((secret, error) ->
+                            loop.execute(() -> onStreamDecapsulated(streamId, error)));
+                    break;
+                }
+            }
+        }
+
+        void onEndOfStream() {
+            if (multiplexed && payload == null && header.position() == 0) {
+                // the client is done sending; answer what is still in flight, then close
+                reading = false;
+                finished = true;
+                if (!closeIfIdle()) {
+                    updateInterest();
+                }
+            } else {
+                fail();
+            }
+        }
+
+        void onDecapsulated(SecretKeyWithEncapsulation secret, Throwable error) {
+            if (!key.isValid()) {
+                return;
+            }
+            inFlight--;
+            finished = true;
+            countHandshake(error);
+            writeOrFail((error == null ? okFrame : rejectedFrame).duplicate());
+        }
+
+        void onStreamDecapsulated(int streamId, Throwable error) {
+            if (!key.isValid()) {
+                return;
+            }
+            inFlight--;
+            countHandshake(error);
+            writeOrFail(streamStatus(streamId, error == null ? STATUS_OK : STATUS_REJECTED));
+        }
+
+        /**
+         * Sends the current public key again if the key ring has moved to a new epoch since this
+         * multiplexed connection last heard of one.
+         */
+        void announceCurrentEpoch() throws IOException {
+            ServerKeyRing.Epoch epoch = keys.current();
+            if (epoch.getId() != announcedEpoch) {
+                announcedEpoch = epoch.getId();
+                write(epoch.getPublicKeyFrame());
+            }
+        }
+
+        ByteBuffer streamStatus(int streamId, byte status) {
+            ByteBuffer frame = ByteBuffer.allocate(HandshakeFrame.HEADER_SIZE + HandshakeFrame.STREAM_ID_LENGTH + 1);
+            HandshakeFrame.writeStreamStatus(frame, parameterSet, streamId, status);
+            frame.flip();
+            return frame;
+        }
+
+        void countHandshake(Throwable error) {
+            if (error == null) {
+                completedHandshakes.incrementAndGet();
+            } else {
+                failedHandshakes.incrementAndGet();
+            }
+        }
+
+        void writeOrFail(ByteBuffer buffer) {
+            try {
+                write(buffer);
+            } catch (IOException e) {
+                fail();
+            }
+        }
+
+        void write(ByteBuffer buffer) throws IOException {
+            pendingWrites.add(buffer);
+            if (pendingWrites.size() == 1) {
+                onWritable();
+            }
+        }
+
+        void onWritable() throws IOException {
+            ByteBuffer next;
+            while ((next = pendingWrites.peek()) != null) {
+                channel.write(next);
+                if (next.hasRemaining()) {
+                    break;
+                }
+                pendingWrites.poll();
+            }
+            if (!closeIfIdle()) {
+                updateInterest();
+            }
+        }
+
+        void updateInterest() {
+            key.interestOps((reading ? SelectionKey.OP_READ : 0) | (pendingWrites.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+        }
+
+        boolean closeIfIdle() {
+            if (finished && inFlight == 0 && pendingWrites.isEmpty()) {
+                close();
+                return true;
+            }
+            return false;
+        }
+
+        void fail() {
+            failedHandshakes.incrementAndGet();
+            close();
+        }
+
+        void close() {
+            key.cancel();
+            closeQuietly(channel);
+        }
+    }
+
+    private static byte[] remaining(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * A status frame, followed when {@code withTicket} by the empty ticket frame that ends a
+     * successful handshake on a server that issues no tickets.
+     */
+    private static ByteBuffer statusFrame(KyberParameterSet parameterSet, byte status, boolean withTicket) {
+        ByteBuffer frame = ByteBuffer.allocateDirect(2 * HandshakeFrame.HEADER_SIZE + 1);
+        HandshakeFrame.writeStatus(frame, parameterSet, status);
+        if (withTicket) {
+            HandshakeFrame.writeHeader(frame, HandshakeFrame.TYPE_TICKET, parameterSet, 0);
+        }
+        frame.flip();
+        return frame.asReadOnlyBuffer();
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // nothing left to clean up
+        }
+    }
+}
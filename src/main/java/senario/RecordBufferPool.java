@@ -0,0 +1,22 @@
+package senario;
+
+import org.example.kyber.BufferPool;
+
+/**
+ * {@link BufferPool} of buffers large enough for a whole {@link RecordChannel} record.
+ */
+public class RecordBufferPool extends BufferPool {
+
+    private static final RecordBufferPool SHARED = new RecordBufferPool(RecordChannel.MAX_RECORD_SIZE, DEFAULT_CAPACITY);
+
+    public RecordBufferPool(int bufferSize, int capacity) {
+        super(bufferSize, capacity);
+    }
+
+    /**
+     * The pool of {@link RecordChannel#MAX_RECORD_SIZE} buffers shared by all record channels.
+     */
+    public static RecordBufferPool shared() {
+        return SHARED;
+    }
+}
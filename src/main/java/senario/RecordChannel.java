@@ -0,0 +1,301 @@
+package senario;
+
+import org.example.kyber.AeadDirection;
+import org.example.kyber.KyberParameterSet;
+
+import javax.crypto.Cipher;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Encrypted record layer over the connection of a finished handshake ({@link Client#connect},
+ * {@link Server#accept}). Application data travels in {@link HandshakeFrame#TYPE_RECORD} frames of
+ * at most {@link #MAX_PLAINTEXT} plaintext bytes, each sealed with AES-256-GCM and the frame header
+ * as additional data:
+ * <pre>
+ *     frame header (7) | AES-GCM(plaintext) | tag (16)
+ * </pre>
+ * Each direction has its own key and IV, derived from the session key with HKDF, and a record's
+ * nonce is that IV XOR the record's 64-bit sequence number, as in TLS 1.3: nonces never repeat, and
+ * a dropped, replayed or reordered record fails to open. A channel keeps one cipher per direction
+ * and three buffers from a {@link RecordBufferPool} for its whole life, and reads and writes the
+ * streams straight from their arrays, so records are sealed and opened without allocating buffers.
+ * <p>
+ * One thread may write while another reads; a channel is unusable after any exception. Any thread
+ * may {@link #close()} the channel to unblock a reader or writer; each side's buffers go back to the
+ * pool only once no thread is using them, and the plaintext buffer is zeroed first.
+ */
+public class RecordChannel implements AutoCloseable {
+
+    public static final int MAX_PLAINTEXT = 16384;
+    public static final int TAG_LENGTH = AeadDirection.TAG_LENGTH;
+    public static final int MAX_RECORD_SIZE = HandshakeFrame.HEADER_SIZE + MAX_PLAINTEXT + TAG_LENGTH;
+
+    private static final byte[] CLIENT_WRITE_INFO = "kyber record client write v1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SERVER_WRITE_INFO = "kyber record server write v1".getBytes(StandardCharsets.US_ASCII);
+
+    private final KyberParameterSet parameterSet;
+    private final InputStream in;
+    private final OutputStream out;
+    private final RecordBufferPool pool;
+    private final Direction sending;
+    private final Direction receiving;
+    private final HandshakeFrame frame = new HandshakeFrame();
+    private final ByteBuffer outgoing;
+    private final ByteBuffer incoming;
+    private final ByteBuffer plaintext;
+    private final Side writer;
+    private final Side reader;
+    private volatile boolean closed;
+
+    private RecordChannel(InputStream in, OutputStream out, KyberParameterSet parameterSet, byte[] sessionKey,
+                          byte[] sendingInfo, byte[] receivingInfo, RecordBufferPool pool) throws GeneralSecurityException {
+        if (pool.getBufferSize() < MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Pool buffers must hold " + MAX_RECORD_SIZE + " bytes");
+        }
+        this.parameterSet = parameterSet;
+        this.in = in;
+        this.out = out;
+        this.pool = pool;
+        this.sending = new Direction(sessionKey, sendingInfo);
+        this.receiving = new Direction(sessionKey, receivingInfo);
+        this.outgoing = pool.acquire();
+        this.incoming = pool.acquire();
+        this.plaintext = pool.acquire();
+        plaintext.limit(0);
+        this.writer = new Side(outgoing);
+        this.reader = new Side(incoming, plaintext);
+    }
+
+    /**
+     * The client end of a connection whose handshake agreed on {@code sessionKey}. {@code in} and
+     * {@code out} must be the streams the handshake ran on, so that nothing buffered is lost.
+     */
+    public static RecordChannel client(InputStream in, OutputStream out, KyberParameterSet parameterSet,
+                                       byte[] sessionKey) throws GeneralSecurityException {
+        return new RecordChannel(in, out, parameterSet, sessionKey, CLIENT_WRITE_INFO, SERVER_WRITE_INFO, RecordBufferPool.shared());
+    }
+
+    /**
+     * The server end; see {@link #client}.
+     */
+    public static RecordChannel server(InputStream in, OutputStream out, KyberParameterSet parameterSet,
+                                       byte[] sessionKey) throws GeneralSecurityException {
+        return new RecordChannel(in, out, parameterSet, sessionKey, SERVER_WRITE_INFO, CLIENT_WRITE_INFO, RecordBufferPool.shared());
+    }
+
+    /**
+     * Seals everything remaining in {@code src} into as many records as needed and sends them.
+     */
+    public void write(ByteBuffer src) throws IOException, GeneralSecurityException {
+        writer.enter();
+        try {
+            writeRecords(src);
+        } finally {
+            writer.exit();
+        }
+    }
+
+    private void writeRecords(ByteBuffer src) throws IOException, GeneralSecurityException {
+        int limit = src.limit();
+        while (src.hasRemaining()) {
+            int length = Math.min(src.remaining(), MAX_PLAINTEXT);
+            outgoing.clear();
+            HandshakeFrame.writeHeader(outgoing, HandshakeFrame.TYPE_RECORD, parameterSet, length + TAG_LENGTH);
+            outgoing.flip();
+            Cipher cipher = sending.next(Cipher.ENCRYPT_MODE);
+            cipher.updateAAD(outgoing);
+            outgoing.limit(outgoing.capacity());
+            src.limit(src.position() + length);
+            try {
+                cipher.doFinal(src, outgoing);
+            } finally {
+                src.limit(limit);
+            }
+            out.write(outgoing.array(), outgoing.arrayOffset(), outgoing.position());
+        }
+        out.flush();
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException, GeneralSecurityException {
+        write(ByteBuffer.wrap(b, off, len));
+    }
+
+    /**
+     * Copies up to {@code dst.remaining()} bytes of application data into {@code dst}, reading and
+     * opening the next record if none is left over from the last one. Returns the number of bytes
+     * copied, or -1 if the peer closed the connection between records.
+     */
+    public int read(ByteBuffer dst) throws IOException, GeneralSecurityException {
+        reader.enter();
+        try {
+            return readPlaintext(dst);
+        } finally {
+            reader.exit();
+        }
+    }
+
+    private int readPlaintext(ByteBuffer dst) throws IOException, GeneralSecurityException {
+        while (!plaintext.hasRemaining()) {
+            if (!readRecord()) {
+                return -1;
+            }
+        }
+        int length = Math.min(dst.remaining(), plaintext.remaining());
+        int limit = plaintext.limit();
+        plaintext.limit(plaintext.position() + length);
+        dst.put(plaintext);
+        plaintext.limit(limit);
+        return length;
+    }
+
+    /**
+     * Reads until {@code dst} is full.
+     */
+    public void readFully(ByteBuffer dst) throws IOException, GeneralSecurityException {
+        while (dst.hasRemaining()) {
+            if (read(dst) < 0) {
+                throw new EOFException("Connection closed with " + dst.remaining() + " bytes still expected");
+            }
+        }
+    }
+
+    public long getRecordsSent() {
+        return sending.sequence;
+    }
+
+    public long getRecordsReceived() {
+        return receiving.sequence;
+    }
+
+    /**
+     * Closes the connection, which fails a read or write blocked on it, and hands the buffers back
+     * to the pool: right away for an idle side, otherwise when its thread leaves.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            out.close();
+            in.close();
+        } finally {
+            writer.close();
+            reader.close();
+        }
+    }
+
+    private boolean readRecord() throws IOException, GeneralSecurityException {
+        incoming.clear().limit(HandshakeFrame.HEADER_SIZE);
+        if (!fill(incoming, true)) {
+            return false;
+        }
+        incoming.flip();
+        frame.readHeader(incoming).expectAtMost(HandshakeFrame.TYPE_RECORD, MAX_PLAINTEXT + TAG_LENGTH);
+        if (frame.getLength() < TAG_LENGTH) {
+            throw new ProtocolException("Record of " + frame.getLength() + " bytes is shorter than its tag");
+        }
+        int recordLength = HandshakeFrame.HEADER_SIZE + frame.getLength();
+        incoming.limit(recordLength);
+        fill(incoming, false);
+
+        incoming.position(0).limit(HandshakeFrame.HEADER_SIZE);
+        Cipher cipher = receiving.next(Cipher.DECRYPT_MODE);
+        cipher.updateAAD(incoming);
+        incoming.limit(recordLength);
+        plaintext.clear();
+        cipher.doFinal(incoming, plaintext);
+        plaintext.flip();
+        return true;
+    }
+
+    private boolean fill(ByteBuffer buffer, boolean atRecordBoundary) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (read < 0) {
+                if (atRecordBoundary && buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Connection closed inside a record");
+            }
+            buffer.position(buffer.position() + read);
+        }
+        return true;
+    }
+
+    /**
+     * The buffers of the reading or the writing path, and the number of threads inside it. Whoever
+     * comes last, {@link #close()} or a leaving thread, returns them to the pool.
+     */
+    private final class Side {
+        private final ByteBuffer[] buffers;
+        private int users;
+        private boolean released;
+
+        Side(ByteBuffer... buffers) {
+            this.buffers = buffers;
+        }
+
+        synchronized void enter() throws IOException {
+            if (closed) {
+                throw new IOException("Record channel closed");
+            }
+            users++;
+        }
+
+        synchronized void exit() {
+            if (--users == 0 && closed) {
+                release();
+            }
+        }
+
+        synchronized void close() {
+            if (users == 0) {
+                release();
+            }
+        }
+
+        private void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            for (ByteBuffer buffer : buffers) {
+                if (buffer == plaintext) {
+                    Arrays.fill(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.capacity(), (byte) 0);
+                }
+                pool.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * One direction's key, IV and cipher, and the number of the next record.
+     */
+    private static final class Direction {
+        final AeadDirection aead;
+        long sequence;
+
+        Direction(byte[] sessionKey, byte[] info) throws GeneralSecurityException {
+            this.aead = new AeadDirection(sessionKey, info);
+        }
+
+        Cipher next(int mode) throws GeneralSecurityException {
+            if (sequence == -1L) {
+                throw new IllegalStateException("Record sequence numbers exhausted; run a new handshake");
+            }
+            return aead.init(mode, sequence++);
+        }
+    }
+}
@@ -5,16 +5,22 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
 import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
 import org.example.kyber.KyberExample;
+import org.example.kyber.KyberParameterSet;
+import org.example.kyber.KyberRandom;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.net.ProtocolException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Security;
+import java.util.function.LongConsumer;
 
 public class Server {
     static {
@@ -23,38 +29,201 @@ public class Server {
     }
 
     private static final int PORT = 12345;
+    private static final long KEY_ROTATION_MILLIS = 60 * 60 * 1000L;
+    private static final long KEY_GRACE_MILLIS = 5 * 60 * 1000L;
+    private static final LongConsumer UNTIMED = nanos -> {
+    };
 
     public static void main(String[] args) throws Exception {
         KyberParameterSpec kyberParameterSpec = KyberParameterSpec.kyber512;
-        KeyPair keyPair = KyberExample.generateKeyPair(kyberParameterSpec);
-        PublicKey serverPublicKey = keyPair.getPublic();
-        PrivateKey serverPrivateKey = keyPair.getPrivate();
 
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
+        try (ServerKeyRing keys = new ServerKeyRing(kyberParameterSpec, KEY_ROTATION_MILLIS, KEY_GRACE_MILLIS);
+             ServerSocket serverSocket = new ServerSocket(PORT)) {
             System.out.println("Server is listening on port " + PORT);
 
             try (Socket socket = serverSocket.accept()) {
                 System.out.println("Client connected");
 
-// Sending public key to client
-                try (ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-                     ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
-                    byte[] serverPublicKeyBytes = serverPublicKey.getEncoded(); // Encode public key
-                    System.out.println("Server public key bytes: " +(serverPublicKeyBytes)); // Debugging
-                    out.writeObject(serverPublicKeyBytes);
-                    out.flush();
-
-                    // Receive encrypted shared secret from client
-                    byte[] clientEncapsulatedSecret = (byte[]) in.readObject();
-
-                    // Decrypt and compute shared secret
-                    SecretKeyWithEncapsulation sharedSecret = KyberExample.generateSecretKeyReceiver(serverPrivateKey, clientEncapsulatedSecret);
+                try {
+                    handshake(socket, keys);
                     System.out.println("Shared secret computed");
-                } catch (IOException | ClassNotFoundException e) {
+                } catch (IOException e) {
                     e.printStackTrace();
                 }
+            }
+        }
+    }
+
+    /**
+     * Runs the server side of one full handshake on {@code socket} and returns the shared secret.
+     * No resumption ticket is issued.
+     */
+    public static SecretKeyWithEncapsulation handshake(Socket socket, KyberParameterSet parameterSet,
+                                                       PublicKey serverPublicKey, PrivateKey serverPrivateKey) throws Exception {
+        return handshake(socket, ServerKeyRing.fixed(parameterSet, new KeyPair(serverPublicKey, serverPrivateKey)));
+    }
+
+    /**
+     * Runs the server side of one full handshake on {@code socket} with the current epoch of
+     * {@code keys} and returns the shared secret. No resumption ticket is issued.
+     */
+    public static SecretKeyWithEncapsulation handshake(Socket socket, ServerKeyRing keys) throws Exception {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        HandshakeFrame frame = new HandshakeFrame();
+
+        sendPublicKey(out, keys.current());
+        frame.readHeader(in);
+        if (frame.getType() == HandshakeFrame.TYPE_RESUME) {
+            rejectResumption(in, out, frame, keys.getParameterSet());
+        }
+        SecretKeyWithEncapsulation sharedSecret = fullHandshake(in, out, frame, keys, UNTIMED);
+        sendTicket(out, keys.getParameterSet(), null);
+        return sharedSecret;
+    }
+
+    /**
+     * Runs the server side of one handshake on {@code socket}, resuming the client's session when it
+     * presents a ticket {@code tickets} accepts, and returns the session key. Every successful
+     * handshake ends with a fresh ticket.
+     */
+    public static byte[] handshake(Socket socket, KyberParameterSet parameterSet, PublicKey serverPublicKey,
+                                   PrivateKey serverPrivateKey, SessionTicketManager tickets) throws Exception {
+        return handshake(socket, ServerKeyRing.fixed(parameterSet, new KeyPair(serverPublicKey, serverPrivateKey)), tickets);
+    }
+
+    /**
+     * Same as {@link #handshake(Socket, KyberParameterSet, PublicKey, PrivateKey, SessionTicketManager)},
+     * with the current epoch of {@code keys}.
+     */
+    public static byte[] handshake(Socket socket, ServerKeyRing keys, SessionTicketManager tickets) throws Exception {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        return handshake(in, out, keys, tickets, UNTIMED);
+    }
+
+    /**
+     * Same as {@link #handshake(Socket, ServerKeyRing, SessionTicketManager)}, over any {@link Transport}.
+     */
+    public static byte[] handshake(Transport.Connection connection, ServerKeyRing keys, SessionTicketManager tickets) throws Exception {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        return handshake(in, out, keys, tickets, UNTIMED);
+    }
+
+    /**
+     * Same as {@link #handshake(Socket, ServerKeyRing, SessionTicketManager)}, reporting the CPU
+     * time of the decapsulation, if there is one, to {@code decapsulationTimes}.
+     */
+    static byte[] handshake(Socket socket, ServerKeyRing keys, SessionTicketManager tickets,
+                            LongConsumer decapsulationTimes) throws Exception {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        return handshake(in, out, keys, tickets, decapsulationTimes);
+    }
+
+    /**
+     * Runs {@link #handshake(Socket, ServerKeyRing, SessionTicketManager)} and returns an encrypted
+     * record channel keyed with the session key, on the same connection.
+     */
+    public static RecordChannel accept(Socket socket, ServerKeyRing keys, SessionTicketManager tickets) throws Exception {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        byte[] sessionKey = handshake(in, out, keys, tickets, UNTIMED);
+        return RecordChannel.server(in, out, keys.getParameterSet(), sessionKey);
+    }
 
+    private static byte[] handshake(DataInputStream in, DataOutputStream out, ServerKeyRing keys,
+                                    SessionTicketManager tickets, LongConsumer decapsulationTimes) throws Exception {
+        HandshakeFrame frame = new HandshakeFrame();
+        KyberParameterSet parameterSet = keys.getParameterSet();
+
+        sendPublicKey(out, keys.current());
+        frame.readHeader(in);
+        if (frame.getType() == HandshakeFrame.TYPE_RESUME) {
+            frame.expect(HandshakeFrame.TYPE_RESUME, SessionTicketManager.TICKET_LENGTH + HandshakeFrame.RESUMPTION_NONCE_LENGTH);
+            byte[] ticket = new byte[SessionTicketManager.TICKET_LENGTH];
+            byte[] clientNonce = new byte[HandshakeFrame.RESUMPTION_NONCE_LENGTH];
+            in.readFully(ticket);
+            in.readFully(clientNonce);
+            byte[] resumptionSecret = tickets.redeem(ticket);
+            if (resumptionSecret != null) {
+                // Resumed: only symmetric work, no KEM
+                byte[] serverNonce = new byte[HandshakeFrame.RESUMPTION_NONCE_LENGTH];
+                KyberRandom.current().nextBytes(serverNonce);
+                HandshakeFrame.writeHeader(out, HandshakeFrame.TYPE_RESUMED, parameterSet, serverNonce.length);
+                out.write(serverNonce);
+                byte[] sessionKey = SessionTicketManager.resumedSessionKey(resumptionSecret, clientNonce, serverNonce);
+                sendTicket(out, parameterSet, tickets.issue(SessionTicketManager.resumptionSecret(sessionKey)));
+                return sessionKey;
             }
+            HandshakeFrame.writeStatus(out, parameterSet, HandshakeFrame.STATUS_REJECTED);
+            out.flush();
+            frame.readHeader(in);
+        }
+        byte[] sessionKey = fullHandshake(in, out, frame, keys, decapsulationTimes).getEncoded();
+        sendTicket(out, parameterSet, tickets.issue(SessionTicketManager.resumptionSecret(sessionKey)));
+        return sessionKey;
+    }
+
+    private static void sendPublicKey(DataOutputStream out, ServerKeyRing.Epoch epoch) throws IOException {
+// Sending public key to client: epoch id followed by the raw key
+        epoch.writePublicKeyFrame(out);
+        out.flush();
+    }
+
+    private static void rejectResumption(DataInputStream in, DataOutputStream out, HandshakeFrame frame,
+                                         KyberParameterSet parameterSet) throws IOException {
+        frame.expectAtMost(HandshakeFrame.TYPE_RESUME, SessionTicketManager.TICKET_LENGTH + HandshakeFrame.RESUMPTION_NONCE_LENGTH);
+        in.skipBytes(frame.getLength());
+        HandshakeFrame.writeStatus(out, parameterSet, HandshakeFrame.STATUS_REJECTED);
+        out.flush();
+        frame.readHeader(in);
+    }
+
+    private static SecretKeyWithEncapsulation fullHandshake(DataInputStream in, DataOutputStream out, HandshakeFrame frame,
+                                                            ServerKeyRing keys, LongConsumer decapsulationTimes) throws Exception {
+        KyberParameterSet parameterSet = keys.getParameterSet();
+        // Receive encrypted shared secret from client, made against the key of the given epoch
+        frame.expect(HandshakeFrame.TYPE_ENCAPSULATION, HandshakeFrame.EPOCH_LENGTH + parameterSet.getEncapsulationSize());
+        int epochId = in.readInt();
+        byte[] clientEncapsulatedSecret = new byte[parameterSet.getEncapsulationSize()];
+        in.readFully(clientEncapsulatedSecret);
+        ServerKeyRing.Epoch epoch = keys.forEpoch(epochId);
+        if (epoch == null) {
+            HandshakeFrame.writeStatus(out, parameterSet, HandshakeFrame.STATUS_UNKNOWN_EPOCH);
+            out.flush();
+            throw new ProtocolException("Key epoch " + epochId + " is unknown or past its grace window");
+        }
+
+        // Decrypt and compute shared secret
+        long start = HandshakeAdmission.cpuTimeNanos();
+        SecretKeyWithEncapsulation sharedSecret = KyberExample.generateSecretKeyReceiver(epoch.getKeyPair().getPrivate(), clientEncapsulatedSecret);
+        decapsulationTimes.accept(HandshakeAdmission.cpuTimeNanos() - start);
+
+        // Tell the client we are done
+        HandshakeFrame.writeStatus(out, parameterSet, HandshakeFrame.STATUS_OK);
+        return sharedSecret;
+    }
+
+    /**
+     * Sheds a connection before the handshake starts: sends a {@link HandshakeFrame#TYPE_RETRY}
+     * frame in place of the public key. The caller closes the socket.
+     */
+    public static void refuse(Socket socket, KyberParameterSet parameterSet, long retryAfterMillis) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(),
+                HandshakeFrame.HEADER_SIZE + HandshakeFrame.RETRY_AFTER_LENGTH));
+        HandshakeFrame.writeHeader(out, HandshakeFrame.TYPE_RETRY, parameterSet, HandshakeFrame.RETRY_AFTER_LENGTH);
+        out.writeInt((int) Math.min(Integer.MAX_VALUE, retryAfterMillis));
+        out.flush();
+    }
+
+    private static void sendTicket(DataOutputStream out, KyberParameterSet parameterSet, byte[] ticket) throws IOException {
+        int length = ticket == null ? 0 : ticket.length;
+        HandshakeFrame.writeHeader(out, HandshakeFrame.TYPE_TICKET, parameterSet, length);
+        if (ticket != null) {
+            out.write(ticket);
         }
+        out.flush();
     }
 }
@@ -0,0 +1,26 @@
+package senario;
+
+import java.net.ProtocolException;
+
+/**
+ * Thrown by the client when the server shed the connection under load
+ * ({@link HandshakeFrame#TYPE_RETRY}) instead of starting the handshake.
+ */
+public class ServerBusyException extends ProtocolException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMillis;
+
+    public ServerBusyException(long retryAfterMillis) {
+        super("Server is busy, retry after " + retryAfterMillis + " ms");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * How long the server expects its current backlog to take to drain.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
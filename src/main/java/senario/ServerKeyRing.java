@@ -0,0 +1,238 @@
+package senario;
+
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.example.kyber.KyberExample;
+import org.example.kyber.KyberParameterSet;
+import org.example.kyber.KyberRawCodec;
+import org.example.kyber.LightweightKyberEngine;
+import org.example.kyber.PreparedKyberPrivateKey;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The server's Kyber key pairs, one per epoch. The next key pair is always generated ahead of
+ * time on a background thread, and {@link #rotate()} (run on a schedule, or by hand) publishes it
+ * by swapping one volatile reference, so handshakes never wait for key generation or for a lock.
+ * A handshake reads {@link #current()} once and finishes on that epoch; encapsulations made
+ * against the previous epochs are still decapsulated for {@code graceMillis} after they were
+ * retired, which covers handshakes in flight during a rotation.
+ */
+public class ServerKeyRing implements AutoCloseable {
+
+    private final KyberParameterSpec kyberParameterSpec;
+    private final long graceMillis;
+    private final ExecutorService generator;
+    private final ScheduledExecutorService scheduler;
+    private volatile Epoch current;
+    private volatile Retired[] retired = new Retired[0];
+    private CompletableFuture<Epoch> next;
+    private int nextId;
+
+    /**
+     * @param rotationIntervalMillis how often a new epoch is published, or 0 to rotate only on {@link #rotate()}
+     * @param graceMillis            how long a retired epoch still decapsulates
+     */
+    public ServerKeyRing(KyberParameterSpec kyberParameterSpec, long rotationIntervalMillis, long graceMillis) throws Exception {
+        this.kyberParameterSpec = kyberParameterSpec;
+        this.graceMillis = graceMillis;
+        this.current = generate(nextId++);
+        this.generator = Executors.newSingleThreadExecutor(daemonThreads("server-key-generator"));
+        prepareNext();
+        if (rotationIntervalMillis > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("server-key-rotation"));
+            scheduler.scheduleAtFixedRate(() -> {
+                try {
+                    rotate();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }, rotationIntervalMillis, rotationIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    private ServerKeyRing(Epoch epoch) {
+        this.kyberParameterSpec = null;
+        this.graceMillis = 0;
+        this.current = epoch;
+        this.generator = null;
+        this.scheduler = null;
+    }
+
+    /**
+     * A ring that holds {@code keyPair} as epoch 0 and never rotates.
+     */
+    public static ServerKeyRing fixed(KyberParameterSet parameterSet, KeyPair keyPair) throws Exception {
+        return new ServerKeyRing(new Epoch(0, parameterSet, keyPair));
+    }
+
+    public Epoch current() {
+        return current;
+    }
+
+    public KyberParameterSet getParameterSet() {
+        return current.parameterSet;
+    }
+
+    /**
+     * Returns the epoch with the given id if it is current or retired less than the grace window
+     * ago, or null.
+     */
+    public Epoch forEpoch(int id) {
+        Epoch epoch = current;
+        if (epoch.id == id) {
+            return epoch;
+        }
+        long now = System.currentTimeMillis();
+        for (Retired candidate : retired) {
+            if (candidate.epoch.id == id) {
+                return now - candidate.retiredAt < graceMillis ? candidate.epoch : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Publishes the pre-generated next epoch and starts generating the one after it. Waits only if
+     * that next key pair is not ready yet; handshakes are never blocked.
+     */
+    public synchronized void rotate() throws Exception {
+        if (generator == null) {
+            throw new IllegalStateException("A fixed key ring does not rotate");
+        }
+        Epoch fresh;
+        try {
+            fresh = next.join();
+        } catch (CompletionException e) {
+            prepareNext();
+            throw (Exception) e.getCause();
+        }
+        long now = System.currentTimeMillis();
+        List<Retired> stillValid = new ArrayList<>();
+        for (Retired candidate : retired) {
+            if (now - candidate.retiredAt < graceMillis) {
+                stillValid.add(candidate);
+            }
+        }
+        stillValid.add(new Retired(current, now));
+        retired = stillValid.toArray(new Retired[0]);
+        current = fresh;
+        prepareNext();
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (generator != null) {
+            generator.shutdownNow();
+        }
+    }
+
+    private void prepareNext() {
+        int id = nextId++;
+        next = CompletableFuture.supplyAsync(() -> {
+            try {
+                return generate(id);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, generator);
+    }
+
+    private Epoch generate(int id) throws Exception {
+        return new Epoch(id, KyberParameterSet.fromSpec(kyberParameterSpec), KyberExample.generateKeyPair(kyberParameterSpec));
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * One published key pair, with its public key frame encoded once for every handshake.
+     */
+    public static final class Epoch {
+        private final int id;
+        private final KyberParameterSet parameterSet;
+        private final KeyPair keyPair;
+        private final PreparedKyberPrivateKey preparedPrivateKey;
+        private final byte[] publicKeyFrameBytes;
+        private final ByteBuffer publicKeyFrame;
+
+        Epoch(int id, KyberParameterSet parameterSet, KeyPair keyPair) throws Exception {
+            this.id = id;
+            this.parameterSet = parameterSet;
+            this.keyPair = keyPair;
+            this.preparedPrivateKey = KyberExample.prepare(keyPair.getPrivate());
+
+            int payloadLength = HandshakeFrame.EPOCH_LENGTH + parameterSet.getPublicKeySize();
+            ByteBuffer frame = ByteBuffer.allocate(HandshakeFrame.HEADER_SIZE + payloadLength);
+            HandshakeFrame.writeHeader(frame, HandshakeFrame.TYPE_PUBLIC_KEY, parameterSet, payloadLength);
+            frame.putInt(id);
+            KyberRawCodec.writePublicKey(LightweightKyberEngine.toParameters(keyPair.getPublic()), frame);
+            this.publicKeyFrameBytes = frame.array();
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(publicKeyFrameBytes.length);
+            direct.put(publicKeyFrameBytes).flip();
+            this.publicKeyFrame = direct.asReadOnlyBuffer();
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public KyberParameterSet getParameterSet() {
+            return parameterSet;
+        }
+
+        public KeyPair getKeyPair() {
+            return keyPair;
+        }
+
+        public PreparedKyberPrivateKey getPreparedPrivateKey() {
+            return preparedPrivateKey;
+        }
+
+        /**
+         * Writes the complete {@link HandshakeFrame#TYPE_PUBLIC_KEY} frame to a stream.
+         */
+        public void writePublicKeyFrame(DataOutput out) throws IOException {
+            out.write(publicKeyFrameBytes);
+        }
+
+        /**
+         * The complete {@link HandshakeFrame#TYPE_PUBLIC_KEY} frame, as a fresh read-only view.
+         */
+        public ByteBuffer getPublicKeyFrame() {
+            return publicKeyFrame.duplicate();
+        }
+    }
+
+    private static final class Retired {
+        final Epoch epoch;
+        final long retiredAt;
+
+        Retired(Epoch epoch, long retiredAt) {
+            this.epoch = epoch;
+            this.retiredAt = retiredAt;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package senario;
+
+/**
+ * Client side of a session resumption ticket: the opaque ticket the server issued, and the
+ * resumption secret derived from the session it was issued on. Tickets are single use; every
+ * successful handshake replaces the one the client holds.
+ */
+public final class SessionTicket {
+    private final byte[] ticket;
+    private final byte[] resumptionSecret;
+
+    SessionTicket(byte[] ticket, byte[] resumptionSecret) {
+        this.ticket = ticket;
+        this.resumptionSecret = resumptionSecret;
+    }
+
+    public byte[] getTicket() {
+        return ticket;
+    }
+
+    byte[] getResumptionSecret() {
+        return resumptionSecret;
+    }
+}
@@ -0,0 +1,237 @@
+package senario;
+
+import org.example.kyber.AeadDirection;
+import org.example.kyber.KyberRandom;
+import org.example.kyber.ProviderRouter;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issues and redeems session resumption tickets for {@link Server}. A ticket is the resumption
+ * secret of a finished handshake sealed with AES-256-GCM under a server-only ticket key, so the
+ * server keeps no per-session state:
+ * <pre>
+ *     key id (4) | nonce (12) | AES-GCM(issued at (8) | resumption secret (32)) | tag (16)
+ * </pre>
+ * Ticket keys rotate on a schedule; the last {@code retainedKeys} keys still open tickets, older
+ * ones do not. Every ticket can be redeemed once: redeemed nonces stay in a bounded replay cache
+ * until the ticket would have expired anyway, and when the cache is full resumption is refused
+ * rather than forgetting a live entry, so the client falls back to a full handshake.
+ */
+public class SessionTicketManager implements AutoCloseable {
+
+    public static final int SECRET_LENGTH = 32;
+    public static final int TICKET_LENGTH = 4 + 12 + 8 + SECRET_LENGTH + 16;
+
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final byte[] RESUMPTION_INFO = "kyber handshake resumption secret v1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SESSION_INFO = "kyber handshake resumed session v1".getBytes(StandardCharsets.US_ASCII);
+
+    private final long ticketLifetimeMillis;
+    private final int retainedKeys;
+    private final int replayCacheCapacity;
+    private final Deque<TicketKey> keys = new ArrayDeque<>();
+    private final Map<ByteBuffer, Long> redeemed = new LinkedHashMap<>();
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(SessionTicketManager::newCipher);
+    private final ScheduledExecutorService rotation;
+    private int nextKeyId;
+    private long rejectedReplays;
+    private long redeemedTickets;
+
+    /**
+     * @param ticketLifetimeMillis how long a ticket can be redeemed after it was issued
+     * @param rotationIntervalMillis how often a new ticket key is generated, or 0 to rotate only on {@link #rotate()}
+     * @param retainedKeys           how many ticket keys, the current one included, still open tickets
+     * @param replayCacheCapacity    how many redeemed tickets are remembered at most
+     */
+    public SessionTicketManager(long ticketLifetimeMillis, long rotationIntervalMillis, int retainedKeys, int replayCacheCapacity) {
+        if (retainedKeys < 1) {
+            throw new IllegalArgumentException("At least one ticket key must be retained");
+        }
+        this.ticketLifetimeMillis = ticketLifetimeMillis;
+        this.retainedKeys = retainedKeys;
+        this.replayCacheCapacity = replayCacheCapacity;
+        rotate();
+        if (rotationIntervalMillis > 0) {
+            this.rotation = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "session-ticket-rotation");
+                thread.setDaemon(true);
+                return thread;
+            });
+            rotation.scheduleAtFixedRate(this::rotate, rotationIntervalMillis, rotationIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.rotation = null;
+        }
+    }
+
+    /**
+     * Generates a new current ticket key and drops the oldest one beyond {@code retainedKeys}.
+     */
+    public synchronized void rotate() {
+        byte[] key = new byte[32];
+        KyberRandom.current().nextBytes(key);
+        keys.addFirst(new TicketKey(nextKeyId++, new SecretKeySpec(key, "AES")));
+        while (keys.size() > retainedKeys) {
+            keys.removeLast();
+        }
+    }
+
+    /**
+     * Seals {@code resumptionSecret} into a ticket under the current ticket key.
+     */
+    public byte[] issue(byte[] resumptionSecret) throws GeneralSecurityException {
+        if (resumptionSecret.length != SECRET_LENGTH) {
+            throw new IllegalArgumentException("Resumption secret must be " + SECRET_LENGTH + " bytes");
+        }
+        TicketKey key;
+        synchronized (this) {
+            key = keys.peekFirst();
+        }
+        SecureRandom random = KyberRandom.current();
+        ByteBuffer ticket = ByteBuffer.allocate(TICKET_LENGTH);
+        ticket.putInt(key.id);
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        ticket.put(nonce);
+
+        ByteBuffer plaintext = ByteBuffer.allocate(8 + SECRET_LENGTH);
+        plaintext.putLong(System.currentTimeMillis()).put(resumptionSecret).flip();
+
+        Cipher cipher = ciphers.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key.key, new GCMParameterSpec(TAG_BITS, nonce));
+        cipher.updateAAD(ticket.array(), 0, 4 + NONCE_LENGTH);
+        cipher.doFinal(plaintext, ticket);
+        return ticket.array();
+    }
+
+    /**
+     * Opens a ticket and marks it redeemed. Returns the resumption secret, or null if the ticket is
+     * malformed, forged, sealed under a retired key, expired or already redeemed.
+     */
+    public byte[] redeem(byte[] ticket) throws GeneralSecurityException {
+        if (ticket.length != TICKET_LENGTH) {
+            return null;
+        }
+        ByteBuffer in = ByteBuffer.wrap(ticket);
+        TicketKey key = findKey(in.getInt());
+        if (key == null) {
+            return null;
+        }
+        ByteBuffer plaintext = ByteBuffer.allocate(8 + SECRET_LENGTH);
+        Cipher cipher = ciphers.get();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key.key, new GCMParameterSpec(TAG_BITS, ticket, 4, NONCE_LENGTH));
+            cipher.updateAAD(ticket, 0, 4 + NONCE_LENGTH);
+            cipher.doFinal(ByteBuffer.wrap(ticket, 4 + NONCE_LENGTH, ticket.length - 4 - NONCE_LENGTH), plaintext);
+        } catch (AEADBadTagException e) {
+            return null;
+        }
+        plaintext.flip();
+        long expiresAt = plaintext.getLong() + ticketLifetimeMillis;
+        long now = System.currentTimeMillis();
+        if (now >= expiresAt || !markRedeemed(ByteBuffer.wrap(Arrays.copyOfRange(ticket, 4, 4 + NONCE_LENGTH)), expiresAt, now)) {
+            return null;
+        }
+        byte[] resumptionSecret = new byte[SECRET_LENGTH];
+        plaintext.get(resumptionSecret);
+        return resumptionSecret;
+    }
+
+    public synchronized int getReplayCacheSize() {
+        return redeemed.size();
+    }
+
+    public synchronized long getRedeemedTickets() {
+        return redeemedTickets;
+    }
+
+    public synchronized long getRejectedReplays() {
+        return rejectedReplays;
+    }
+
+    @Override
+    public void close() {
+        if (rotation != null) {
+            rotation.shutdownNow();
+        }
+    }
+
+    /**
+     * Derives the secret a ticket carries from the key of the session that issued it.
+     */
+    static byte[] resumptionSecret(byte[] sessionKey) {
+        return AeadDirection.hkdf(sessionKey, null, RESUMPTION_INFO, SECRET_LENGTH);
+    }
+
+    /**
+     * Derives the key of a resumed session; both nonces make it fresh even though the ticket is not.
+     */
+    static byte[] resumedSessionKey(byte[] resumptionSecret, byte[] clientNonce, byte[] serverNonce) {
+        byte[] salt = new byte[clientNonce.length + serverNonce.length];
+        System.arraycopy(clientNonce, 0, salt, 0, clientNonce.length);
+        System.arraycopy(serverNonce, 0, salt, clientNonce.length, serverNonce.length);
+        return AeadDirection.hkdf(resumptionSecret, salt, SESSION_INFO, SECRET_LENGTH);
+    }
+
+    private synchronized TicketKey findKey(int id) {
+        for (TicketKey key : keys) {
+            if (key.id == id) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    private synchronized boolean markRedeemed(ByteBuffer nonce, long expiresAt, long now) {
+        // entries are in redemption order, which roughly follows expiry; stop at the first live one
+        Iterator<Long> expiries = redeemed.values().iterator();
+        while (expiries.hasNext() && expiries.next() <= now) {
+            expiries.remove();
+        }
+        if (redeemed.containsKey(nonce)) {
+            rejectedReplays++;
+            return false;
+        }
+        if (redeemed.size() >= replayCacheCapacity) {
+            return false;
+        }
+        redeemed.put(nonce, expiresAt);
+        redeemedTickets++;
+        return true;
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return ProviderRouter.shared().cipher("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class TicketKey {
+        final int id;
+        final SecretKeySpec key;
+
+        TicketKey(int id, SecretKeySpec key) {
+            this.id = id;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package senario;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * {@link Transport} over kernel TCP sockets with Nagle's algorithm off, the way {@link Client} and
+ * the servers use them.
+ */
+public class TcpTransport implements Transport {
+
+    private final InetSocketAddress address;
+    private final ServerSocket serverSocket;
+
+    /**
+     * A client-only transport to {@code host:port}; {@link #accept()} is not supported.
+     */
+    public TcpTransport(String host, int port) {
+        this(new InetSocketAddress(host, port), null);
+    }
+
+    private TcpTransport(InetSocketAddress address, ServerSocket serverSocket) {
+        this.address = address;
+        this.serverSocket = serverSocket;
+    }
+
+    /**
+     * Listens on {@code port} (0 for any) and connects to itself through localhost.
+     */
+    public static TcpTransport listen(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(port, 4096);
+        return new TcpTransport(new InetSocketAddress("localhost", serverSocket.getLocalPort()), serverSocket);
+    }
+
+    public int getPort() {
+        return address.getPort();
+    }
+
+    @Override
+    public Connection connect() throws IOException {
+        Socket socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(address);
+        return new SocketConnection(socket);
+    }
+
+    @Override
+    public Connection accept() throws IOException {
+        if (serverSocket == null) {
+            throw new IllegalStateException("Transport is not listening");
+        }
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        return new SocketConnection(socket);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    private static final class SocketConnection implements Connection {
+        private final Socket socket;
+
+        SocketConnection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return socket.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return socket.getOutputStream();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package senario;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.example.kyber.ProviderRouter;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.Security;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-client variant of {@link Server}: the accept loop hands every connection to an executor
+ * that runs the unchanged blocking {@link Server#handshake} code. With
+ * {@link ConnectionExecutors#perConnection()} loaded from the packaged multi-release jar on
+ * Java 21, each connection runs on a virtual thread. Returning clients can resume their session with a ticket
+ * from the server's {@link SessionTicketManager}, and the Kyber key pair rotates hourly through a
+ * {@link ServerKeyRing}. A {@link HandshakeAdmission} bounds the handshakes in flight and queued,
+ * and sheds the rest with a retry-after hint.
+ */
+public class ThreadedServer implements AutoCloseable {
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+        Security.addProvider(new BouncyCastlePQCProvider());
+    }
+
+    private static final int PORT = 12345;
+    private static final long TICKET_LIFETIME_MILLIS = 60 * 60 * 1000L;
+    private static final long TICKET_ROTATION_MILLIS = 15 * 60 * 1000L;
+    private static final int RETAINED_TICKET_KEYS = 4;
+    private static final int REPLAY_CACHE_CAPACITY = 100000;
+    private static final long KEY_ROTATION_MILLIS = 60 * 60 * 1000L;
+    private static final long KEY_GRACE_MILLIS = 5 * 60 * 1000L;
+    private static final int CALIBRATION_ROUNDS = 50;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final ServerKeyRing keys;
+    private final SessionTicketManager tickets;
+    private final HandshakeAdmission<Socket> admission;
+    private final Thread acceptor;
+    private final AtomicLong completedHandshakes = new AtomicLong();
+    private final AtomicLong failedHandshakes = new AtomicLong();
+
+    public ThreadedServer(int port, KyberParameterSpec kyberParameterSpec, ExecutorService executor) throws Exception {
+        this(port, kyberParameterSpec, executor, new SessionTicketManager(TICKET_LIFETIME_MILLIS, TICKET_ROTATION_MILLIS,
+                RETAINED_TICKET_KEYS, REPLAY_CACHE_CAPACITY));
+    }
+
+    public ThreadedServer(int port, KyberParameterSpec kyberParameterSpec, ExecutorService executor,
+                          SessionTicketManager tickets) throws Exception {
+        this(port, new ServerKeyRing(kyberParameterSpec, KEY_ROTATION_MILLIS, KEY_GRACE_MILLIS), executor, tickets);
+    }
+
+    /**
+     * Serves handshakes with the current epoch of {@code keys}; the server owns the ring and closes it.
+     */
+    public ThreadedServer(int port, ServerKeyRing keys, ExecutorService executor, SessionTicketManager tickets) throws Exception {
+        this(port, keys, executor, tickets, HandshakeAdmission.DEFAULT_TARGET_LATENCY_MILLIS, HandshakeAdmission.DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param targetLatencyMillis how long a handshake may take, queueing included, before admission control sheds load
+     * @param queueCapacity       how many connections may wait for a handshake slot
+     */
+    public ThreadedServer(int port, ServerKeyRing keys, ExecutorService executor, SessionTicketManager tickets,
+                          long targetLatencyMillis, int queueCapacity) throws Exception {
+        this(port, keys, executor, tickets, targetLatencyMillis, queueCapacity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxInFlight most handshakes served at once, whatever the CPU budget of the admission control allows
+     */
+    public ThreadedServer(int port, ServerKeyRing keys, ExecutorService executor, SessionTicketManager tickets,
+                          long targetLatencyMillis, int queueCapacity, int maxInFlight) throws Exception {
+        this.admission = new HandshakeAdmission<>(new HandshakeAdmission.Handler<Socket>() {
+            @Override
+            public void admit(Socket socket) {
+                start(socket);
+            }
+
+            @Override
+            public void shed(Socket socket, long retryAfterMillis) {
+                refuse(socket, retryAfterMillis);
+            }
+        }, Runtime.getRuntime().availableProcessors(), targetLatencyMillis, queueCapacity,
+                HandshakeAdmission.measureDecapsulationNanos(keys.current(), CALIBRATION_ROUNDS), maxInFlight);
+        this.tickets = tickets;
+        this.keys = keys;
+        this.executor = executor;
+        this.serverSocket = new ServerSocket(port, 4096);
+        this.acceptor = new Thread(this::acceptLoop, "threaded-server-acceptor");
+        this.acceptor.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        ExecutorService executor = args.length > 0 && args[0].startsWith("platform:")
+                ? ConnectionExecutors.fixedPlatformPool(Integer.parseInt(args[0].substring("platform:".length())))
+                : ConnectionExecutors.perConnection();
+        // measure the crypto providers now rather than inside the first handshakes
+        ProviderRouter.shared().calibrate();
+        try (ThreadedServer server = new ThreadedServer(PORT, KyberParameterSpec.kyber512, executor)) {
+            System.out.println("Server is listening on port " + PORT + " ("
+                    + (args.length > 0 ? args[0] : ConnectionExecutors.describePerConnection()) + ")");
+            server.acceptor.join();
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public ServerKeyRing getKeys() {
+        return keys;
+    }
+
+    public HandshakeAdmission<Socket> getAdmission() {
+        return admission;
+    }
+
+    public SessionTicketManager getTickets() {
+        return tickets;
+    }
+
+    public long getCompletedHandshakes() {
+        return completedHandshakes.get();
+    }
+
+    public long getFailedHandshakes() {
+        return failedHandshakes.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+        tickets.close();
+        keys.close();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                admission.offer(serverSocket.accept());
+            } catch (SocketException e) {
+                // server socket closed
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void start(Socket socket) {
+        try {
+            executor.execute(() -> handle(socket));
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            closeQuietly(socket);
+            admission.finished();
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket connection = socket) {
+            Server.handshake(connection, keys, tickets, admission::recordDecapsulation);
+            completedHandshakes.incrementAndGet();
+        } catch (Exception e) {
+            failedHandshakes.incrementAndGet();
+        } finally {
+            admission.finished();
+        }
+    }
+
+    private void refuse(Socket socket, long retryAfterMillis) {
+        try {
+            Server.refuse(socket, keys.getParameterSet(), retryAfterMillis);
+        } catch (IOException e) {
+            // the client is gone already
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+    }
+}
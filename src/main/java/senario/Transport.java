@@ -0,0 +1,34 @@
+package senario;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Where handshake bytes travel: kernel TCP ({@link TcpTransport}) or an in-process ring buffer
+ * ({@link LoopbackTransport}) that can emulate a slow link. {@link Client} and {@link Server} run
+ * the same handshake code over either, so the protocol cost can be measured apart from the
+ * network stack.
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * Opens a connection to the server side of this transport.
+     */
+    Connection connect() throws IOException;
+
+    /**
+     * Waits for the next connection opened with {@link #connect()} and returns its server end.
+     */
+    Connection accept() throws IOException;
+
+    /**
+     * One end of a bidirectional byte stream. Closing it closes both directions.
+     */
+    interface Connection extends Closeable {
+        InputStream getInputStream() throws IOException;
+
+        OutputStream getOutputStream() throws IOException;
+    }
+}
@@ -0,0 +1,44 @@
+package senario;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Java 21 version of the connection executors, packaged under META-INF/versions/21: every
+ * accepted connection gets its own virtual thread, so the blocking handshake code scales to tens
+ * of thousands of concurrent connections.
+ */
+public final class ConnectionExecutors {
+
+    private ConnectionExecutors() {
+    }
+
+    /**
+     * One virtual thread per accepted connection.
+     */
+    public static ExecutorService perConnection() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("connection-", 1).factory());
+    }
+
+    /**
+     * A fixed pool of platform threads, the baseline the per-connection mode is compared against.
+     */
+    public static ExecutorService fixedPlatformPool(int threads) {
+        return Executors.newFixedThreadPool(threads, daemonThreads("connection-pool"));
+    }
+
+    public static String describePerConnection() {
+        return "virtual thread per connection";
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
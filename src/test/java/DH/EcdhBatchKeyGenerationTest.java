@@ -0,0 +1,131 @@
+package DH;
+
+import org.bouncycastle.jce.ECNamedCurveTable;
+import org.bouncycastle.jce.interfaces.ECPrivateKey;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.jce.spec.ECNamedCurveParameterSpec;
+import org.bouncycastle.jce.spec.ECPublicKeySpec;
+import org.bouncycastle.math.ec.ECPoint;
+import org.example.kyber.EcdhEngine;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that batch key generation returns the same keys as the single-key path and measures its
+ * throughput against one {@link EcdhEngine#generateKeyPair()} call per key.
+ */
+public class EcdhBatchKeyGenerationTest {
+
+    private static final int[] BATCH_SIZES = {16, 64, 256, 1024, 4096};
+    private static final int KEYS_PER_MEASUREMENT = 16384;
+
+    @BeforeClass
+    public static void setUp() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @Test
+    public void testBatchKeysMatchSingleKeyPath() throws Exception {
+        // rebuild every public key from its private scalar through the JCA and compare the encodings
+        KeyFactory keyFactory = KeyFactory.getInstance("ECDH", "BC");
+        ECNamedCurveParameterSpec spec = ECNamedCurveTable.getParameterSpec("secp256r1");
+        for (String engineName : new String[]{"jca", "fixedbase"}) {
+            EcdhEngine engine = EcdhEngine.forName(engineName);
+            KeyPair single = engine.generateKeyPair();
+            KeyPair[] keyPairs = engine.generateKeyPairs(300);
+            assertEquals(300, keyPairs.length);
+            Set<BigInteger> scalars = new HashSet<>();
+            for (KeyPair keyPair : keyPairs) {
+                BigInteger d = ((ECPrivateKey) keyPair.getPrivate()).getD();
+                scalars.add(d);
+                assertArrayEquals(keyFactory.generatePublic(new ECPublicKeySpec(spec.getG().multiply(d), spec)).getEncoded(),
+                        keyPair.getPublic().getEncoded());
+                // private keys embed their public key, like the ones from the single-key path
+                byte[] encoded = keyPair.getPrivate().getEncoded();
+                assertEquals(single.getPrivate().getEncoded().length, encoded.length);
+                assertEquals(d, ((ECPrivateKey) keyFactory.generatePrivate(new PKCS8EncodedKeySpec(encoded))).getD());
+            }
+            assertEquals(300, scalars.size());
+        }
+    }
+
+    @Test
+    public void testBatchHandlesDoublings() throws Exception {
+        // GeneratorTable is package-private; reach it the way FixedBaseEcdhEngine builds it
+        ECNamedCurveParameterSpec spec = ECNamedCurveTable.getParameterSpec("secp256r1");
+        Class<?> tableClass = Class.forName("org.example.kyber.GeneratorTable");
+        Constructor<?> constructor = tableClass.getDeclaredConstructor(ECPoint.class, BigInteger.class);
+        constructor.setAccessible(true);
+        Object table = constructor.newInstance(spec.getG(), spec.getN());
+        Method multiply = tableClass.getDeclaredMethod("multiply", BigInteger.class);
+        Method multiplyAll = tableClass.getDeclaredMethod("multiplyAll", BigInteger[].class);
+        multiply.setAccessible(true);
+        multiplyAll.setAccessible(true);
+
+        // k = C + 2^(6i) - 1 makes the digits of k - C 63 below window i and 0 in window i, so the
+        // running sum equals the addend of window i and the affine addition must double instead
+        BigInteger offset = BigInteger.ZERO;
+        for (int i = 0; i < 43; i++) {
+            offset = offset.setBit(6 * i);
+        }
+        BigInteger[] scalars = {
+                offset.add(BigInteger.valueOf(63)),
+                BigInteger.valueOf(0x123456789L),
+                offset.add(BigInteger.ONE.shiftLeft(12).subtract(BigInteger.ONE)),
+                offset.add(BigInteger.ONE.shiftLeft(30).subtract(BigInteger.ONE)),
+                BigInteger.valueOf(63),
+        };
+        ECPoint[] points = (ECPoint[]) multiplyAll.invoke(table, (Object) scalars);
+        for (int j = 0; j < scalars.length; j++) {
+            ECPoint expected = spec.getG().multiply(scalars[j]).normalize();
+            assertEquals(expected, points[j]);
+            assertEquals(expected, multiply.invoke(table, scalars[j]));
+        }
+    }
+
+    @Test
+    public void testBatchThroughput() throws Exception {
+        EcdhEngine engine = EcdhEngine.forName("fixedbase");
+        // warm up both paths
+        for (int i = 0; i < 4; i++) {
+            measureSingle(engine);
+            measureBatch(engine, 256);
+        }
+        double single = measureSingle(engine);
+        System.out.printf("%-10s %14s %10s%n", "batch", "keys/s", "speed-up");
+        System.out.printf("%-10s %14.0f %10s%n", "single", single, "1.00");
+        for (int batchSize : BATCH_SIZES) {
+            double batch = measureBatch(engine, batchSize);
+            System.out.printf("%-10d %14.0f %10.2f%n", batchSize, batch, batch / single);
+        }
+    }
+
+    private static double measureSingle(EcdhEngine engine) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < KEYS_PER_MEASUREMENT; i++) {
+            engine.generateKeyPair();
+        }
+        return KEYS_PER_MEASUREMENT / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static double measureBatch(EcdhEngine engine, int batchSize) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < KEYS_PER_MEASUREMENT; i += batchSize) {
+            engine.generateKeyPairs(batchSize);
+        }
+        return KEYS_PER_MEASUREMENT / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,101 @@
+package DH;
+
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.jce.interfaces.ECPrivateKey;
+import org.bouncycastle.jce.interfaces.ECPublicKey;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.example.kyber.EcdhEngine;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.crypto.SecretKey;
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that every {@link EcdhEngine} produces interchangeable secp256r1 keys and times key
+ * generation and key agreement for each of them.
+ */
+public class EcdhEnginePartsTimeTest {
+
+    private static final String[] ENGINES = {"jca", "cached", "fixedbase"};
+    private static final int NUMBER_OF_EXECUTIONS = 2000;
+    private static final int WARM_UP_ITERATIONS = 2000;
+
+    @BeforeClass
+    public static void setUp() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @Test
+    public void testEnginesInteroperate() throws Exception {
+        KeyFactory keyFactory = KeyFactory.getInstance("EC", "BC");
+        for (String firstName : ENGINES) {
+            for (String secondName : ENGINES) {
+                EcdhEngine first = EcdhEngine.forName(firstName);
+                EcdhEngine second = EcdhEngine.forName(secondName);
+                KeyPair keyPairA = first.generateKeyPair();
+                KeyPair keyPairB = second.generateKeyPair();
+                SecretKey secretKeyA = first.generateSharedSecret(keyPairA.getPrivate(), keyPairB.getPublic());
+                SecretKey secretKeyB = second.generateSharedSecret(keyPairB.getPrivate(), keyPairA.getPublic());
+                assertArrayEquals(firstName + "/" + secondName, secretKeyA.getEncoded(), secretKeyB.getEncoded());
+
+                // the encoded public key must survive a round trip through a plain key factory
+                PublicKey decoded = keyFactory.generatePublic(new X509EncodedKeySpec(keyPairA.getPublic().getEncoded()));
+                assertArrayEquals(secretKeyB.getEncoded(),
+                        second.generateSharedSecret(keyPairB.getPrivate(), decoded).getEncoded());
+            }
+        }
+    }
+
+    @Test
+    public void testFixedBasePublicKeyMatchesScalarMultiplication() throws Exception {
+        X9ECParameters curve = CustomNamedCurves.getByName("secp256r1");
+        EcdhEngine engine = EcdhEngine.forName("fixedbase");
+        for (int i = 0; i < 500; i++) {
+            KeyPair keyPair = engine.generateKeyPair();
+            BigInteger d = ((ECPrivateKey) keyPair.getPrivate()).getD();
+            assertEquals(curve.getG().multiply(d).normalize(), ((ECPublicKey) keyPair.getPublic()).getQ());
+        }
+    }
+
+    @Test
+    public void testEcdhEngineExecutionTimes() throws Exception {
+        System.out.printf("%-12s %20s %20s%n", "engine", "key generation (us)", "agreement (us)");
+        for (String engineName : ENGINES) {
+            EcdhEngine engine = EcdhEngine.forName(engineName);
+            for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+                KeyPair keyPair = engine.generateKeyPair();
+                engine.generateSharedSecret(keyPair.getPrivate(), keyPair.getPublic());
+            }
+            double[] keyGenerationTimes = new double[NUMBER_OF_EXECUTIONS];
+            double[] agreementTimes = new double[NUMBER_OF_EXECUTIONS];
+            KeyPair peer = engine.generateKeyPair();
+            for (int i = 0; i < NUMBER_OF_EXECUTIONS; i++) {
+                long start = System.nanoTime();
+                KeyPair keyPair = engine.generateKeyPair();
+                keyGenerationTimes[i] = (System.nanoTime() - start) / 1000.0;
+
+                start = System.nanoTime();
+                engine.generateSharedSecret(keyPair.getPrivate(), peer.getPublic());
+                agreementTimes[i] = (System.nanoTime() - start) / 1000.0;
+            }
+            System.out.printf("%-12s %20.1f %20.1f%n", engineName, median(keyGenerationTimes), median(agreementTimes));
+        }
+    }
+
+    private static double median(double[] times) {
+        double[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,177 @@
+package DH;
+
+import org.example.kyber.BufferPool;
+import org.example.kyber.ECDH_BC;
+import org.example.kyber.EcdhMessageChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EcdhMessageChannelTest {
+
+    private static final byte[] AAD = "device-42/telemetry".getBytes(StandardCharsets.US_ASCII);
+
+    private EcdhMessageChannel initiator;
+    private EcdhMessageChannel responder;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyPair keyPairA = ECDH_BC.generateECKeys();
+        KeyPair keyPairB = ECDH_BC.generateECKeys();
+        SecretKey secretKeyA = ECDH_BC.generateSharedSecret(keyPairA.getPrivate(), keyPairB.getPublic());
+        SecretKey secretKeyB = ECDH_BC.generateSharedSecret(keyPairB.getPrivate(), keyPairA.getPublic());
+        initiator = EcdhMessageChannel.initiator(secretKeyA);
+        responder = EcdhMessageChannel.responder(secretKeyB);
+    }
+
+    @Test
+    public void testMessagesInBothDirections() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            byte[] plaintext = ("message " + i).getBytes(StandardCharsets.UTF_8);
+            byte[] sealed = initiator.seal(plaintext, AAD);
+            assertEquals(EcdhMessageChannel.sealedLength(plaintext.length), sealed.length);
+            assertArrayEquals(plaintext, responder.open(sealed, AAD));
+            assertArrayEquals(plaintext, initiator.open(responder.seal(plaintext, null), null));
+        }
+        assertEquals(100, initiator.getMessagesSealed());
+        assertEquals(100, responder.getMessagesOpened());
+
+        // the same plaintext never seals to the same bytes, and a channel cannot open its own messages
+        byte[] first = initiator.seal(AAD, null);
+        assertFalse(Arrays.equals(first, initiator.seal(AAD, null)));
+        assertFails(() -> initiator.open(first, null), AEADBadTagException.class);
+    }
+
+    @Test
+    public void testTamperingAndWrongAadAreRejected() throws Exception {
+        byte[] sealed = initiator.seal("open the valve".getBytes(StandardCharsets.UTF_8), AAD);
+        byte[] tampered = sealed.clone();
+        tampered[EcdhMessageChannel.SEQUENCE_LENGTH] ^= 1;
+        assertFails(() -> responder.open(tampered, AAD), AEADBadTagException.class);
+        assertFails(() -> responder.open(sealed, "device-43/telemetry".getBytes(StandardCharsets.US_ASCII)), AEADBadTagException.class);
+        byte[] renumbered = sealed.clone();
+        renumbered[EcdhMessageChannel.SEQUENCE_LENGTH - 1] ^= 1;
+        assertFails(() -> responder.open(renumbered, AAD), AEADBadTagException.class);
+        // failed attempts do not burn the sequence number
+        assertEquals("open the valve", new String(responder.open(sealed, AAD), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReorderedMessagesOpenAndReplaysDoNot() throws Exception {
+        byte[][] sealed = new byte[100][];
+        for (int i = 0; i < sealed.length; i++) {
+            sealed[i] = initiator.seal(new byte[]{(byte) i}, null);
+        }
+        responder.open(sealed[10], null);
+        responder.open(sealed[3], null);
+        responder.open(sealed[9], null);
+        assertFails(() -> responder.open(sealed[3], null), GeneralSecurityException.class);
+        assertFails(() -> responder.open(sealed[10], null), GeneralSecurityException.class);
+
+        responder.open(sealed[80], null);
+        assertArrayEquals(new byte[]{17}, responder.open(sealed[17], null));
+        // 80 - 16 = 64 messages behind the newest: outside the replay window
+        assertFails(() -> responder.open(sealed[16], null), GeneralSecurityException.class);
+        assertEquals(5, responder.getMessagesOpened());
+    }
+
+    @Test
+    public void testBatchesUsePooledBuffers() throws Exception {
+        BufferPool pool = new BufferPool(4096, 8);
+        KeyPair keyPairA = ECDH_BC.generateECKeys();
+        KeyPair keyPairB = ECDH_BC.generateECKeys();
+        EcdhMessageChannel sender = EcdhMessageChannel.initiator(
+                ECDH_BC.generateSharedSecret(keyPairA.getPrivate(), keyPairB.getPublic()), pool);
+        EcdhMessageChannel receiver = EcdhMessageChannel.responder(
+                ECDH_BC.generateSharedSecret(keyPairB.getPrivate(), keyPairA.getPublic()), pool);
+
+        List<ByteBuffer> plaintexts = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            byte[] plaintext = new byte[i % 50];
+            Arrays.fill(plaintext, (byte) i);
+            plaintexts.add(ByteBuffer.wrap(plaintext));
+        }
+        List<ByteBuffer> batches = sender.sealBatch(plaintexts, ByteBuffer.wrap(AAD));
+        assertTrue(batches.size() > 1);
+
+        List<byte[]> received = new ArrayList<>();
+        for (ByteBuffer batch : batches) {
+            receiver.openBatch(batch, ByteBuffer.wrap(AAD), plaintext -> {
+                byte[] copy = new byte[plaintext.remaining()];
+                plaintext.get(copy);
+                received.add(copy);
+            });
+            sender.release(batch);
+        }
+        assertEquals(300, received.size());
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(i % 50, received.get(i).length);
+            for (byte b : received.get(i)) {
+                assertEquals((byte) i, b);
+            }
+        }
+        receiver.close();
+        assertEquals(batches.size() + 1, pool.getPooled());
+    }
+
+    @Test
+    public void testMessageThroughput() throws Exception {
+        ByteBuffer aad = ByteBuffer.wrap(AAD);
+        // the first pass only warms up
+        for (int pass = 0; pass < 2; pass++) {
+            measureThroughput(aad, pass == 1);
+        }
+    }
+
+    private void measureThroughput(ByteBuffer aad, boolean print) throws Exception {
+        for (int size : new int[]{16, 64, 256, 1024}) {
+            List<ByteBuffer> plaintexts = new ArrayList<>();
+            for (int i = 0; i < 256; i++) {
+                plaintexts.add(ByteBuffer.allocate(size));
+            }
+            int[] opened = new int[1];
+            EcdhMessageChannel.MessageHandler handler = plaintext -> opened[0]++;
+            int rounds = 200;
+            long start = 0;
+            for (int round = -rounds; round < rounds; round++) {
+                if (round == 0) {
+                    start = System.nanoTime();
+                }
+                plaintexts.forEach(ByteBuffer::clear);
+                for (ByteBuffer batch : initiator.sealBatch(plaintexts, aad)) {
+                    responder.openBatch(batch, aad, handler);
+                    initiator.release(batch);
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            assertEquals(2 * rounds * plaintexts.size(), opened[0]);
+            if (print) {
+                System.out.printf("%5d-byte messages: %,.0f sealed and opened per second%n", size, rounds * plaintexts.size() / seconds);
+            }
+        }
+    }
+
+    private interface Attempt {
+        void run() throws Exception;
+    }
+
+    private static void assertFails(Attempt attempt, Class<? extends Exception> expected) {
+        try {
+            attempt.run();
+            fail("Expected " + expected.getSimpleName());
+        } catch (Exception e) {
+            assertTrue(e.toString(), expected.isInstance(e));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package DH;
+
+import org.example.kyber.ECDH_BC;
+import org.example.kyber.TextCodec;
+import org.junit.Test;
+
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TextCodecTest {
+
+    @Test
+    public void testHexMatchesFormat() {
+        Random random = new Random(1);
+        for (int length = 0; length < 100; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            String expected = formatHex(data);
+            assertEquals(expected, ECDH_BC.bytesToHex(data));
+            assertArrayEquals(data, ECDH_BC.hexToBytes(expected));
+            assertArrayEquals(data, ECDH_BC.hexToBytes(expected.toLowerCase()));
+
+            byte[] ascii = new byte[TextCodec.hexLength(length) + 3];
+            assertEquals(2 * length, TextCodec.encodeHex(data, 0, length, ascii, 3));
+            assertEquals(expected, new String(ascii, 3, 2 * length, StandardCharsets.US_ASCII));
+            byte[] decoded = new byte[length];
+            assertEquals(length, TextCodec.decodeHex(ascii, 3, 2 * length, decoded, 0));
+            assertArrayEquals(data, decoded);
+        }
+    }
+
+    @Test
+    public void testBase64MatchesJdk() {
+        Random random = new Random(2);
+        for (int length = 0; length < 100; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            String expected = Base64.getEncoder().encodeToString(data);
+
+            char[] chars = new char[TextCodec.base64Length(length)];
+            assertEquals(chars.length, TextCodec.encodeBase64(data, 0, length, chars, 0));
+            assertEquals(expected, new String(chars));
+            byte[] decoded = new byte[TextCodec.base64DecodedLength(chars, 0, chars.length)];
+            assertEquals(length, TextCodec.decodeBase64(chars, 0, chars.length, decoded, 0));
+            assertArrayEquals(data, decoded);
+
+            // padding is optional when reading
+            byte[] unpadded = Base64.getEncoder().withoutPadding().encode(data);
+            assertEquals(length, TextCodec.base64DecodedLength(unpadded, 0, unpadded.length));
+            Arrays.fill(decoded, (byte) 0);
+            TextCodec.decodeBase64(unpadded, 0, unpadded.length, decoded, 0);
+            assertArrayEquals(data, decoded);
+        }
+    }
+
+    @Test
+    public void testByteBuffersAdvance() {
+        byte[] data = new byte[1000];
+        new Random(3).nextBytes(data);
+        for (boolean direct : new boolean[]{false, true}) {
+            ByteBuffer text = direct ? ByteBuffer.allocateDirect(2000) : ByteBuffer.allocate(2000);
+            ByteBuffer decoded = direct ? ByteBuffer.allocateDirect(1000) : ByteBuffer.allocate(1000);
+
+            TextCodec.encodeBase64(ByteBuffer.wrap(data), text);
+            text.flip();
+            assertEquals(Base64.getEncoder().encodeToString(data), StandardCharsets.US_ASCII.decode(text.duplicate()).toString());
+            TextCodec.decodeBase64(text, decoded);
+            assertFalse(text.hasRemaining());
+            assertArrayEquals(data, toArray(decoded));
+
+            text.clear();
+            decoded.clear();
+            TextCodec.encodeHex(ByteBuffer.wrap(data), text);
+            text.flip();
+            assertEquals(formatHex(data), StandardCharsets.US_ASCII.decode(text.duplicate()).toString());
+            TextCodec.decodeHex(text, decoded);
+            assertArrayEquals(data, toArray(decoded));
+        }
+    }
+
+    @Test
+    public void testMalformedInputIsRejected() {
+        byte[] out = new byte[8];
+        for (String hex : new String[]{"ABC", "0G", "é00"}) {
+            try {
+                TextCodec.decodeHex(hex, 0, hex.length(), out, 0);
+                fail("Accepted " + hex);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        for (String base64 : new String[]{"QUJD=", "Q", "Q===", "QU=D", "QR==", "QU*D"}) {
+            try {
+                char[] chars = base64.toCharArray();
+                TextCodec.decodeBase64(chars, 0, chars.length, out, 0);
+                fail("Accepted " + base64);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testByteOverloadsSkipTextEncoding() {
+        KeyPair keyPairA = ECDH_BC.generateECKeys();
+        KeyPair keyPairB = ECDH_BC.generateECKeys();
+        SecretKey secretKeyA = ECDH_BC.generateSharedSecret(keyPairA.getPrivate(), keyPairB.getPublic());
+        SecretKey secretKeyB = ECDH_BC.generateSharedSecret(keyPairB.getPrivate(), keyPairA.getPublic());
+
+        String plainText = "Look mah, I'm a message!";
+        byte[] cipherText = ECDH_BC.encryptString(secretKeyA, plainText.getBytes(StandardCharsets.UTF_8));
+        assertEquals(ECDH_BC.encryptString(secretKeyA, plainText), ECDH_BC.bytesToHex(cipherText));
+        assertArrayEquals(plainText.getBytes(StandardCharsets.UTF_8), ECDH_BC.decryptString(secretKeyB, cipherText));
+        assertEquals(plainText, ECDH_BC.decryptString(secretKeyB, ECDH_BC.bytesToHex(cipherText)));
+    }
+
+    @Test
+    public void testCodecTimes() {
+        byte[] data = new byte[1 << 20];
+        new Random(4).nextBytes(data);
+        char[] hex = new char[TextCodec.hexLength(data.length)];
+        char[] base64 = new char[TextCodec.base64Length(data.length)];
+        byte[] decoded = new byte[data.length];
+        String formatted = null;
+        for (int i = 0; i < 5; i++) {
+            formatted = formatHex(data);
+            TextCodec.encodeHex(data, 0, data.length, hex, 0);
+            TextCodec.decodeHex(hex, 0, hex.length, decoded, 0);
+            TextCodec.encodeBase64(data, 0, data.length, base64, 0);
+            TextCodec.decodeBase64(base64, 0, base64.length, decoded, 0);
+        }
+
+        long start = System.nanoTime();
+        formatted = formatHex(data);
+        long formatNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        digitHex(formatted);
+        long digitNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        TextCodec.encodeHex(data, 0, data.length, hex, 0);
+        long encodeHexNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        TextCodec.decodeHex(hex, 0, hex.length, decoded, 0);
+        long decodeHexNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        TextCodec.encodeBase64(data, 0, data.length, base64, 0);
+        long encodeBase64Nanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        TextCodec.decodeBase64(base64, 0, base64.length, decoded, 0);
+        long decodeBase64Nanos = System.nanoTime() - start;
+
+        assertArrayEquals(data, decoded);
+        System.out.printf("1 MiB: String.format hex %.2f ms, Character.digit hex %.2f ms%n", formatNanos / 1e6, digitNanos / 1e6);
+        System.out.printf("1 MiB: table hex %.2f / %.2f ms, table Base64 %.2f / %.2f ms (encode / decode)%n",
+                encodeHexNanos / 1e6, decodeHexNanos / 1e6, encodeBase64Nanos / 1e6, decodeBase64Nanos / 1e6);
+    }
+
+    // the codec ECDH_BC used before TextCodec
+    private static String formatHex(byte[] data) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : data) {
+            sb.append(String.format("%02X", b));
+        }
+        return sb.toString();
+    }
+
+    private static byte[] digitHex(String hexString) {
+        int len = hexString.length();
+        byte[] data = new byte[len / 2];
+        for (int i = 0; i < len; i += 2) {
+            data[i / 2] = (byte) ((Character.digit(hexString.charAt(i), 16) << 4)
+                    + Character.digit(hexString.charAt(i + 1), 16));
+        }
+        return data;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        buffer.flip();
+        byte[] array = new byte[buffer.remaining()];
+        buffer.get(array);
+        return array;
+    }
+}
@@ -0,0 +1,107 @@
+package Kyber;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.example.kyber.ECDH_BC;
+import org.example.kyber.HybridKeyExchange;
+import org.example.kyber.KyberExample;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Times a complete exchange (receiver key generation, sender side, receiver side) for ECDH only,
+ * Kyber only and the hybrid of both.
+ */
+public class HybridKeyExchangeTimeTest {
+
+    private static final int NUMBER_OF_EXECUTIONS = 1000;
+    private static final int WARM_UP_ITERATIONS = 1000;
+    private static final KyberParameterSpec KYBER_PARAMETER_SPEC = KyberParameterSpec.kyber768;
+    private static final String RESULTS_FILE = "KyberTestsResults/hybrid_execution_times.txt";
+
+    @BeforeClass
+    public static void setUp() {
+        // Add Bouncy Castle PQC provider
+        Security.addProvider(new BouncyCastlePQCProvider());
+    }
+
+    @Test
+    public void testHybridVersusSingleExchanges() throws Exception {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            ecdhExchange();
+            kyberExchange();
+            hybridExchange();
+        }
+
+        double[] ecdhTimes = new double[NUMBER_OF_EXECUTIONS];
+        double[] kyberTimes = new double[NUMBER_OF_EXECUTIONS];
+        double[] hybridTimes = new double[NUMBER_OF_EXECUTIONS];
+        for (int i = 0; i < NUMBER_OF_EXECUTIONS; i++) {
+            long start = System.nanoTime();
+            ecdhExchange();
+            ecdhTimes[i] = (System.nanoTime() - start) / 1000000.0;
+
+            start = System.nanoTime();
+            kyberExchange();
+            kyberTimes[i] = (System.nanoTime() - start) / 1000000.0;
+
+            start = System.nanoTime();
+            hybridExchange();
+            hybridTimes[i] = (System.nanoTime() - start) / 1000000.0;
+        }
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(RESULTS_FILE, true))) {
+            writeResults(writer, "ECDH secp256r1", ecdhTimes);
+            writeResults(writer, "Kyber " + KYBER_PARAMETER_SPEC.getName(), kyberTimes);
+            writeResults(writer, "Hybrid ECDH + Kyber " + KYBER_PARAMETER_SPEC.getName(), hybridTimes);
+        }
+    }
+
+    private void ecdhExchange() {
+        KeyPair receiver = ECDH_BC.generateECKeys();
+        KeyPair sender = ECDH_BC.generateECKeys();
+        byte[] senderSecret = ECDH_BC.generateSharedSecret(sender.getPrivate(), receiver.getPublic()).getEncoded();
+        byte[] receiverSecret = ECDH_BC.generateSharedSecret(receiver.getPrivate(), sender.getPublic()).getEncoded();
+        assertArrayEquals(senderSecret, receiverSecret);
+    }
+
+    private void kyberExchange() throws Exception {
+        KeyPair receiver = KyberExample.generateKeyPair(KYBER_PARAMETER_SPEC);
+        SecretKeyWithEncapsulation sent = KyberExample.generateSecretKeySender(receiver.getPublic());
+        SecretKeyWithEncapsulation received = KyberExample.generateSecretKeyReceiver(receiver.getPrivate(), sent.getEncapsulation());
+        assertArrayEquals(sent.getEncoded(), received.getEncoded());
+    }
+
+    private void hybridExchange() throws Exception {
+        HybridKeyExchange.HybridKeyPair receiver = HybridKeyExchange.generateKeyPair(KYBER_PARAMETER_SPEC);
+        HybridKeyExchange.SenderResult sent = HybridKeyExchange.generateSecretSender(
+                receiver.getEcKeyPair().getPublic(), receiver.getKyberKeyPair().getPublic());
+        byte[] receiverSecret = HybridKeyExchange.generateSecretReceiver(
+                receiver, sent.getEphemeralEcPublicKey(), sent.getKyberEncapsulation());
+        assertArrayEquals(sent.getSharedSecret(), receiverSecret);
+    }
+
+    private void writeResults(BufferedWriter writer, String name, double[] executionTimes) throws IOException {
+        double[] sorted = executionTimes.clone();
+        Arrays.sort(sorted);
+        double average = Arrays.stream(sorted, 0, sorted.length - 1).average().orElse(0);
+
+        writer.write(name + " full exchange Execution Time tests: \n");
+        writer.write("======================================================================================\n");
+        writer.write("Shortest Execution Time: " + sorted[0] + " ms\n");
+        writer.write("Average Execution Time: " + average + " ms\n");
+        writer.write("Median Execution Time: " + sorted[sorted.length / 2] + " ms\n");
+        writer.write("======================================================================================\n\n");
+        System.out.println(name + ": average " + average + " ms, median " + sorted[sorted.length / 2] + " ms");
+    }
+}
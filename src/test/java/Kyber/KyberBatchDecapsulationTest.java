@@ -0,0 +1,102 @@
+package Kyber;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.example.kyber.KyberBatchDecapsulator;
+import org.example.kyber.KyberExample;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KyberBatchDecapsulationTest {
+
+    private static final int NUMBER_OF_EXECUTIONS = 2000;
+
+    @BeforeClass
+    public static void setUp() {
+        // Add Bouncy Castle PQC provider
+        Security.addProvider(new BouncyCastlePQCProvider());
+    }
+
+    @Test
+    public void testBatchVersusSequentialDecapsulation() throws Exception {
+        KeyPair serverKeyPair = KyberExample.generateKeyPair(KyberParameterSpec.kyber512);
+        SecretKeyWithEncapsulation[] sent = new SecretKeyWithEncapsulation[NUMBER_OF_EXECUTIONS];
+        for (int i = 0; i < NUMBER_OF_EXECUTIONS; i++) {
+            sent[i] = KyberExample.generateSecretKeySender(serverKeyPair.getPublic());
+        }
+
+        long start = System.nanoTime();
+        for (SecretKeyWithEncapsulation secretKeyWithEncapsulation : sent) {
+            KyberExample.generateSecretKeyReceiver(serverKeyPair.getPrivate(), secretKeyWithEncapsulation.getEncapsulation());
+        }
+        double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+
+        try (KyberBatchDecapsulator decapsulator = new KyberBatchDecapsulator(serverKeyPair.getPrivate())) {
+            start = System.nanoTime();
+            List<CompletableFuture<SecretKeyWithEncapsulation>> futures = new ArrayList<>(NUMBER_OF_EXECUTIONS);
+            for (SecretKeyWithEncapsulation secretKeyWithEncapsulation : sent) {
+                futures.add(decapsulator.submit(secretKeyWithEncapsulation.getEncapsulation()));
+            }
+            for (int i = 0; i < NUMBER_OF_EXECUTIONS; i++) {
+                assertArrayEquals(sent[i].getEncoded(), futures.get(i).get().getEncoded());
+            }
+            double batchSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.println("Sequential decapsulation: " + NUMBER_OF_EXECUTIONS / sequentialSeconds + " ops/s");
+            System.out.println("Batch decapsulation: " + NUMBER_OF_EXECUTIONS / batchSeconds + " ops/s, average batch size "
+                    + (double) decapsulator.getProcessed() / decapsulator.getBatches());
+        }
+    }
+
+    @Test
+    public void testCloseSettlesEveryRequest() throws Exception {
+        KeyPair serverKeyPair = KyberExample.generateKeyPair(KyberParameterSpec.kyber512);
+        byte[] encapsulation = KyberExample.generateSecretKeySender(serverKeyPair.getPublic()).getEncapsulation();
+        ConcurrentLinkedQueue<CompletableFuture<SecretKeyWithEncapsulation>> futures = new ConcurrentLinkedQueue<>();
+        KyberBatchDecapsulator decapsulator = new KyberBatchDecapsulator(serverKeyPair.getPrivate(), 1, 4, 4);
+        // more submitters than queue slots, so some are blocked in submit when close runs
+        List<Thread> submitters = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Thread submitter = new Thread(() -> {
+                try {
+                    while (true) {
+                        futures.add(decapsulator.submit(encapsulation));
+                    }
+                } catch (RejectedExecutionException | InterruptedException e) {
+                    // closed
+                }
+            });
+            submitters.add(submitter);
+            submitter.start();
+        }
+        Thread.sleep(200);
+        decapsulator.close();
+
+        for (Thread submitter : submitters) {
+            submitter.join(5000);
+            assertFalse("submitter still blocked", submitter.isAlive());
+        }
+        for (CompletableFuture<SecretKeyWithEncapsulation> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                // cancelled
+            }
+            assertTrue(future.isDone());
+        }
+    }
+}
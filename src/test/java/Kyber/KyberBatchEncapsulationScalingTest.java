@@ -0,0 +1,87 @@
+package Kyber;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.example.kyber.KyberBatchEncapsulator;
+import org.example.kyber.KyberEngine;
+import org.example.kyber.LightweightKyberEngine;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Measures batch encapsulation throughput for 1 to N worker threads.
+ */
+public class KyberBatchEncapsulationScalingTest {
+
+    private static final int BATCH_SIZE = 4000;
+    private static final int ROUNDS = 5;
+    private static final String RESULTS_FILE = "KyberTestsResults/kyber_batch_encapsulation_scaling.txt";
+
+    @BeforeClass
+    public static void setUp() {
+        // Add Bouncy Castle PQC provider
+        Security.addProvider(new BouncyCastlePQCProvider());
+    }
+
+    @Test
+    public void testBatchEncapsulationScaling() throws Exception {
+        KyberEngine engine = new LightweightKyberEngine();
+        KeyPair[] keyPairs = new KeyPair[BATCH_SIZE];
+        PublicKey[] publicKeys = new PublicKey[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            keyPairs[i] = engine.generateKeyPair(KyberParameterSpec.kyber768);
+            publicKeys[i] = keyPairs[i].getPublic();
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(RESULTS_FILE, true))) {
+            writer.write("Kyber768 batch encapsulation of " + BATCH_SIZE + " keys\n");
+            writer.write("======================================================================================\n");
+            for (int parallelism = 1; parallelism <= cores; parallelism++) {
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    KyberBatchEncapsulator encapsulator = new KyberBatchEncapsulator(pool, engine);
+                    encapsulator.encapsulate(publicKeys); // warm-up
+
+                    long start = System.nanoTime();
+                    SecretKeyWithEncapsulation[] results = null;
+                    for (int round = 0; round < ROUNDS; round++) {
+                        results = encapsulator.encapsulate(publicKeys);
+                    }
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    double throughput = BATCH_SIZE * ROUNDS / seconds;
+
+                    verifyOrder(engine, keyPairs, results);
+                    writeResult(writer, parallelism, throughput);
+                } finally {
+                    pool.shutdown();
+                }
+            }
+            writer.write("======================================================================================\n\n");
+        }
+    }
+
+    private void verifyOrder(KyberEngine engine, KeyPair[] keyPairs, SecretKeyWithEncapsulation[] results) throws Exception {
+        for (int i = 0; i < keyPairs.length; i += 97) {
+            SecretKeyWithEncapsulation received = engine.generateSecretKeyReceiver(keyPairs[i].getPrivate(), results[i].getEncapsulation());
+            assertArrayEquals(results[i].getEncoded(), received.getEncoded());
+        }
+    }
+
+    private void writeResult(BufferedWriter writer, int parallelism, double throughput) throws IOException {
+        String line = parallelism + " worker(s): " + String.format("%.0f", throughput) + " encapsulations/s";
+        writer.write(line + "\n");
+        System.out.println(line);
+    }
+}
@@ -0,0 +1,135 @@
+package Kyber;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.example.kyber.KyberEngine;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Runs the key generation / encapsulation / decapsulation / AES timings of {@link KyberPartsTimeTest}
+ * once per {@link KyberEngine} so the per-operation cost of each engine can be compared side by side.
+ */
+public class KyberEnginePartsTimeTest {
+
+    private static final String[] ENGINES = {"jca", "cached", "lightweight"};
+    private static final KyberParameterSpec[] PARAMETER_SPECS = {
+            KyberParameterSpec.kyber512, KyberParameterSpec.kyber768, KyberParameterSpec.kyber1024};
+    private static final String RESULTS_FILE = "KyberTestsResults/kyber_engine_execution_times.txt";
+    private static final int NUMBER_OF_EXECUTIONS = 1000;
+    private static final int WARM_UP_ITERATIONS = 2000;
+
+    @BeforeClass
+    public static void setUp() {
+        // Add Bouncy Castle PQC provider
+        Security.addProvider(new BouncyCastlePQCProvider());
+    }
+
+    @Test
+    public void testKyberEngineExecutionTimes() throws Exception {
+        for (String engineName : ENGINES) {
+            KyberEngine engine = KyberEngine.forName(engineName);
+            warmUp(engine);
+            for (KyberParameterSpec kyberParameterSpec : PARAMETER_SPECS) {
+                double[] keyGenerationTimes = new double[NUMBER_OF_EXECUTIONS];
+                double[] encapsulationTimes = new double[NUMBER_OF_EXECUTIONS];
+                double[] decapsulationTimes = new double[NUMBER_OF_EXECUTIONS];
+                double[] encryptionTimes = new double[NUMBER_OF_EXECUTIONS];
+                performKyberTests(engine, kyberParameterSpec, keyGenerationTimes, encapsulationTimes, decapsulationTimes, encryptionTimes);
+                writeResultsToFile(engineName + " " + kyberParameterSpec.getName(),
+                        keyGenerationTimes, encapsulationTimes, decapsulationTimes, encryptionTimes);
+            }
+        }
+    }
+
+    @Test
+    public void testEnginesInteroperate() throws Exception {
+        for (String generatorName : ENGINES) {
+            for (String senderName : ENGINES) {
+                for (String receiverName : ENGINES) {
+                    KeyPair keyPair = KyberEngine.forName(generatorName).generateKeyPair(KyberParameterSpec.kyber768);
+                    SecretKeyWithEncapsulation sent = KyberEngine.forName(senderName).generateSecretKeySender(keyPair.getPublic());
+                    SecretKeyWithEncapsulation received = KyberEngine.forName(receiverName)
+                            .generateSecretKeyReceiver(keyPair.getPrivate(), sent.getEncapsulation());
+                    assertArrayEquals(generatorName + "/" + senderName + "/" + receiverName, sent.getEncoded(), received.getEncoded());
+
+                    byte[] encrypted = KyberEngine.forName(senderName).encrypt(sent.getEncapsulation(), sent.getEncoded());
+                    assertArrayEquals(sent.getEncapsulation(), KyberEngine.forName(receiverName).decrypt(encrypted, received.getEncoded()));
+                }
+            }
+        }
+    }
+
+    private void warmUp(KyberEngine engine) throws Exception {
+        System.out.println("Warm-up " + engine.getClass().getSimpleName() + "...");
+        for (int j = 0; j < WARM_UP_ITERATIONS; j++) {
+            KeyPair keyPair = engine.generateKeyPair(KyberParameterSpec.kyber512);
+            SecretKeyWithEncapsulation sent = engine.generateSecretKeySender(keyPair.getPublic());
+            engine.generateSecretKeyReceiver(keyPair.getPrivate(), sent.getEncapsulation());
+            engine.decrypt(engine.encrypt(sent.getEncapsulation(), sent.getEncoded()), sent.getEncoded());
+        }
+        System.out.println("Warm-up completed.");
+    }
+
+    private void performKyberTests(KyberEngine engine, KyberParameterSpec kyberParameterSpec, double[] keyGenerationTimes,
+                                   double[] encapsulationTimes, double[] decapsulationTimes, double[] encryptionTimes) throws Exception {
+        byte[] message = "This is a test IoT packet".getBytes();
+        System.gc();
+        for (int i = 0; i < keyGenerationTimes.length; i++) {
+            long start = System.nanoTime();
+            KeyPair keyPair = engine.generateKeyPair(kyberParameterSpec);
+            keyGenerationTimes[i] = (System.nanoTime() - start) / 1000000.0;
+
+            start = System.nanoTime();
+            SecretKeyWithEncapsulation sent = engine.generateSecretKeySender(keyPair.getPublic());
+            encapsulationTimes[i] = (System.nanoTime() - start) / 1000000.0;
+
+            start = System.nanoTime();
+            SecretKeyWithEncapsulation received = engine.generateSecretKeyReceiver(keyPair.getPrivate(), sent.getEncapsulation());
+            decapsulationTimes[i] = (System.nanoTime() - start) / 1000000.0;
+
+            start = System.nanoTime();
+            byte[] decrypted = engine.decrypt(engine.encrypt(message, sent.getEncoded()), received.getEncoded());
+            encryptionTimes[i] = (System.nanoTime() - start) / 1000000.0;
+
+            assertArrayEquals(sent.getEncoded(), received.getEncoded());
+            assertArrayEquals(message, decrypted);
+        }
+    }
+
+    private void writeResultsToFile(String name, double[] keyGenerationTimes, double[] encapsulationTimes,
+                                    double[] decapsulationTimes, double[] encryptionTimes) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(RESULTS_FILE, true))) {
+            writeResults(writer, name, "Key Generation", keyGenerationTimes);
+            writeResults(writer, name, "Encapsulation", encapsulationTimes);
+            writeResults(writer, name, "Decapsulation", decapsulationTimes);
+            writeResults(writer, name, "AES Encrypt+Decrypt", encryptionTimes);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeResults(BufferedWriter writer, String name, String process, double[] executionTimes) throws IOException {
+        double[] sorted = executionTimes.clone();
+        Arrays.sort(sorted);
+        double average = Arrays.stream(sorted, 0, sorted.length - 1).average().orElse(0);
+
+        writer.write(name + " " + process + " Execution Time tests: \n");
+        writer.write("======================================================================================\n");
+        writer.write("Shortest Execution Time: " + sorted[0] + " ms\n");
+        writer.write("Average Execution Time: " + average + " ms\n");
+        writer.write("Median Execution Time: " + sorted[sorted.length / 2] + " ms\n");
+        writer.write("======================================================================================\n\n");
+        System.out.println(name + " " + process + ": average " + average + " ms, median " + sorted[sorted.length / 2] + " ms");
+    }
+}
@@ -0,0 +1,177 @@
+package Kyber;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.example.kyber.KyberEngine;
+import org.example.kyber.KyberExample;
+import org.example.kyber.KyberKeyPairPool;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class KyberKeyPairPoolTest {
+
+    private static final int NUMBER_OF_EXECUTIONS = 1000;
+
+    @BeforeClass
+    public static void setUp() {
+        // Add Bouncy Castle PQC provider
+        Security.addProvider(new BouncyCastlePQCProvider());
+    }
+
+    @Test
+    public void testPooledKeyPairsAreUsable() throws Exception {
+        try (KyberKeyPairPool pool = new KyberKeyPairPool(KyberParameterSpec.kyber768, KyberExample.getEngine(),
+                2, 8, 2, KyberKeyPairPool.Fallback.BLOCK, 5000)) {
+            for (int i = 0; i < 32; i++) {
+                KeyPair keyPair = pool.take();
+                SecretKeyWithEncapsulation sent = KyberExample.generateSecretKeySender(keyPair.getPublic());
+                SecretKeyWithEncapsulation received = KyberExample.generateSecretKeyReceiver(keyPair.getPrivate(), sent.getEncapsulation());
+                assertArrayEquals(sent.getEncoded(), received.getEncoded());
+            }
+            assertEquals(32, pool.getHits() + pool.getMisses());
+        }
+    }
+
+    @Test
+    public void testKyber1024TakeVersusInlineGeneration() throws Exception {
+        KyberParameterSpec kyberParameterSpec = KyberParameterSpec.kyber1024;
+        try (KyberKeyPairPool pool = new KyberKeyPairPool(kyberParameterSpec, KyberExample.getEngine(),
+                256, 1024, 2, KyberKeyPairPool.Fallback.GENERATE_INLINE, 0)) {
+            // Let the workers fill the pool before measuring
+            long deadline = System.currentTimeMillis() + 60000;
+            while (pool.size() < 1024 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1024, pool.size());
+
+            double inlineTotal = 0;
+            for (int i = 0; i < NUMBER_OF_EXECUTIONS; i++) {
+                long start = System.nanoTime();
+                KyberExample.generateKeyPair(kyberParameterSpec);
+                inlineTotal += (System.nanoTime() - start) / 1000000.0;
+            }
+
+            double pooledTotal = 0;
+            for (int i = 0; i < NUMBER_OF_EXECUTIONS; i++) {
+                long start = System.nanoTime();
+                pool.take();
+                pooledTotal += (System.nanoTime() - start) / 1000000.0;
+            }
+
+            System.out.println("Kyber1024 inline key generation average: " + inlineTotal / NUMBER_OF_EXECUTIONS + " ms");
+            System.out.println("Kyber1024 pooled take average: " + pooledTotal / NUMBER_OF_EXECUTIONS + " ms");
+            System.out.println("Pool hits: " + pool.getHits() + ", misses: " + pool.getMisses());
+            assertTrue(pool.getHits() > 0);
+        }
+    }
+
+    @Test
+    public void testCloseWakesBlockedTake() throws Exception {
+        // Workers never finish, so take() waits until close() wakes it
+        CountDownLatch never = new CountDownLatch(1);
+        KyberKeyPairPool pool = new KyberKeyPairPool(KyberParameterSpec.kyber512, new WorkerEngine(never, 0),
+                1, 2, 1, KyberKeyPairPool.Fallback.BLOCK, 60000);
+        AtomicReference<Object> taken = new AtomicReference<>();
+        Thread taker = new Thread(() -> {
+            try {
+                taken.set(pool.take());
+            } catch (Exception e) {
+                taken.set(e);
+            }
+        });
+        taker.start();
+        Thread.sleep(200);
+        long start = System.currentTimeMillis();
+        pool.close();
+        taker.join(10000);
+        assertTrue("take() still blocked after close()", !taker.isAlive());
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertTrue(taken.get() instanceof KeyPair);
+        assertEquals(0, pool.getFailures());
+    }
+
+    @Test
+    public void testPoolRefillsAfterFailedGeneration() throws Exception {
+        try (KyberKeyPairPool pool = new KyberKeyPairPool(KyberParameterSpec.kyber512, new WorkerEngine(null, 1),
+                2, 4, 1, KyberKeyPairPool.Fallback.GENERATE_INLINE, 0)) {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (pool.getFailures() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, pool.getFailures());
+            assertNotNull(pool.getLastFailure());
+
+            // The miss generates inline and starts the workers again
+            assertNotNull(pool.take());
+            deadline = System.currentTimeMillis() + 60000;
+            while (pool.size() < 4 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(4, pool.size());
+            assertEquals(1, pool.getFailures());
+        }
+    }
+
+    /**
+     * Delegates to the configured engine, except that key generation on pool workers first waits
+     * for {@code release} and then fails {@code failures} times.
+     */
+    private static final class WorkerEngine implements KyberEngine {
+
+        private final KyberEngine delegate = KyberExample.getEngine();
+        private final CountDownLatch release;
+        private final AtomicInteger failures;
+
+        WorkerEngine(CountDownLatch release, int failures) {
+            this.release = release;
+            this.failures = new AtomicInteger(failures);
+        }
+
+        @Override
+        public byte[] encrypt(byte[] plainBytes, byte[] key) throws Exception {
+            return delegate.encrypt(plainBytes, key);
+        }
+
+        @Override
+        public byte[] decrypt(byte[] encryptedBytes, byte[] key) throws Exception {
+            return delegate.decrypt(encryptedBytes, key);
+        }
+
+        @Override
+        public KeyPair generateKeyPair(KyberParameterSpec kyberParameterSpec) throws Exception {
+            if (Thread.currentThread().getName().startsWith("kyber-keypair-pool-")) {
+                if (release != null) {
+                    release.await();
+                }
+                if (failures.getAndDecrement() > 0) {
+                    throw new IllegalStateException("simulated generation failure");
+                }
+            }
+            return delegate.generateKeyPair(kyberParameterSpec);
+        }
+
+        @Override
+        public SecretKeyWithEncapsulation generateSecretKeySender(PublicKey publicKey) throws Exception {
+            return delegate.generateSecretKeySender(publicKey);
+        }
+
+        @Override
+        public SecretKeyWithEncapsulation generateSecretKeyReceiver(PrivateKey privateKey, byte[] encapsulation) throws Exception {
+            return delegate.generateSecretKeyReceiver(privateKey, encapsulation);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package Kyber;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPublicKeyParameters;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.example.kyber.KyberExample;
+import org.example.kyber.KyberPublicKeyCache;
+import org.example.kyber.LightweightKyberEngine;
+import org.example.kyber.PreparedKyberPublicKey;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.Security;
+
+import static org.junit.Assert.*;
+
+public class KyberPublicKeyCacheTest {
+
+    private static final int NUMBER_OF_EXECUTIONS = 2000;
+
+    @BeforeClass
+    public static void setUp() {
+        // Add Bouncy Castle PQC provider
+        Security.addProvider(new BouncyCastlePQCProvider());
+    }
+
+    @Test
+    public void testRepeatedEncapsulationToSamePeer() throws Exception {
+        KeyPair serverKeyPair = KyberExample.generateKeyPair(KyberParameterSpec.kyber768);
+        KyberPublicKeyCache cache = new KyberPublicKeyCache(4);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < NUMBER_OF_EXECUTIONS; i++) {
+            KyberExample.generateSecretKeySender(serverKeyPair.getPublic());
+        }
+        double currentPath = (System.nanoTime() - start) / 1000000.0 / NUMBER_OF_EXECUTIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < NUMBER_OF_EXECUTIONS; i++) {
+            KyberExample.generateSecretKeySender(cache.get(serverKeyPair.getPublic()));
+        }
+        double preparedPath = (System.nanoTime() - start) / 1000000.0 / NUMBER_OF_EXECUTIONS;
+
+        System.out.println("Kyber768 encapsulation, current path: " + currentPath + " ms, prepared key: " + preparedPath + " ms");
+        assertEquals(1, cache.getMisses());
+        assertEquals(NUMBER_OF_EXECUTIONS - 1, cache.getHits());
+
+        SecretKeyWithEncapsulation sent = KyberExample.generateSecretKeySender(cache.get(serverKeyPair.getPublic()));
+        SecretKeyWithEncapsulation received = KyberExample.generateSecretKeyReceiver(serverKeyPair.getPrivate(), sent.getEncapsulation());
+        assertArrayEquals(sent.getEncoded(), received.getEncoded());
+    }
+
+    @Test
+    public void testRawKeysShareEntriesAndLeastRecentlyUsedIsEvicted() throws Exception {
+        KyberPublicKeyCache cache = new KyberPublicKeyCache(2);
+        KeyPair first = KyberExample.generateKeyPair(KyberParameterSpec.kyber512);
+        KyberPublicKeyParameters firstParameters = LightweightKyberEngine.toParameters(first.getPublic());
+
+        PreparedKyberPublicKey prepared = cache.get(first.getPublic());
+        assertSame(prepared, cache.get(firstParameters.getParameters(), firstParameters.getEncoded()));
+
+        cache.get(KyberExample.generateKeyPair(KyberParameterSpec.kyber512).getPublic());
+        cache.get(first.getPublic());
+        cache.get(KyberExample.generateKeyPair(KyberParameterSpec.kyber512).getPublic());
+
+        assertEquals(2, cache.size());
+        assertSame(prepared, cache.get(first.getPublic()));
+    }
+}
@@ -0,0 +1,117 @@
+package Kyber;
+
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.example.kyber.KyberEngine;
+import org.example.kyber.KyberRandom;
+import org.example.kyber.LightweightKyberEngine;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Compares the random sources of {@link KyberRandom} with a fresh {@code new SecureRandom()} per
+ * request, under many concurrent threads, for raw 32-byte seeds and for complete Kyber768 key
+ * generation plus encapsulation.
+ */
+public class KyberRandomConcurrencyTest {
+
+    private static final int THREADS = 32;
+    private static final int REQUESTS_PER_THREAD = 20000;
+    private static final int HANDSHAKES_PER_THREAD = 200;
+
+    @BeforeClass
+    public static void setUp() {
+        // Add Bouncy Castle PQC provider
+        Security.addProvider(new BouncyCastlePQCProvider());
+    }
+
+    @After
+    public void resetMode() {
+        KyberRandom.setMode(KyberRandom.Mode.DEFAULT);
+    }
+
+    @Test
+    public void testSeedThroughputUnderConcurrency() throws Exception {
+        System.out.println("new SecureRandom() per request: " + measure(() -> nextSeed(new SecureRandom())) + " seeds/s");
+        for (KyberRandom.Mode mode : KyberRandom.Mode.values()) {
+            KyberRandom.setMode(mode);
+            System.out.println(mode + ": " + measure(() -> nextSeed(KyberRandom.current())) + " seeds/s");
+        }
+    }
+
+    @Test
+    public void testKeyGenerationAndEncapsulationUnderConcurrency() throws Exception {
+        for (KyberRandom.Mode mode : KyberRandom.Mode.values()) {
+            KyberRandom.setMode(mode);
+            KyberEngine engine = new LightweightKyberEngine();
+            double throughput = measureHandshakes(engine);
+            System.out.println(mode + ": " + throughput + " key generations + encapsulations/s");
+        }
+    }
+
+    @Test
+    public void testRingBufferNeverRepeatsBytes() throws Exception {
+        KyberRandom.setMode(KyberRandom.Mode.RING);
+        byte[] first = new byte[32];
+        byte[] second = new byte[32];
+        KyberRandom.current().nextBytes(first);
+        KyberRandom.current().nextBytes(second);
+        assertFalse(java.util.Arrays.equals(first, second));
+    }
+
+    private static void nextSeed(SecureRandom random) {
+        random.nextBytes(new byte[32]);
+    }
+
+    private double measure(Runnable request) throws Exception {
+        return run(() -> {
+            for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                request.run();
+            }
+            return null;
+        }, REQUESTS_PER_THREAD);
+    }
+
+    private double measureHandshakes(KyberEngine engine) throws Exception {
+        return run(() -> {
+            for (int i = 0; i < HANDSHAKES_PER_THREAD; i++) {
+                KeyPair keyPair = engine.generateKeyPair(KyberParameterSpec.kyber768);
+                engine.generateSecretKeySender(keyPair.getPublic());
+            }
+            return null;
+        }, HANDSHAKES_PER_THREAD);
+    }
+
+    private double run(java.util.concurrent.Callable<Void> work, int perThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?>[] futures = new Future<?>[THREADS];
+            for (int t = 0; t < THREADS; t++) {
+                futures[t] = executor.submit(() -> {
+                    start.await();
+                    return work.call();
+                });
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return (double) THREADS * perThread / ((System.nanoTime() - begin) / 1e9);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package Kyber;
+
+import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.crypto.SecretWithEncapsulation;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPrivateKeyParameters;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPublicKeyParameters;
+import org.example.kyber.KyberParameterSet;
+import org.example.kyber.KyberRawCodec;
+import org.example.kyber.LightweightKyberEngine;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class KyberRawCodecTest {
+
+    @Test
+    public void testRoundTripForEveryParameterSet() {
+        LightweightKyberEngine engine = new LightweightKyberEngine();
+        for (KyberParameterSet set : KyberParameterSet.values()) {
+            AsymmetricCipherKeyPair keyPair = engine.generateKeyPair(set.getParameters());
+            KyberPublicKeyParameters publicKey = (KyberPublicKeyParameters) keyPair.getPublic();
+            KyberPrivateKeyParameters privateKey = (KyberPrivateKeyParameters) keyPair.getPrivate();
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(set.getPublicKeySize() + set.getPrivateKeySize());
+            KyberRawCodec.writePublicKey(publicKey, buffer);
+            KyberRawCodec.writePrivateKey(privateKey, buffer);
+            assertEquals(0, buffer.remaining());
+
+            buffer.flip();
+            KyberPublicKeyParameters decodedPublicKey = KyberRawCodec.readPublicKey(set, buffer);
+            KyberPrivateKeyParameters decodedPrivateKey = KyberRawCodec.readPrivateKey(set, buffer);
+            assertArrayEquals(publicKey.getEncoded(), decodedPublicKey.getEncoded());
+            assertArrayEquals(privateKey.getEncoded(), decodedPrivateKey.getEncoded());
+
+            SecretWithEncapsulation sent = engine.encapsulate(decodedPublicKey);
+            ByteBuffer encapsulation = ByteBuffer.allocate(set.getEncapsulationSize());
+            KyberRawCodec.writeEncapsulation(set, sent.getEncapsulation(), encapsulation);
+            encapsulation.flip();
+            assertArrayEquals(sent.getSecret(), engine.decapsulate(decodedPrivateKey, encapsulation));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortBufferIsRejected() {
+        KyberRawCodec.readPublicKey(KyberParameterSet.KYBER768, ByteBuffer.allocate(KyberParameterSet.KYBER768.getPublicKeySize() - 1));
+    }
+}
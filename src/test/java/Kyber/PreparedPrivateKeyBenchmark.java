@@ -0,0 +1,57 @@
+package Kyber;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.example.kyber.KyberExample;
+import org.example.kyber.PreparedKyberPrivateKey;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of decapsulation through {@link KyberExample#generateSecretKeyReceiver} and
+ * through a {@link PreparedKyberPrivateKey}. Run with the main method from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreparedPrivateKeyBenchmark {
+
+    @Param({"kyber512", "kyber768", "kyber1024"})
+    public String parameterSet;
+
+    private KeyPair keyPair;
+    private PreparedKyberPrivateKey preparedPrivateKey;
+    private byte[] encapsulation;
+
+    @Setup
+    public void setUp() throws Exception {
+        keyPair = KyberExample.generateKeyPair(KyberParameterSpec.fromName(parameterSet));
+        preparedPrivateKey = KyberExample.prepare(keyPair.getPrivate());
+        encapsulation = KyberExample.generateSecretKeySender(keyPair.getPublic()).getEncapsulation();
+    }
+
+    @Benchmark
+    public SecretKeyWithEncapsulation currentPath() throws Exception {
+        return KyberExample.generateSecretKeyReceiver(keyPair.getPrivate(), encapsulation);
+    }
+
+    @Benchmark
+    public SecretKeyWithEncapsulation preparedKey() {
+        return KyberExample.generateSecretKeyReceiver(preparedPrivateKey, encapsulation);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(PreparedPrivateKeyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
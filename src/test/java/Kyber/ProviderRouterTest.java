@@ -0,0 +1,130 @@
+package Kyber;
+
+import org.example.kyber.ECDH_BC;
+import org.example.kyber.ProviderRouter;
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ProviderRouterTest {
+
+    @Test
+    public void testCalibrationKeepsDefaultUnlessClearlyFaster() throws Exception {
+        ProviderRouter.shared().calibrate();
+        Map<String, ProviderRouter.Route> routes = ProviderRouter.shared().getRoutes();
+        for (String name : new String[]{"Cipher.AES/GCM/NoPadding", "Cipher.AES/ECB/PKCS5Padding", "KeyAgreement.ECDH", "Mac.HmacSHA256"}) {
+            assertTrue(name, routes.containsKey(name));
+        }
+        for (ProviderRouter.Route route : routes.values()) {
+            System.out.println(route);
+            assertFalse(route.getRejected().containsKey(route.getProvider()));
+            if (!route.isCached() && !route.getProvider().equals(route.getDefaultProvider())) {
+                long chosen = route.getNanosPerOperation().get(route.getProvider());
+                assertTrue(route.toString(), chosen < route.getNanosPerOperation().get(route.getDefaultProvider()));
+            }
+        }
+    }
+
+    @Test
+    public void testUnroutedAlgorithmsUseJcaDefaultWithoutMeasuring() throws Exception {
+        ProviderRouter router = new ProviderRouter(null);
+        assertEquals(Cipher.getInstance("AES/CTR/NoPadding").getProvider(), router.cipher("AES/CTR/NoPadding").getProvider());
+        assertTrue(router.getRoutes().isEmpty());
+    }
+
+    @Test
+    public void testRoutedCipherHandlesBufferCallsWithAdditionalData() throws Exception {
+        // the way RecordChannel seals: header and output in one buffer, header as additional data
+        Cipher cipher = ProviderRouter.shared().cipher("AES/GCM/NoPadding");
+        SecretKeySpec key = new SecretKeySpec(new byte[32], "AES");
+        ByteBuffer record = ByteBuffer.allocate(7 + 100 + 16);
+        record.put(new byte[7]).flip();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, new byte[12]));
+        cipher.updateAAD(record);
+        record.limit(record.capacity());
+        cipher.doFinal(ByteBuffer.wrap(new byte[100]), record);
+        assertEquals(record.capacity(), record.position());
+
+        record.flip().limit(7);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, new byte[12]));
+        cipher.updateAAD(record);
+        record.limit(record.capacity());
+        ByteBuffer opened = ByteBuffer.allocate(100);
+        cipher.doFinal(record, opened);
+        assertArrayEquals(new byte[100], opened.array());
+    }
+
+    @Test
+    public void testRoutedInstancesMatchBouncyCastle() throws Exception {
+        SecretKeySpec key = new SecretKeySpec(new byte[32], "AES");
+        byte[] nonce = new byte[12];
+        byte[] plaintext = "routed".getBytes(StandardCharsets.UTF_8);
+
+        Cipher routed = ProviderRouter.shared().cipher("AES/GCM/NoPadding");
+        routed.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, nonce));
+        Cipher bc = Cipher.getInstance("AES/GCM/NoPadding", "BC");
+        bc.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, nonce));
+        assertArrayEquals(bc.doFinal(plaintext), routed.doFinal(plaintext));
+
+        Mac mac = ProviderRouter.shared().mac("HmacSHA256");
+        mac.init(new SecretKeySpec(new byte[32], "HmacSHA256"));
+        Mac bcMac = Mac.getInstance("HmacSHA256", "BC");
+        bcMac.init(new SecretKeySpec(new byte[32], "HmacSHA256"));
+        assertArrayEquals(bcMac.doFinal(plaintext), mac.doFinal(plaintext));
+
+        // the string helpers now run on the routed cipher
+        KeyPair keyPairA = ECDH_BC.generateECKeys();
+        KeyPair keyPairB = ECDH_BC.generateECKeys();
+        SecretKey secretKeyA = ECDH_BC.generateSharedSecret(keyPairA.getPrivate(), keyPairB.getPublic());
+        SecretKey secretKeyB = ECDH_BC.generateSharedSecret(keyPairB.getPrivate(), keyPairA.getPublic());
+        assertEquals("hello", ECDH_BC.decryptString(secretKeyB, ECDH_BC.encryptString(secretKeyA, "hello")));
+    }
+
+    @Test
+    public void testRoutesAreCached() throws Exception {
+        Path cache = Files.createTempFile("providers", ".properties");
+        Files.delete(cache);
+        try {
+            ProviderRouter measured = new ProviderRouter(cache);
+            ProviderRouter.Route route = measured.route(ProviderRouter.Primitive.MAC, "HmacSHA512");
+            assertFalse(route.isCached());
+            assertTrue(Files.exists(cache));
+
+            ProviderRouter loaded = new ProviderRouter(cache);
+            ProviderRouter.Route cached = loaded.route(ProviderRouter.Primitive.MAC, "HmacSHA512");
+            assertTrue(cached.isCached());
+            assertEquals(route.getProvider(), cached.getProvider());
+            assertEquals(route.getProvider(), loaded.mac("HmacSHA512").getProvider().getName());
+
+            // a cached provider that fails the checks, here one without the algorithm, is dropped
+            Files.write(cache, new String(Files.readAllBytes(cache), StandardCharsets.ISO_8859_1)
+                    .replace("Mac.HmacSHA512=" + route.getProvider(), "Mac.HmacSHA512=SunEC").getBytes(StandardCharsets.ISO_8859_1));
+            assertFalse(new ProviderRouter(cache).getRoutes().containsKey("Mac.HmacSHA512"));
+
+            // routes measured elsewhere are ignored
+            String other = new String(Files.readAllBytes(cache), StandardCharsets.ISO_8859_1).replace("fingerprint=", "fingerprint=other ");
+            Files.write(cache, other.getBytes(StandardCharsets.ISO_8859_1));
+            assertFalse(new ProviderRouter(cache).route(ProviderRouter.Primitive.MAC, "HmacSHA512").isCached());
+        } finally {
+            Files.deleteIfExists(cache);
+        }
+    }
+
+    @Test(expected = NoSuchAlgorithmException.class)
+    public void testUnknownAlgorithmIsRejected() throws Exception {
+        new ProviderRouter(null).cipher("Rot13/ECB/NoPadding");
+    }
+}
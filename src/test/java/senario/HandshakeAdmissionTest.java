@@ -0,0 +1,115 @@
+package senario;
+
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HandshakeAdmissionTest {
+
+    @Test
+    public void testAdmitsUpToLimitThenQueuesThenSheds() {
+        Recorder recorder = new Recorder();
+        // 1 processor, 10 ms target, 2 ms per decapsulation: 5 handshakes at once
+        HandshakeAdmission<Integer> admission = new HandshakeAdmission<>(recorder, 1, 10, 3, 2000000);
+        assertEquals(5, admission.getConcurrencyLimit());
+        for (int i = 0; i < 10; i++) {
+            admission.offer(i);
+        }
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), recorder.admitted);
+        assertEquals(Arrays.asList(8, 9), recorder.shed);
+        // 5 in flight and 3 queued at 2 ms each
+        assertEquals(Arrays.asList(16L, 16L), recorder.retryAfterMillis);
+        assertEquals(3, admission.getQueueDepth());
+
+        admission.finished();
+        admission.finished();
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6), recorder.admitted);
+        assertEquals(1, admission.getQueueDepth());
+        assertEquals(5, admission.getInFlight());
+        assertEquals(7, admission.getAdmitted());
+        assertEquals(2, admission.getShed());
+        assertEquals(3, admission.getMaxQueueDepth());
+    }
+
+    @Test
+    public void testQueuedConnectionsPastTargetAreShed() throws Exception {
+        Recorder recorder = new Recorder();
+        HandshakeAdmission<Integer> admission = new HandshakeAdmission<>(recorder, 1, 10, 5, 10000000);
+        assertEquals(1, admission.getConcurrencyLimit());
+        admission.offer(0);
+        admission.offer(1);
+        admission.offer(2);
+        Thread.sleep(20);
+        admission.finished();
+
+        assertEquals(Arrays.asList(0), recorder.admitted);
+        assertEquals(Arrays.asList(1, 2), recorder.shed);
+        assertEquals(0, admission.getQueueDepth());
+        assertEquals(0, admission.getInFlight());
+    }
+
+    @Test
+    public void testLimitFollowsMeasuredDecapsulationTime() {
+        HandshakeAdmission<Integer> admission = new HandshakeAdmission<>(new Recorder(), 2, 10, 0, 10000000);
+        assertEquals(2, admission.getConcurrencyLimit());
+        for (int i = 0; i < 200; i++) {
+            admission.recordDecapsulation(1000000);
+        }
+        assertEquals(1000000, admission.getDecapsulationNanos(), 1000);
+        assertTrue(admission.getConcurrencyLimit() >= 19);
+    }
+
+    @Test
+    public void testInFlightCapBoundsCpuDerivedLimit() {
+        HandshakeAdmission<Integer> admission = new HandshakeAdmission<>(new Recorder(), 8, 1000, 0, 100000, 3);
+        assertEquals(3, admission.getConcurrencyLimit());
+        for (int i = 0; i < 200; i++) {
+            admission.recordDecapsulation(1000);
+        }
+        assertEquals(3, admission.getConcurrencyLimit());
+    }
+
+    @Test
+    public void testFloodIsShedWithRetryHint() throws Exception {
+        // the cap, not the machine's CPU budget, decides the limit, so 64 clients overrun it anywhere
+        try (ThreadedServer server = new ThreadedServer(0, new ServerKeyRing(KyberParameterSpec.kyber768, 0, 0),
+                ConnectionExecutors.perConnection(), new SessionTicketManager(60000, 0, 1, 100), 1, 4, 2)) {
+            HandshakeAdmission<?> admission = server.getAdmission();
+            System.out.println("Decapsulation " + admission.getDecapsulationNanos() / 1000 + " us, limit "
+                    + admission.getConcurrencyLimit() + " handshakes");
+
+            LoadGenerator.Report report = new LoadGenerator("localhost", server.getPort(), 400, 64, 0, 60000).run();
+            report.print(System.out);
+
+            assertEquals(400, report.getCompleted() + report.getShed() + report.getFailed());
+            assertTrue(report.getShed() > 0);
+            assertEquals(report.getShed(), admission.getShed());
+            assertTrue(admission.getConcurrencyLimit() <= 2);
+            assertTrue(admission.getMaxQueueDepth() <= 4);
+            assertEquals(0, admission.getQueueDepth());
+        }
+    }
+
+    private static final class Recorder implements HandshakeAdmission.Handler<Integer> {
+        final List<Integer> admitted = new ArrayList<>();
+        final List<Integer> shed = new ArrayList<>();
+        final List<Long> retryAfterMillis = new ArrayList<>();
+
+        @Override
+        public void admit(Integer connection) {
+            admitted.add(connection);
+        }
+
+        @Override
+        public void shed(Integer connection, long retryAfter) {
+            shed.add(connection);
+            retryAfterMillis.add(retryAfter);
+        }
+    }
+}
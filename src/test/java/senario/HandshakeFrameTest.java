@@ -0,0 +1,107 @@
+package senario;
+
+import org.example.kyber.KyberParameterSet;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class HandshakeFrameTest {
+
+    private static final int ITERATIONS = 100000;
+
+    @Test
+    public void testStreamAndBufferEncodingsMatch() throws Exception {
+        for (KyberParameterSet set : KyberParameterSet.values()) {
+            byte[] payload = new byte[set.getEncapsulationSize()];
+            new SecureRandom().nextBytes(payload);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            HandshakeFrame.writeHeader(out, HandshakeFrame.TYPE_ENCAPSULATION, set, payload.length);
+            out.write(payload);
+
+            ByteBuffer buffer = ByteBuffer.allocate(HandshakeFrame.HEADER_SIZE + payload.length);
+            HandshakeFrame.writeHeader(buffer, HandshakeFrame.TYPE_ENCAPSULATION, set, payload.length);
+            buffer.put(payload);
+            assertArrayEquals(bytes.toByteArray(), buffer.array());
+
+            HandshakeFrame frame = new HandshakeFrame();
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            frame.readHeader(in).expect(HandshakeFrame.TYPE_ENCAPSULATION, set.getEncapsulationSize());
+            assertEquals(set, frame.getParameterSet());
+            byte[] read = new byte[frame.getLength()];
+            in.readFully(read);
+            assertArrayEquals(payload, read);
+
+            buffer.flip();
+            frame.readHeader(buffer).expect(HandshakeFrame.TYPE_ENCAPSULATION, set.getEncapsulationSize());
+            assertEquals(set, frame.getParameterSet());
+        }
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void testUnexpectedTypeIsRejected() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(HandshakeFrame.HEADER_SIZE + 1);
+        HandshakeFrame.writeStatus(buffer, KyberParameterSet.KYBER512, HandshakeFrame.STATUS_OK);
+        buffer.flip();
+        new HandshakeFrame().readHeader(buffer).expect(HandshakeFrame.TYPE_ENCAPSULATION, 1);
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void testUnknownVersionIsRejected() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(HandshakeFrame.HEADER_SIZE);
+        buffer.put((byte) 99).put(HandshakeFrame.TYPE_STATUS).put(KyberParameterSet.KYBER512.getId()).putInt(1);
+        buffer.flip();
+        new HandshakeFrame().readHeader(buffer);
+    }
+
+    @Test
+    public void testFramingAgainstSerialization() throws Exception {
+        KyberParameterSet set = KyberParameterSet.KYBER768;
+        byte[] payload = new byte[set.getEncapsulationSize()];
+        new SecureRandom().nextBytes(payload);
+        byte[] read = new byte[payload.length];
+        HandshakeFrame frame = new HandshakeFrame();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            bytes.reset();
+            DataOutputStream out = new DataOutputStream(bytes);
+            HandshakeFrame.writeHeader(out, HandshakeFrame.TYPE_ENCAPSULATION, set, payload.length);
+            out.write(payload);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            frame.readHeader(in).expect(HandshakeFrame.TYPE_ENCAPSULATION, payload.length);
+            in.readFully(read);
+        }
+        long framedNanos = System.nanoTime() - start;
+        int framedSize = bytes.size();
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            bytes.reset();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(payload);
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            read = (byte[]) in.readObject();
+        }
+        long serializedNanos = System.nanoTime() - start;
+        int serializedSize = bytes.size();
+
+        System.out.println("Binary framing: " + framedSize + " bytes, " + framedNanos / ITERATIONS + " ns per message");
+        System.out.println("Java serialization: " + serializedSize + " bytes, " + serializedNanos / ITERATIONS + " ns per message");
+        assertEquals(HandshakeFrame.HEADER_SIZE + payload.length, framedSize);
+    }
+}
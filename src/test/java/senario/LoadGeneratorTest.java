@@ -0,0 +1,64 @@
+package senario;
+
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadGeneratorTest {
+
+    @Test
+    public void testHistogramPercentilesStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[100000];
+        Random random = new Random(42);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 16);
+            histogram.recordMicros(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, histogram.getCount());
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = histogram.percentileMicros(percentile);
+            assertTrue(percentile + ": " + reported + " vs " + exact, reported >= exact && reported <= exact * 1.04 + 1);
+        }
+        assertTrue(histogram.maxMicros() >= values[values.length - 1]);
+    }
+
+    @Test
+    public void testClosedAndOpenLoopRuns() throws Exception {
+        try (ThreadedServer server = new ThreadedServer(0, KyberParameterSpec.kyber768, ConnectionExecutors.perConnection())) {
+            LoadGenerator.Report closedLoop = new LoadGenerator("localhost", server.getPort(), 500, 8, 0, 30000).run();
+            closedLoop.print(System.out);
+            assertEquals(500, closedLoop.getCompleted());
+            assertEquals(0, closedLoop.getFailed());
+
+            LoadGenerator.Report openLoop = new LoadGenerator("localhost", server.getPort(), 0, 16, 200, 2000).run();
+            openLoop.print(System.out);
+            assertEquals(0, openLoop.getFailed());
+            assertTrue(openLoop.getCompleted() > 0 && openLoop.getCompleted() <= 400);
+            assertEquals(openLoop.getCompleted(), openLoop.getHistogram(LoadGenerator.Stage.LATENCY).getCount());
+        }
+    }
+
+    @Test
+    public void testFailuresAreCountedByCause() throws Exception {
+        int port;
+        try (ServerSocket closed = new ServerSocket(0)) {
+            port = closed.getLocalPort();
+        }
+        LoadGenerator.Report report = new LoadGenerator("localhost", port, 5, 1, 0, 30000).run();
+        report.print(System.out);
+        assertEquals(0, report.getCompleted());
+        assertEquals(5, report.getFailed());
+        assertEquals(Collections.singletonMap(ConnectException.class.getName(), 5L), report.getFailureCauses());
+    }
+}
@@ -0,0 +1,62 @@
+package senario;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.junit.Test;
+
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class MultiplexedHandshakeTest {
+
+    private static final int HANDSHAKES = 1000;
+    private static final int PIPELINE_DEPTH = 64;
+
+    @Test
+    public void testMultiplexedAgainstConnectionPerHandshake() throws Exception {
+        try (NioServer server = new NioServer(0, KyberParameterSpec.kyber768, 1, 2)) {
+            int port = server.getPort();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < HANDSHAKES; i++) {
+                try (Socket socket = new Socket("localhost", port)) {
+                    assertNotNull(Client.handshake(socket));
+                }
+            }
+            long perConnectionNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            try (MultiplexedClient client = new MultiplexedClient("localhost", port)) {
+                for (int sent = 0; sent < HANDSHAKES; sent += PIPELINE_DEPTH) {
+                    List<CompletableFuture<SecretKeyWithEncapsulation>> results =
+                            client.handshakes(Math.min(PIPELINE_DEPTH, HANDSHAKES - sent));
+                    for (CompletableFuture<SecretKeyWithEncapsulation> result : results) {
+                        assertNotNull(result.get());
+                    }
+                }
+                assertEquals(0, client.getInFlight());
+            }
+            long multiplexedNanos = System.nanoTime() - start;
+
+            System.out.println("Connection per handshake: " + perConnectionNanos / HANDSHAKES / 1000 + " us per handshake");
+            System.out.println("Multiplexed, " + PIPELINE_DEPTH + " in flight: " + multiplexedNanos / HANDSHAKES / 1000 + " us per handshake");
+            assertEquals(2L * HANDSHAKES, server.getCompletedHandshakes());
+            assertEquals(0, server.getFailedHandshakes());
+        }
+    }
+
+    @Test
+    public void testSingleHandshakesShareOneConnection() throws Exception {
+        try (NioServer server = new NioServer(0, KyberParameterSpec.kyber512, 1, 1);
+             MultiplexedClient client = new MultiplexedClient("localhost", server.getPort())) {
+            for (int i = 0; i < 10; i++) {
+                assertNotNull(client.handshake().get());
+            }
+            assertEquals(10, server.getCompletedHandshakes());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package senario;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class NioServerTest {
+
+    private static final int CLIENTS = 500;
+    private static final int CONCURRENCY = 100;
+
+    @Test
+    public void testConcurrentHandshakes() throws Exception {
+        try (NioServer server = new NioServer(0, KyberParameterSpec.kyber768, 2, 2)) {
+            int port = server.getPort();
+            ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+            try {
+                long start = System.nanoTime();
+                List<Future<Byte>> results = new ArrayList<>();
+                for (int i = 0; i < CLIENTS; i++) {
+                    results.add(clients.submit(() -> handshake(port)));
+                }
+                for (Future<Byte> result : results) {
+                    assertEquals(NioServer.STATUS_OK, (byte) result.get());
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.println(CLIENTS + " handshakes with " + CONCURRENCY + " concurrent clients: " + CLIENTS / seconds + " handshakes/s");
+            } finally {
+                clients.shutdown();
+            }
+            assertEquals(CLIENTS, server.getCompletedHandshakes());
+        }
+    }
+
+    @Test
+    public void testResumptionIsRefused() throws Exception {
+        try (NioServer server = new NioServer(0, KyberParameterSpec.kyber768, 1, 1)) {
+            AtomicReference<SessionTicket> tickets = new AtomicReference<>(
+                    new SessionTicket(new byte[SessionTicketManager.TICKET_LENGTH], new byte[SessionTicketManager.SECRET_LENGTH]));
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                assertNotNull(Client.handshake(socket, tickets));
+            }
+            assertNull(tickets.get());
+            assertEquals(1, server.getCompletedHandshakes());
+        }
+    }
+
+    private static byte handshake(int port) throws Exception {
+        try (Socket socket = new Socket("localhost", port)) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+            HandshakeFrame frame = new HandshakeFrame();
+            Client.ServerPublicKey serverPublicKey = Client.readPublicKey(in, frame);
+            SecretKeyWithEncapsulation secret = Client.encapsulate(serverPublicKey);
+            Client.sendEncapsulation(out, serverPublicKey, secret.getEncapsulation());
+
+            frame.readHeader(in).expect(HandshakeFrame.TYPE_STATUS, 1);
+            return in.readByte();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package senario;
+
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.example.kyber.KyberExample;
+import org.example.kyber.KyberParameterSet;
+import org.example.kyber.ProviderRouter;
+import org.junit.Test;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RecordChannelTest {
+
+    private static final int[] MESSAGE_SIZES = {1, 100, RecordChannel.MAX_PLAINTEXT, RecordChannel.MAX_PLAINTEXT + 1, 100000};
+
+    @Test
+    public void testEchoAfterFullAndResumedHandshake() throws Exception {
+        try (ServerKeyRing keys = new ServerKeyRing(KyberParameterSpec.kyber768, 0, 0);
+             SessionTicketManager tickets = new SessionTicketManager(60000, 0, 1, 100);
+             ServerSocket serverSocket = new ServerSocket(0)) {
+            Thread echo = new Thread(() -> {
+                for (int i = 0; i < 2; i++) {
+                    try (Socket socket = serverSocket.accept();
+                         RecordChannel channel = Server.accept(socket, keys, tickets)) {
+                        ByteBuffer buffer = ByteBuffer.allocate(4096);
+                        while (channel.read(buffer) >= 0) {
+                            buffer.flip();
+                            channel.write(buffer);
+                            buffer.clear();
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }, "record-echo");
+            echo.setDaemon(true);
+            echo.start();
+
+            AtomicReference<SessionTicket> ticket = new AtomicReference<>();
+            Random random = new Random(42);
+            for (int connection = 0; connection < 2; connection++) {
+                try (Socket socket = new Socket("localhost", serverSocket.getLocalPort());
+                     RecordChannel channel = Client.connect(socket, ticket)) {
+                    for (int size : MESSAGE_SIZES) {
+                        byte[] message = new byte[size];
+                        random.nextBytes(message);
+                        channel.write(message, 0, message.length);
+                        ByteBuffer echoed = ByteBuffer.allocate(size);
+                        channel.readFully(echoed);
+                        assertArrayEquals(message, echoed.array());
+                    }
+                }
+                assertNotNull(ticket.get());
+            }
+            echo.join(5000);
+            assertEquals(1, tickets.getRedeemedTickets());
+        }
+    }
+
+    @Test
+    public void testTamperedRecordIsRejected() throws Exception {
+        byte[] sealed = seal(new byte[]{1, 2, 3, 4, 5});
+        sealed[HandshakeFrame.HEADER_SIZE + 2] ^= 1;
+        expectBadTag(sealed);
+    }
+
+    @Test
+    public void testReorderedRecordsAreRejected() throws Exception {
+        byte[] first = seal(new byte[]{1});
+        byte[] both = seal(new byte[]{1}, new byte[]{2});
+        // the second record alone, opened as if it were the first
+        expectBadTag(Arrays.copyOfRange(both, first.length, both.length));
+    }
+
+    @Test
+    public void testBuffersReturnToPool() throws Exception {
+        byte[] sessionKey = new byte[32];
+        RecordChannel channel = RecordChannel.client(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(),
+                KyberParameterSet.KYBER512, sessionKey);
+        channel.close();
+        assertTrue(RecordBufferPool.shared().getPooled() >= 3);
+    }
+
+    @Test
+    public void testCloseWaitsForBlockedReader() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        // a stream whose close does not wake the reader, so the read outlives close()
+        InputStream stalled = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                reading.countDown();
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return -1;
+            }
+        };
+        RecordChannel channel = RecordChannel.client(stalled, new ByteArrayOutputStream(), KyberParameterSet.KYBER512, new byte[32]);
+        AtomicReference<Object> result = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                result.set(channel.read(ByteBuffer.allocate(16)));
+            } catch (Exception e) {
+                result.set(e);
+            }
+        });
+        reader.start();
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+        int pooled = RecordBufferPool.shared().getPooled();
+        channel.close();
+        // only the idle writing side is back
+        assertEquals(pooled + 1, RecordBufferPool.shared().getPooled());
+        try {
+            channel.write(new byte[1], 0, 1);
+            fail("Wrote to a closed channel");
+        } catch (IOException expected) {
+            // closed
+        }
+
+        unblock.countDown();
+        reader.join(5000);
+        assertEquals(-1, result.get());
+        assertEquals(pooled + 3, RecordBufferPool.shared().getPooled());
+    }
+
+    @Test
+    public void testSteadyStateAllocation() throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int records = 20000;
+        ByteBuffer message = ByteBuffer.allocate(1024);
+        byte[] key = new byte[32];
+        try (RecordChannel channel = RecordChannel.client(new ByteArrayInputStream(new byte[0]), discard(),
+                KyberParameterSet.KYBER512, key)) {
+            for (int i = 0; i < records; i++) {
+                message.clear();
+                channel.write(message);
+            }
+            long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            long start = System.nanoTime();
+            for (int i = 0; i < records; i++) {
+                message.clear();
+                channel.write(message);
+            }
+            long recordNanos = System.nanoTime() - start;
+            long recordBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+            assertEquals(2L * records, channel.getRecordsSent());
+
+            // the cipher itself allocates its per-message state on every init; the channel must add
+            // nothing on top of that, in particular no record-sized buffers
+            Cipher cipher = ProviderRouter.shared().cipher("AES/GCM/NoPadding");
+            SecretKeySpec cipherKey = new SecretKeySpec(key, "AES");
+            byte[] nonce = new byte[12];
+            byte[] header = new byte[HandshakeFrame.HEADER_SIZE];
+            byte[] sealed = new byte[RecordChannel.MAX_RECORD_SIZE];
+            for (int i = 0; i < records; i++) {
+                sealBare(cipher, cipherKey, nonce, i, header, message.array(), sealed);
+            }
+            before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            for (int i = 0; i < records; i++) {
+                sealBare(cipher, cipherKey, nonce, records + i, header, message.array(), sealed);
+            }
+            long cipherBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+            byte[] plain = new byte[1024];
+            for (int i = 0; i < records; i++) {
+                KyberExample.encrypt(plain, key);
+            }
+            before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            start = System.nanoTime();
+            for (int i = 0; i < records; i++) {
+                KyberExample.encrypt(plain, key);
+            }
+            long ecbNanos = System.nanoTime() - start;
+            long ecbBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+            System.out.println("RecordChannel, 1 KiB records: " + recordNanos / records + " ns and "
+                    + recordBytes / records + " bytes allocated per record, of which "
+                    + cipherBytes / records + " by " + cipher.getProvider().getName() + "'s AES-GCM");
+            System.out.println("KyberExample.encrypt, 1 KiB: " + ecbNanos / records + " ns and "
+                    + ecbBytes / records + " bytes allocated per message");
+            assertTrue("RecordChannel allocates " + recordBytes / records + " bytes per record, its cipher "
+                    + cipherBytes / records, recordBytes / records <= cipherBytes / records + 128);
+        }
+    }
+
+    private static void sealBare(Cipher cipher, SecretKeySpec key, byte[] nonce, long sequence, byte[] header,
+                                 byte[] plaintext, byte[] sealed) throws Exception {
+        for (int i = 0; i < 8; i++) {
+            nonce[nonce.length - 1 - i] = (byte) (sequence >>> (8 * i));
+        }
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(RecordChannel.TAG_LENGTH * 8, nonce));
+        cipher.updateAAD(header);
+        cipher.doFinal(plaintext, 0, plaintext.length, sealed, 0);
+    }
+
+    private static byte[] seal(byte[]... messages) throws Exception {
+        ByteArrayOutputStream sealed = new ByteArrayOutputStream();
+        RecordChannel client = RecordChannel.client(new ByteArrayInputStream(new byte[0]), sealed, KyberParameterSet.KYBER512, new byte[32]);
+        for (byte[] message : messages) {
+            client.write(message, 0, message.length);
+        }
+        return sealed.toByteArray();
+    }
+
+    private static void expectBadTag(byte[] sealed) throws Exception {
+        RecordChannel server = RecordChannel.server(new ByteArrayInputStream(sealed), new ByteArrayOutputStream(),
+                KyberParameterSet.KYBER512, new byte[32]);
+        try {
+            server.read(ByteBuffer.allocate(16));
+            fail("A forged record was opened");
+        } catch (AEADBadTagException expected) {
+            // tag check failed
+        } finally {
+            server.close();
+        }
+    }
+
+    private static OutputStream discard() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+    }
+}
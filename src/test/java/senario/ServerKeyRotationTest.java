@@ -0,0 +1,124 @@
+package senario;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.ProtocolException;
+import java.net.Socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ServerKeyRotationTest {
+
+    @Test
+    public void testRetiredEpochExpiresAfterGraceWindow() throws Exception {
+        try (ServerKeyRing keys = new ServerKeyRing(KyberParameterSpec.kyber512, 0, 200)) {
+            ServerKeyRing.Epoch first = keys.current();
+            keys.rotate();
+            ServerKeyRing.Epoch second = keys.current();
+
+            assertNotSame(first, second);
+            assertEquals(first.getId() + 1, second.getId());
+            assertSame(second, keys.forEpoch(second.getId()));
+            assertSame(first, keys.forEpoch(first.getId()));
+            Thread.sleep(300);
+            assertNull(keys.forEpoch(first.getId()));
+            assertNull(keys.forEpoch(second.getId() + 1));
+        }
+    }
+
+    @Test
+    public void testHandshakeInFlightDuringRotation() throws Exception {
+        try (ThreadedServer server = new ThreadedServer(0, new ServerKeyRing(KyberParameterSpec.kyber512, 0, 60000),
+                ConnectionExecutors.perConnection(), tickets())) {
+            handshakeAcrossRotation(server);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getCompletedHandshakes() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, server.getCompletedHandshakes());
+        }
+    }
+
+    @Test
+    public void testStaleEpochIsRejected() throws Exception {
+        try (ThreadedServer server = new ThreadedServer(0, new ServerKeyRing(KyberParameterSpec.kyber512, 0, 0),
+                ConnectionExecutors.perConnection(), tickets())) {
+            try {
+                handshakeAcrossRotation(server);
+                fail("A retired epoch outside its grace window was accepted");
+            } catch (ProtocolException expected) {
+                // STATUS_UNKNOWN_EPOCH
+            }
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                assertNotNull(Client.handshake(socket));
+            }
+        }
+    }
+
+    @Test
+    public void testRotationUnderLoad() throws Exception {
+        try (ThreadedServer server = new ThreadedServer(0, new ServerKeyRing(KyberParameterSpec.kyber512, 20, 5000),
+                ConnectionExecutors.perConnection(), tickets())) {
+            LoadGenerator.Report report = new LoadGenerator("localhost", server.getPort(), 300, 8, 0, 60000).run();
+
+            assertEquals(300, report.getCompleted());
+            assertEquals(0, report.getFailed());
+            assertTrue(server.getKeys().current().getId() > 0);
+        }
+    }
+
+    @Test
+    public void testMultiplexedClientLearnsNewEpoch() throws Exception {
+        try (NioServer server = new NioServer(0, new ServerKeyRing(KyberParameterSpec.kyber512, 0, 60000), 1, 1);
+             MultiplexedClient client = new MultiplexedClient("localhost", server.getPort())) {
+            assertNotNull(client.handshake().get());
+            assertEquals(0, client.getEpoch());
+
+            server.getKeys().rotate();
+            // Made against epoch 0, still in its grace window; the server answers with the new key
+            SecretKeyWithEncapsulation secret = client.handshake().get();
+            assertNotNull(secret);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (client.getEpoch() != 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, client.getEpoch());
+            assertNotNull(client.handshake().get());
+            assertEquals(3, server.getCompletedHandshakes());
+        }
+    }
+
+    /**
+     * Reads the server's public key, rotates the server's keys and only then sends the
+     * encapsulation made against the key read.
+     */
+    private static void handshakeAcrossRotation(ThreadedServer server) throws Exception {
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            HandshakeFrame frame = new HandshakeFrame();
+
+            Client.ServerPublicKey serverPublicKey = Client.readPublicKey(in, frame);
+            server.getKeys().rotate();
+            Client.sendEncapsulation(out, serverPublicKey, Client.encapsulate(serverPublicKey).getEncapsulation());
+            Client.awaitStatus(in, frame);
+            Client.readTicket(in, frame);
+        }
+    }
+
+    private static SessionTicketManager tickets() throws Exception {
+        return new SessionTicketManager(60000, 60000, 2, 1000);
+    }
+}
@@ -0,0 +1,138 @@
+package senario;
+
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.example.kyber.KyberExample;
+import org.example.kyber.KyberParameterSet;
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.KeyPair;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SessionResumptionTest {
+
+    private static final int RECONNECTS = 200;
+    private static final KyberParameterSpec SPEC = KyberParameterSpec.kyber768;
+
+    @Test
+    public void testResumedHandshakesAgreeAndSkipTheKem() throws Exception {
+        KeyPair keyPair = KyberExample.generateKeyPair(SPEC);
+        ExecutorService serverThread = Executors.newSingleThreadExecutor();
+        try (ServerSocket serverSocket = new ServerSocket(0);
+             SessionTicketManager tickets = new SessionTicketManager(60000, 0, 2, 1024)) {
+            AtomicReference<SessionTicket> clientTickets = new AtomicReference<>();
+
+            long fullNanos = 0;
+            for (int i = 0; i < RECONNECTS; i++) {
+                clientTickets.set(null);
+                fullNanos += connect(serverSocket, serverThread, keyPair, tickets, clientTickets);
+            }
+            assertEquals(0, tickets.getRedeemedTickets());
+
+            long resumedNanos = 0;
+            for (int i = 0; i < RECONNECTS; i++) {
+                resumedNanos += connect(serverSocket, serverThread, keyPair, tickets, clientTickets);
+            }
+            assertEquals(RECONNECTS, tickets.getRedeemedTickets());
+
+            System.out.println("Full handshake: " + fullNanos / RECONNECTS / 1000 + " us, resumed: "
+                    + resumedNanos / RECONNECTS / 1000 + " us");
+        } finally {
+            serverThread.shutdown();
+        }
+    }
+
+    @Test
+    public void testReplayedTicketFallsBackToFullHandshake() throws Exception {
+        KeyPair keyPair = KyberExample.generateKeyPair(SPEC);
+        ExecutorService serverThread = Executors.newSingleThreadExecutor();
+        try (ServerSocket serverSocket = new ServerSocket(0);
+             SessionTicketManager tickets = new SessionTicketManager(60000, 0, 2, 1024)) {
+            AtomicReference<SessionTicket> clientTickets = new AtomicReference<>();
+            connect(serverSocket, serverThread, keyPair, tickets, clientTickets);
+            SessionTicket first = clientTickets.get();
+            assertNotNull(first);
+
+            connect(serverSocket, serverThread, keyPair, tickets, clientTickets);
+            assertEquals(1, tickets.getRedeemedTickets());
+
+            clientTickets.set(first);
+            connect(serverSocket, serverThread, keyPair, tickets, clientTickets);
+            assertEquals(1, tickets.getRedeemedTickets());
+            assertEquals(1, tickets.getRejectedReplays());
+            assertFalse(first == clientTickets.get());
+        } finally {
+            serverThread.shutdown();
+        }
+    }
+
+    @Test
+    public void testRetiredTicketKeyIsRejected() throws Exception {
+        try (SessionTicketManager tickets = new SessionTicketManager(60000, 0, 2, 1024)) {
+            byte[] secret = new byte[SessionTicketManager.SECRET_LENGTH];
+            byte[] ticket = tickets.issue(secret);
+            tickets.rotate();
+            byte[] stillValid = tickets.issue(secret);
+            assertArrayEquals(secret, tickets.redeem(ticket));
+
+            byte[] retired = tickets.issue(secret);
+            tickets.rotate();
+            tickets.rotate();
+            assertNull(tickets.redeem(stillValid));
+            assertNull(tickets.redeem(retired));
+        }
+    }
+
+    @Test
+    public void testTamperedAndExpiredTicketsAreRejected() throws Exception {
+        try (SessionTicketManager tickets = new SessionTicketManager(50, 0, 1, 1024)) {
+            byte[] secret = new byte[SessionTicketManager.SECRET_LENGTH];
+            byte[] tampered = tickets.issue(secret);
+            tampered[tampered.length - 1] ^= 1;
+            assertNull(tickets.redeem(tampered));
+
+            byte[] expired = tickets.issue(secret);
+            Thread.sleep(100);
+            assertNull(tickets.redeem(expired));
+        }
+    }
+
+    @Test
+    public void testFullReplayCacheRefusesResumption() throws Exception {
+        try (SessionTicketManager tickets = new SessionTicketManager(60000, 0, 1, 1)) {
+            byte[] secret = new byte[SessionTicketManager.SECRET_LENGTH];
+            byte[] first = tickets.issue(secret);
+            byte[] second = tickets.issue(secret);
+            assertNotNull(tickets.redeem(first));
+            assertNull(tickets.redeem(second));
+            assertEquals(1, tickets.getReplayCacheSize());
+        }
+    }
+
+    private static long connect(ServerSocket serverSocket, ExecutorService serverThread, KeyPair keyPair,
+                                SessionTicketManager tickets, AtomicReference<SessionTicket> clientTickets) throws Exception {
+        Future<byte[]> serverKey = serverThread.submit(() -> {
+            try (Socket socket = serverSocket.accept()) {
+                return Server.handshake(socket, KyberParameterSet.fromSpec(SPEC), keyPair.getPublic(), keyPair.getPrivate(), tickets);
+            }
+        });
+        long start = System.nanoTime();
+        byte[] clientKey;
+        try (Socket socket = new Socket("localhost", serverSocket.getLocalPort())) {
+            clientKey = Client.handshake(socket, clientTickets);
+        }
+        long elapsed = System.nanoTime() - start;
+        assertArrayEquals(serverKey.get(), clientKey);
+        return elapsed;
+    }
+}
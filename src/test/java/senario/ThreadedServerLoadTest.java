@@ -0,0 +1,102 @@
+package senario;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Runs the same number of concurrent blocking handshakes against a fixed platform pool, against
+ * {@link ConnectionExecutors#perConnection()} and, on Java 21 and later, against a virtual thread
+ * per connection. Surefire loads the main classes from a directory, where the JVM ignores
+ * META-INF/versions, so {@link ConnectionExecutors#perConnection()} is always the Java 8 version
+ * here; the virtual-thread executor is therefore looked up by reflection. Every run prints the kind
+ * of thread its handshakes actually ran on.
+ */
+public class ThreadedServerLoadTest {
+
+    private static final int CLIENTS = 1000;
+    private static final int CONCURRENCY = 200;
+    private static final int PLATFORM_POOL_SIZE = 16;
+
+    @Test
+    public void testFixedPlatformPool() throws Exception {
+        runLoad("fixed pool of " + PLATFORM_POOL_SIZE + " platform threads",
+                ConnectionExecutors.fixedPlatformPool(PLATFORM_POOL_SIZE));
+    }
+
+    @Test
+    public void testPerConnection() throws Exception {
+        runLoad("ConnectionExecutors.perConnection()", ConnectionExecutors.perConnection());
+    }
+
+    @Test
+    public void testVirtualThreadPerConnection() throws Exception {
+        Method factory;
+        try {
+            factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            Assume.assumeTrue("virtual threads need Java 21, running " + System.getProperty("java.version"), false);
+            return;
+        }
+        runLoad("virtual thread per task executor", (ExecutorService) factory.invoke(null));
+    }
+
+    private static void runLoad(String mode, ExecutorService executor) throws Exception {
+        mode += " on " + threadKind(executor) + " threads";
+        try (ThreadedServer server = new ThreadedServer(0, KyberParameterSpec.kyber768, executor)) {
+            int port = server.getPort();
+            ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+            try {
+                long start = System.nanoTime();
+                List<Future<SecretKeyWithEncapsulation>> results = new ArrayList<>();
+                for (int i = 0; i < CLIENTS; i++) {
+                    results.add(clients.submit(() -> {
+                        try (Socket socket = new Socket("localhost", port)) {
+                            return Client.handshake(socket);
+                        }
+                    }));
+                }
+                for (Future<SecretKeyWithEncapsulation> result : results) {
+                    assertNotNull(result.get());
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.println(mode + ": " + CLIENTS + " handshakes with " + CONCURRENCY
+                        + " concurrent clients: " + CLIENTS / seconds + " handshakes/s");
+            } finally {
+                clients.shutdown();
+            }
+            // the server counts a handshake after its final write, so allow it to catch up
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getCompletedHandshakes() < CLIENTS && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(CLIENTS, server.getCompletedHandshakes());
+        }
+    }
+
+    /**
+     * Runs a task on {@code executor} and reports whether it got a virtual or a platform thread.
+     */
+    private static String threadKind(ExecutorService executor) throws Exception {
+        return executor.submit(() -> {
+            try {
+                Method isVirtual = Thread.class.getMethod("isVirtual");
+                return (Boolean) isVirtual.invoke(Thread.currentThread()) ? "virtual" : "platform";
+            } catch (NoSuchMethodException e) {
+                return "platform";
+            }
+        }).get();
+    }
+}
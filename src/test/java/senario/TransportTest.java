@@ -0,0 +1,130 @@
+package senario;
+
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TransportTest {
+
+    private static final KyberParameterSpec[] PARAMETER_SPECS = {
+            KyberParameterSpec.kyber512, KyberParameterSpec.kyber768, KyberParameterSpec.kyber1024};
+
+    @Test
+    public void testRingKeepsOrderAcrossWraparound() throws Exception {
+        ByteRing ring = new ByteRing(64);
+        byte[] sent = new byte[1 << 20];
+        new Random(42).nextBytes(sent);
+        Thread writer = new Thread(() -> {
+            Random sizes = new Random(7);
+            try {
+                for (int off = 0; off < sent.length; ) {
+                    int len = Math.min(sent.length - off, 1 + sizes.nextInt(200));
+                    ring.write(sent, off, len);
+                    off += len;
+                }
+                ring.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        writer.start();
+
+        byte[] received = new byte[sent.length];
+        int total = 0;
+        int read;
+        while ((read = ring.read(received, total, Math.min(received.length - total, 97))) > 0) {
+            total += read;
+        }
+        writer.join();
+        assertEquals(sent.length, total);
+        assertArrayEquals(sent, received);
+    }
+
+    @Test
+    public void testHandshakeOverEachTransport() throws Exception {
+        try (Transport tcp = TcpTransport.listen(0); Transport loopback = new LoopbackTransport()) {
+            for (Transport transport : new Transport[]{tcp, loopback}) {
+                assertTrue(runHandshakes(transport, KyberParameterSpec.kyber768, 20) > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testEmulatedLinkAddsLatencyAndTransmissionTime() throws Exception {
+        // 20 ms each way and 10 kB/s: three flights, of which the public key and the encapsulation
+        // (1579 bytes each for kyber1024) take about 158 ms each to transmit
+        LinkProfile link = new LinkProfile("test", 20_000, 80_000);
+        try (Transport transport = new LoopbackTransport(link)) {
+            double millis = runHandshakes(transport, KyberParameterSpec.kyber1024, 1);
+            assertTrue("Handshake took " + millis + " ms", millis >= 370 && millis < 2000);
+        }
+    }
+
+    @Test
+    public void testParameterSetsAcrossLinks() throws Exception {
+        System.out.printf("%-32s %12s %12s %12s%n", "handshake (ms)", "kyber512", "kyber768", "kyber1024");
+        try (Transport tcp = TcpTransport.listen(0)) {
+            printRow("tcp (localhost)", tcp, 200);
+        }
+        for (LinkProfile link : LinkProfile.presets()) {
+            try (Transport transport = new LoopbackTransport(link)) {
+                printRow(link.toString(), transport, link.getLatencyNanos() > 1_000_000 ? 1 : 200);
+            }
+        }
+        try (Transport slow = new LoopbackTransport(LinkProfile.NB_IOT)) {
+            assertTrue(runHandshakes(slow, KyberParameterSpec.kyber1024, 1) > runHandshakes(slow, KyberParameterSpec.kyber512, 1));
+        }
+    }
+
+    private static void printRow(String name, Transport transport, int handshakes) throws Exception {
+        double[] millis = new double[PARAMETER_SPECS.length];
+        for (int i = 0; i < PARAMETER_SPECS.length; i++) {
+            millis[i] = runHandshakes(transport, PARAMETER_SPECS[i], handshakes);
+        }
+        System.out.printf("%-32s %12.3f %12.3f %12.3f%n", name, millis[0], millis[1], millis[2]);
+    }
+
+    /**
+     * Runs {@code count} full handshakes one after the other and returns the mean time of one in
+     * milliseconds, after checking that both sides agreed on every session key.
+     */
+    private static double runHandshakes(Transport transport, KyberParameterSpec spec, int count) throws Exception {
+        ExecutorService server = Executors.newSingleThreadExecutor();
+        try (ServerKeyRing keys = new ServerKeyRing(spec, 0, 0);
+             SessionTicketManager tickets = new SessionTicketManager(60000, 0, 1, 100)) {
+            Future<byte[][]> serverKeys = server.submit(() -> {
+                byte[][] sessionKeys = new byte[count][];
+                for (int i = 0; i < count; i++) {
+                    try (Transport.Connection connection = transport.accept()) {
+                        sessionKeys[i] = Server.handshake(connection, keys, tickets);
+                    }
+                }
+                return sessionKeys;
+            });
+            byte[][] clientKeys = new byte[count][];
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                try (Transport.Connection connection = transport.connect()) {
+                    clientKeys[i] = Client.handshake(connection, new AtomicReference<>());
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            byte[][] agreed = serverKeys.get();
+            for (int i = 0; i < count; i++) {
+                assertArrayEquals(clientKeys[i], agreed[i]);
+            }
+            return elapsed / 1e6 / count;
+        } finally {
+            server.shutdownNow();
+        }
+    }
+}